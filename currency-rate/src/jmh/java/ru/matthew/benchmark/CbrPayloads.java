@@ -0,0 +1,99 @@
+package ru.matthew.benchmark;
+
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Генератор ответа XML_daily.asp в формате ЦБ РФ (windows-1251, без пробельных узлов).
+ */
+final class CbrPayloads {
+    static final Charset CBR_CHARSET = Charset.forName("windows-1251");
+
+    static final String[][] VALUTES = {
+            {"036", "AUD", "1", "Австралийский доллар", "63,4512"},
+            {"944", "AZN", "1", "Азербайджанский манат", "56,5217"},
+            {"826", "GBP", "1", "Фунт стерлингов", "125,0473"},
+            {"051", "AMD", "100", "Армянских драмов", "24,7921"},
+            {"933", "BYN", "1", "Белорусский рубль", "29,3581"},
+            {"975", "BGN", "1", "Болгарский лев", "53,7744"},
+            {"986", "BRL", "1", "Бразильский реал", "17,1289"},
+            {"348", "HUF", "100", "Форинтов", "26,3101"},
+            {"704", "VND", "10000", "Донгов", "38,6745"},
+            {"344", "HKD", "1", "Гонконгский доллар", "12,3516"},
+            {"981", "GEL", "1", "Лари", "35,2436"},
+            {"208", "DKK", "1", "Датская крона", "14,0987"},
+            {"784", "AED", "1", "Дирхам ОАЭ", "26,1631"},
+            {"840", "USD", "1", "Доллар США", "96,0880"},
+            {"978", "EUR", "1", "Евро", "104,6904"},
+            {"818", "EGP", "10", "Египетских фунтов", "19,7903"},
+            {"356", "INR", "10", "Индийских рупий", "11,4265"},
+            {"360", "IDR", "10000", "Рупий", "61,5612"},
+            {"398", "KZT", "100", "Тенге", "19,8173"},
+            {"124", "CAD", "1", "Канадский доллар", "69,6839"},
+            {"634", "QAR", "1", "Катарский риал", "26,3978"},
+            {"417", "KGS", "10", "Сомов", "11,2242"},
+            {"156", "CNY", "1", "Юань", "13,4855"},
+            {"498", "MDL", "10", "Молдавских леев", "54,0071"},
+            {"554", "NZD", "1", "Новозеландский доллар", "58,0713"},
+            {"578", "NOK", "10", "Норвежских крон", "87,8466"},
+            {"985", "PLN", "1", "Злотый", "24,3210"},
+            {"946", "RON", "1", "Румынский лей", "21,0486"},
+            {"960", "XDR", "1", "СДР", "128,6410"},
+            {"702", "SGD", "1", "Сингапурский доллар", "73,4271"},
+            {"972", "TJS", "10", "Сомони", "90,1427"},
+            {"764", "THB", "10", "Батов", "28,7631"},
+            {"949", "TRY", "10", "Турецких лир", "28,0517"},
+            {"934", "TMT", "1", "Туркменский манат", "27,4537"},
+            {"860", "UZS", "10000", "Сумов", "75,3016"},
+            {"980", "UAH", "10", "Гривен", "23,3226"},
+            {"203", "CZK", "10", "Чешских крон", "41,5003"},
+            {"752", "SEK", "10", "Шведских крон", "92,3174"},
+            {"756", "CHF", "1", "Швейцарский франк", "111,2270"},
+            {"941", "RSD", "100", "Сербских динаров", "89,4652"},
+            {"710", "ZAR", "10", "Рэндов", "54,7012"},
+            {"410", "KRW", "1000", "Вон", "70,5291"},
+            {"392", "JPY", "100", "Иен", "64,3098"}
+    };
+
+    private CbrPayloads() {
+    }
+
+    static byte[] dailyRates() {
+        return dailyRates("18.10.2026");
+    }
+
+    /**
+     * @param date дата публикации в формате ЦБ {@code dd.MM.yyyy}
+     */
+    static byte[] dailyRates(String date) {
+        StringBuilder xml = new StringBuilder(8192)
+                .append("<?xml version=\"1.0\" encoding=\"windows-1251\"?>")
+                .append("<ValCurs Date=\"").append(date).append("\" name=\"Foreign Currency Market\">");
+        for (int i = 0; i < VALUTES.length; i++) {
+            String[] valute = VALUTES[i];
+            double unitRate = Double.parseDouble(valute[4].replace(',', '.')) / Integer.parseInt(valute[2]);
+            xml.append("<Valute ID=\"R0").append(1000 + i).append("\">")
+                    .append("<NumCode>").append(valute[0]).append("</NumCode>")
+                    .append("<CharCode>").append(valute[1]).append("</CharCode>")
+                    .append("<Nominal>").append(valute[2]).append("</Nominal>")
+                    .append("<Name>").append(valute[3]).append("</Name>")
+                    .append("<Value>").append(valute[4]).append("</Value>")
+                    .append("<VunitRate>").append(String.format(Locale.ROOT, "%.6f", unitRate).replace('.', ','))
+                    .append("</VunitRate>")
+                    .append("</Valute>");
+        }
+        return xml.append("</ValCurs>").toString().getBytes(CBR_CHARSET);
+    }
+
+    /**
+     * Снимок курсов из {@link #dailyRates()}, разобранный боевым парсером.
+     */
+    static RateSnapshot snapshot() {
+        return new CbrRatesXmlParser().parse(new ByteArrayInputStream(dailyRates()), Instant.now());
+    }
+}
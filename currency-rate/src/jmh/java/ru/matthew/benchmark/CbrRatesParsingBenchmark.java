@@ -0,0 +1,70 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежнего DOM-разбора (строка + DocumentBuilder на каждый вызов + позиционный обход)
+ * с потоковым {@link CbrRatesXmlParser}. Аллокации смотреть с профайлером: {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CbrRatesParsingBenchmark {
+    private byte[] payload;
+    private CbrRatesXmlParser staxParser;
+
+    @Setup
+    public void setUp() {
+        payload = CbrPayloads.dailyRates();
+        staxParser = new CbrRatesXmlParser();
+    }
+
+    @Benchmark
+    public Map<String, Double> dom() throws Exception {
+        // Повторяет путь до перехода на StAX: тело ответа как String, затем DOM
+        String xmlResponse = new String(payload, CbrPayloads.CBR_CHARSET);
+        DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document xmlDoc = dBuilder.parse(new InputSource(new StringReader(xmlResponse)));
+
+        Map<String, Double> rates = new HashMap<>();
+        NodeList nList = xmlDoc.getElementsByTagName("Valute");
+        for (int i = 0; i < nList.getLength(); i++) {
+            String currencyCode = nList.item(i).getChildNodes().item(1).getTextContent();
+            double rate = Double.parseDouble(nList.item(i).getChildNodes().item(5).
+                    getTextContent().replace(",", "."));
+            rates.put(currencyCode, rate);
+        }
+        return rates;
+    }
+
+    @Benchmark
+    public RateSnapshot stax() {
+        return staxParser.parse(new ByteArrayInputStream(payload), Instant.EPOCH);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.matthew.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * Заглушка XML_daily.asp для нагрузочного теста: отвечает полным ответом ЦБ с заданной задержкой,
+ * дата публикации берётся из {@code date_req}. Запуск:
+ * {@code java -cp currency-rate-1.0-SNAPSHOT-jmh.jar ru.matthew.benchmark.CbrStubServer [port] [latencyMs]}.
+ */
+public final class CbrStubServer {
+    private CbrStubServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 10_000);
+        server.createContext("/scripts/XML_daily.asp", exchange -> respond(exchange, latencyMillis));
+        // Заглушка не должна ограничивать число одновременно ожидающих ответа вызовов
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        System.out.printf("CBR stub listening on %d, latency %d ms%n", port, latencyMillis);
+    }
+
+    private static void respond(HttpExchange exchange, long latencyMillis) throws IOException {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String query = exchange.getRequestURI().getQuery();
+        String date = "18.10.2026";
+        if (query != null && query.startsWith("date_req=")) {
+            date = query.substring("date_req=".length()).replace('/', '.');
+        }
+        byte[] body = CbrPayloads.dailyRates(date);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=windows-1251");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
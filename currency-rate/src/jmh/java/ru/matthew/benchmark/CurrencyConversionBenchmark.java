@@ -0,0 +1,100 @@
+package ru.matthew.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestClient;
+import ru.matthew.client.CbrRatesClient;
+import ru.matthew.dto.CurrencyConversionResponse;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+import ru.matthew.service.CurrencyCodeValidator;
+import ru.matthew.service.CurrencyRateCacheService;
+import ru.matthew.service.CurrencyService;
+import ru.matthew.service.MinorUnitsConverter;
+import ru.matthew.storage.RateSnapshotFileStore;
+
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка кода валюты (прежний перебор {@link Currency#getAvailableCurrencies()} против битовой карты)
+ * и полный {@link CurrencyService#convertCurrency} (double и точный в минорных единицах) на готовом снимке курсов.
+ * Аллокации на операцию смотреть с {@code -prof gc} (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrencyConversionBenchmark {
+    private CurrencyCodeValidator validator;
+    private CurrencyService currencyService;
+    private String[] codes;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        RateSnapshot snapshot = CbrPayloads.snapshot();
+
+        validator = new CurrencyCodeValidator();
+        currencyService = new CurrencyService(new FixedRatesCacheService(snapshot), validator,
+                Validation.buildDefaultValidatorFactory().getValidator(), new MinorUnitsConverter(RoundingMode.HALF_EVEN),
+                null); // архив в бенчмарке не используется
+        codes = new String[CbrPayloads.VALUTES.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = CbrPayloads.VALUTES[i][1];
+        }
+    }
+
+    @Benchmark
+    public boolean availableCurrenciesScan() {
+        String code = nextCode();
+        return Currency.getAvailableCurrencies().stream()
+                .noneMatch(currency -> currency.getCurrencyCode().equals(code));
+    }
+
+    @Benchmark
+    public boolean bitsetValidator() {
+        return validator.isSupported(nextCode());
+    }
+
+    @Benchmark
+    public double convertCurrency() {
+        return currencyService.convertCurrency(nextCode(), nextCode(), 100.0);
+    }
+
+    @Benchmark
+    public CurrencyConversionResponse convertCurrencyPrecisely() {
+        return currencyService.convertCurrencyPrecisely(nextCode(), nextCode(), 100.0, RoundingMode.HALF_EVEN);
+    }
+
+    private String nextCode() {
+        return codes[cursor++ % codes.length];
+    }
+
+    private static final class FixedRatesCacheService extends CurrencyRateCacheService {
+        private final RateSnapshot snapshot;
+
+        private FixedRatesCacheService(RateSnapshot snapshot) {
+            super(new CbrRatesClient(RestClient.builder(), new CbrRatesXmlParser(), ""), new SimpleMeterRegistry(), new RateSnapshotFileStore(""));
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public RateSnapshot getCurrencyRates() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.matthew.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Нагрузочный прогон currency-rate: {@code concurrency} соединений без пауз запрашивают
+ * {@code /currencies/rates/USD?date=} на случайные прошедшие даты, так что почти каждый запрос
+ * ждёт ответа {@link CbrStubServer}. Печатает пропускную способность, p50/p99 и пиковое число потоков сервиса.
+ * <p>
+ * Виртуальные потоки в поставляемых настройках не включены, пока этот прогон не покажет их выигрыш.
+ * Сравнение режимов (JDK 21+, на JDK 17 приложение с включёнными виртуальными потоками не запустится):
+ * <pre>
+ * java -cp currency-rate-1.0-SNAPSHOT-jmh.jar ru.matthew.benchmark.CbrStubServer 8089 200
+ * java -jar currency-rate.jar --spring.profiles.active=loadtest
+ * java -cp currency-rate-1.0-SNAPSHOT-jmh.jar ru.matthew.benchmark.LoadTestDriver http://localhost:8080 10000 60
+ * </pre>
+ * затем то же с {@code --spring.threads.virtual.enabled=true} и очищенным каталогом архива.
+ * Для 10k соединений нужен {@code ulimit -n} не меньше 30000 у всех трёх процессов.
+ */
+public final class LoadTestDriver {
+    private static final int MAX_SAMPLES = 1 << 22;
+    private static final LocalDate FIRST_DATE = LocalDate.of(1993, 1, 1);
+
+    private LoadTestDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long durationSeconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        AtomicLongArray latencies = new AtomicLongArray(MAX_SAMPLES);
+        AtomicInteger samples = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+        int days = (int) (LocalDate.now().toEpochDay() - FIRST_DATE.toEpochDay());
+
+        long started = System.nanoTime();
+        Thread[] workers = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            // Каждый воркер — одно соединение с последовательными запросами
+            workers[i] = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    LocalDate date = FIRST_DATE.plusDays(ThreadLocalRandom.current().nextInt(days));
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/currencies/rates/USD?date=" + date))
+                            .timeout(Duration.ofSeconds(60))
+                            .build();
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    int sample = samples.getAndIncrement();
+                    if (sample < MAX_SAMPLES) {
+                        latencies.set(sample, System.nanoTime() - begin);
+                    }
+                }
+            }, "load-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        int count = Math.min(samples.get(), MAX_SAMPLES);
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        System.out.printf("requests: %d ok, %d errors in %.1f s%n", samples.get(), errors.get(), elapsedSeconds);
+        System.out.printf("throughput: %.0f req/s%n", samples.get() / elapsedSeconds);
+        if (count > 0) {
+            System.out.printf("latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[count - 1] / 1e6);
+        }
+        System.out.printf("server threads: live %s, peak %s%n",
+                metric(client, baseUrl, "jvm.threads.live"), metric(client, baseUrl, "jvm.threads.peak"));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static String metric(HttpClient client, String baseUrl, String name) {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            JsonNode measurements = new ObjectMapper().readTree(response.body()).path("measurements");
+            return measurements.path(0).path("value").asText("n/a");
+        } catch (Exception e) {
+            return "n/a";
+        }
+    }
+}
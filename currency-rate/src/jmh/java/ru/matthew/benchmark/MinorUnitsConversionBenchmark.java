@@ -0,0 +1,80 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.service.MinorUnitsConverter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика одной конвертации на готовых индексах: прежний double через матрицу кросс-курсов,
+ * точная конвертация {@link MinorUnitsConverter} и та же точная формула через {@link BigDecimal}.
+ * Аллокации на операцию смотреть с {@code -prof gc} (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinorUnitsConversionBenchmark {
+    private RateSnapshot snapshot;
+    private MinorUnitsConverter converter;
+    private int[] indexes;
+    private int cursor;
+    private double amount = 1234.56;
+    private long amountMinorUnits = 123_456L;
+
+    @Setup
+    public void setUp() {
+        snapshot = CbrPayloads.snapshot();
+        converter = new MinorUnitsConverter(RoundingMode.HALF_EVEN);
+        indexes = new int[snapshot.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        // Строки матрицы прогреваются заранее, чтобы double-путь мерился без ленивого построения
+        for (int from = 0; from < snapshot.size(); from++) {
+            snapshot.getCrossRates().row(from);
+        }
+    }
+
+    @Benchmark
+    public double doubleCrossRate() {
+        return amount * snapshot.getCrossRates().rate(nextIndex(), nextIndex());
+    }
+
+    @Benchmark
+    public long minorUnits() {
+        return converter.convert(snapshot, nextIndex(), nextIndex(), amountMinorUnits, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public long bigDecimal() {
+        int from = nextIndex();
+        int to = nextIndex();
+        BigDecimal numerator = BigDecimal.valueOf(amountMinorUnits)
+                .multiply(BigDecimal.valueOf(snapshot.value(from)))
+                .multiply(BigDecimal.valueOf(snapshot.nominal(to)))
+                .scaleByPowerOfTen(snapshot.fractionDigits(to));
+        BigDecimal denominator = BigDecimal.valueOf(snapshot.value(to))
+                .multiply(BigDecimal.valueOf(snapshot.nominal(from)))
+                .scaleByPowerOfTen(snapshot.fractionDigits(from));
+        return numerator.divide(denominator, 0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private int nextIndex() {
+        return indexes[cursor++ % indexes.length];
+    }
+}
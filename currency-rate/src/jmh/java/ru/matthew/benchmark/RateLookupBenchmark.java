@@ -0,0 +1,83 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.model.RateSnapshot;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одной конвертации: прежний {@code Map<String, Double>} против {@link RateSnapshot}
+ * (два курса и деление) и против строки матрицы кросс-курсов (одно чтение и умножение).
+ * Аллокации на операцию смотреть с {@code -prof gc} (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLookupBenchmark {
+    private Map<String, Double> map;
+    private RateSnapshot snapshot;
+    private String[] codes;
+    private int cursor;
+    private double amount = 100.0;
+
+    @Setup
+    public void setUp() {
+        map = new HashMap<>();
+        RateSnapshot.Builder builder = RateSnapshot.builder(LocalDate.now(), Instant.now());
+        for (String[] valute : CbrPayloads.VALUTES) {
+            double rate = Double.parseDouble(valute[4].replace(',', '.')) / Integer.parseInt(valute[2]);
+            map.put(valute[1], rate);
+            builder.add(valute[1], rate);
+        }
+        snapshot = builder.build();
+        codes = new String[CbrPayloads.VALUTES.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = CbrPayloads.VALUTES[i][1];
+        }
+    }
+
+    @Benchmark
+    public double map() {
+        String from = nextCode();
+        String to = nextCode();
+        Double fromRate = map.get(from);
+        Double toRate = map.get(to);
+        return (amount * fromRate) / toRate;
+    }
+
+    @Benchmark
+    public double snapshot() {
+        String from = nextCode();
+        String to = nextCode();
+        double fromRate = snapshot.rate(snapshot.indexOf(from));
+        double toRate = snapshot.rate(snapshot.indexOf(to));
+        return (amount * fromRate) / toRate;
+    }
+
+    @Benchmark
+    public double crossRateMatrix() {
+        String from = nextCode();
+        String to = nextCode();
+        return amount * snapshot.getCrossRates().rate(snapshot.indexOf(from), snapshot.indexOf(to));
+    }
+
+    private String nextCode() {
+        return codes[cursor++ % codes.length];
+    }
+}
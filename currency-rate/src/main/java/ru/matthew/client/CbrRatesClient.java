@@ -0,0 +1,115 @@
+package ru.matthew.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import ru.matthew.exception.ServiceUnavailableException;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Клиент XML_daily.asp ЦБ РФ: текущие курсы и архив на дату через параметр {@code date_req}.
+ * Динамика одной валюты за период - одним запросом к XML_dynamic.asp рядом с ним;
+ * идентификаторы валют для неё берутся из справочника XML_val.asp и запоминаются.
+ */
+@Component
+@Slf4j
+public class CbrRatesClient {
+    private static final DateTimeFormatter DATE_REQ_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final RestClient restClient;
+    private final CbrRatesXmlParser ratesXmlParser;
+    private final String cbrApiUrl;
+    private volatile Map<String, String> currencyIds;
+
+    public CbrRatesClient(RestClient.Builder restClientBuilder,
+                          CbrRatesXmlParser ratesXmlParser,
+                          @Value("${cbr.api.url}") String cbrApiUrl) {
+        this.restClient = restClientBuilder.build();
+        this.ratesXmlParser = ratesXmlParser;
+        this.cbrApiUrl = cbrApiUrl;
+    }
+
+    public RateSnapshot fetchDailyRates() {
+        return fetch(URI.create(cbrApiUrl));
+    }
+
+    /**
+     * Курсы, действовавшие на дату; в выходные ЦБ отдаёт последнюю публикацию перед ней.
+     */
+    public RateSnapshot fetchDailyRates(LocalDate date) {
+        return fetch(UriComponentsBuilder.fromUriString(cbrApiUrl)
+                .queryParam("date_req", date.format(DATE_REQ_FORMAT))
+                .build()
+                .toUri());
+    }
+
+    /**
+     * Курсы валюты на каждую дату их установления в отрезке включительно, по возрастанию дат.
+     *
+     * @return пустой список, если ЦБ не ведёт курс этой валюты
+     */
+    public List<RateSnapshot> fetchDynamicRates(String code, LocalDate from, LocalDate to) {
+        String cbrId = currencyIds().get(code);
+        if (cbrId == null) {
+            log.warn("Валюта {} не найдена в справочнике ЦБ", code);
+            return List.of();
+        }
+        URI uri = UriComponentsBuilder.fromUri(URI.create(cbrApiUrl).resolve("XML_dynamic.asp"))
+                .queryParam("date_req1", from.format(DATE_REQ_FORMAT))
+                .queryParam("date_req2", to.format(DATE_REQ_FORMAT))
+                .queryParam("VAL_NM_RQ", cbrId)
+                .build()
+                .toUri();
+        return fetch(uri, body -> ratesXmlParser.parseDynamic(body, code, Instant.now()));
+    }
+
+    private Map<String, String> currencyIds() {
+        Map<String, String> ids = currencyIds;
+        if (ids == null) {
+            // Справочник не меняется, одновременная первая загрузка из двух потоков безвредна
+            ids = fetch(URI.create(cbrApiUrl).resolve("XML_val.asp?d=0"), ratesXmlParser::parseCurrencyIds);
+            currencyIds = ids;
+        }
+        return ids;
+    }
+
+    private RateSnapshot fetch(URI uri) {
+        return fetch(uri, body -> ratesXmlParser.parse(body, Instant.now()));
+    }
+
+    private <T> T fetch(URI uri, Function<InputStream, T> parser) {
+        log.info("Запрос курсов валют из внешнего API: {}", uri);
+        try {
+            // Ответ разбирается прямо из потока, без промежуточной строки и DOM
+            return restClient
+                    .get()
+                    .uri(uri)
+                    .header("Content-Type", "application/xml")
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new RestClientResponseException("Ошибка ответа API курсов валют",
+                                    response.getStatusCode(), response.getStatusText(),
+                                    response.getHeaders(), null, null);
+                        }
+                        return parser.apply(response.getBody());
+                    });
+        } catch (RestClientException e) {
+            log.error("Ошибка при запросе курсов валют: {}", e.getMessage(), e);
+            throw new ServiceUnavailableException("Currency service is unavailable", 3600);
+        }
+    }
+}
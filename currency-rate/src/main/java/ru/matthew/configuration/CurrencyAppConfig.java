@@ -1,19 +1,41 @@
 package ru.matthew.configuration;
 
-import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 
 @Configuration
-@EnableCaching
 @EnableScheduling
 
 public class CurrencyAppConfig {
+    // Spring Boot молча пропускает spring.threads.virtual.enabled на JDK ниже 21, и включённая настройка
+    // оставила бы приложение на платформенных потоках
+    public CurrencyAppConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Виртуальные потоки требуют JDK 21+, приложение запущено на JDK "
+                    + Runtime.version().feature());
+        }
+    }
+
+    // Без таймаутов зависший ответ ЦБ держит поток запроса бесконечно, будь он платформенный или виртуальный.
+    // Таймауты ставятся на билдер Spring Boot, чтобы его конвертеры и наблюдение за запросами сохранились
     @Bean
-    public RestClient.Builder restClientBuilder() {
-        return RestClient.builder();
+    public RestClientCustomizer timeoutRestClientCustomizer(@Value("${cbr.api.connect-timeout:PT5S}") Duration connectTimeout,
+                                                            @Value("${cbr.api.read-timeout:PT10S}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        return builder -> {
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(readTimeout);
+            builder.requestFactory(requestFactory);
+        };
     }
 }
@@ -1,5 +1,10 @@
 package ru.matthew.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -7,27 +12,42 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.matthew.dto.CrossRatesResponse;
 import ru.matthew.dto.CurrencyConversionRequest;
 import ru.matthew.dto.CurrencyConversionResponse;
+import ru.matthew.dto.CurrencyConversionResult;
+import ru.matthew.dto.CurrencyRateRangeResponse;
 import ru.matthew.dto.CurrencyRateResponse;
 import ru.matthew.dto.ErrorResponse;
+import ru.matthew.model.RateSnapshot;
 import ru.matthew.service.CurrencyService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
 @Tag(name = "CurrencyController", description = "Контроллер для работы с валютами")
 @RestController
 @RequestMapping("/currencies")
 @Slf4j
 public class CurrencyController {
     private final CurrencyService currencyService;
+    private final ObjectMapper objectMapper;
 
-    public CurrencyController(CurrencyService currencyService) {
+    public CurrencyController(CurrencyService currencyService, ObjectMapper objectMapper) {
         this.currencyService = currencyService;
+        this.objectMapper = objectMapper;
     }
 
-    @Operation(summary = "Получить курс валюты", description = "Возвращает курс для указанного кода валюты")
+    @Operation(summary = "Получить курс валюты",
+            description = "Возвращает курс для указанного кода валюты, на текущую или на прошедшую дату")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Конвертация успешна",
                     content = @Content(mediaType = "application/json", schema =
@@ -60,12 +80,74 @@ public class CurrencyController {
                             )))
     })
     @GetMapping("/rates/{code}")
-    public CurrencyRateResponse getCurrencyRate(@PathVariable String code) {
-        log.info("Получен запрос на получение курса валюты для кода: {}", code);
-        return currencyService.searchCurrencyRate(code);
+    public CurrencyRateResponse getCurrencyRate(@PathVariable String code,
+                                                @RequestParam(required = false)
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.info("Получен запрос на получение курса валюты для кода: {}, дата: {}", code, date);
+        return currencyService.searchCurrencyRate(code, date);
+    }
+
+    @Operation(summary = "Получить курсы валюты за период",
+            description = "Возвращает курсы ЦБ РФ по дням за прошедший период; недостающие даты догружаются из архива ЦБ")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Курсы получены",
+                    content = @Content(mediaType = "application/json", schema =
+                    @Schema(implementation = CurrencyRateRangeResponse.class), examples = @ExampleObject(value = """
+                                {
+                                    "code": "USD",
+                                    "from": "2024-01-09",
+                                    "to": "2024-01-10",
+                                    "rates": [
+                                        {"date": "2024-01-09", "rate": 90.4158},
+                                        {"date": "2024-01-10", "rate": 90.4158}
+                                    ]
+                                }
+                            """))),
+            @ApiResponse(responseCode = "400", description = "Неподдерживаемый код валюты или некорректный период",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Курсы валюты за период не найдены",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Архив ЦБ РФ недоступен",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/rates/{code}/range")
+    public CurrencyRateRangeResponse getCurrencyRates(@PathVariable String code,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Получен запрос курсов валюты {} за период {} - {}", code, from, to);
+        return currencyService.searchCurrencyRates(code, from, to);
+    }
+
+    @Operation(summary = "Получить кросс-курсы",
+            description = "Возвращает матрицу кросс-курсов текущего снимка или одну её строку для базовой валюты")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Кросс-курсы получены",
+                    content = @Content(mediaType = "application/json", schema =
+                    @Schema(implementation = CrossRatesResponse.class), examples = @ExampleObject(value = """
+                                {
+                                    "date": "2026-10-18",
+                                    "base": "USD",
+                                    "rates": {"USD": {"RUB": 96.088, "USD": 1.0, "EUR": 0.9178}}
+                                }
+                            """))),
+            @ApiResponse(responseCode = "400", description = "Неподдерживаемый код валюты",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Курс базовой валюты не найден",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("/cross-rates")
+    public CrossRatesResponse getCrossRates(@RequestParam(required = false) String base) {
+        log.info("Получен запрос кросс-курсов, базовая валюта: {}", base);
+        return currencyService.getCrossRates(base);
     }
 
-    @Operation(summary = "Конвертировать валюту", description = "Конвертирует сумму из одной валюты в другую")
+    @Operation(summary = "Конвертировать валюту", description = "Конвертирует сумму из одной валюты в другую. " +
+            "С precise=true считает точно в минорных единицах целевой валюты с заданным режимом округления")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Конвертация успешна",
                     content = @Content(mediaType = "application/json", schema =
@@ -76,7 +158,8 @@ public class CurrencyController {
                                     "convertedAmount": 7500.0
                                 }
                             """))),
-            @ApiResponse(responseCode = "400", description = "Неподдерживаемый код валюты",
+            @ApiResponse(responseCode = "400", description = "Неподдерживаемый код валюты или сумма, " +
+                    "которую нельзя точно выразить в минорных единицах",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ErrorResponse.class),
                             examples = @ExampleObject(
@@ -104,9 +187,86 @@ public class CurrencyController {
                 request.getAmount(),
                 request.getFromCurrency(),
                 request.getToCurrency());
+        if (request.isPrecise()) {
+            return currencyService.convertCurrencyPrecisely(request.getFromCurrency(),
+                    request.getToCurrency(),
+                    request.getAmount(),
+                    request.getRoundingMode());
+        }
         double convertedAmount = currencyService.convertCurrency(request.getFromCurrency(),
                 request.getToCurrency(),
                 request.getAmount());
         return new CurrencyConversionResponse(request.getFromCurrency(), request.getToCurrency(), convertedAmount);
     }
+
+    @Operation(summary = "Пакетная конвертация валют",
+            description = "Принимает JSON-массив или NDJSON-поток запросов на конвертацию и потоково возвращает " +
+                    "результаты в том же формате. Ошибка отдельного элемента возвращается в его поле error")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан",
+                    content = @Content(mediaType = "application/json", schema =
+                    @Schema(implementation = CurrencyConversionResult.class), examples = @ExampleObject(value = """
+                                [
+                                    {"index": 0, "fromCurrency": "USD", "toCurrency": "RUB", "convertedAmount": 7500.0},
+                                    {"index": 1, "fromCurrency": "USD", "toCurrency": "XXX",
+                                     "error": "Currency rate not found for code: XXX"}
+                                ]
+                            """))),
+            @ApiResponse(responseCode = "503", description = "Сервис курсов валют недоступен",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping(value = "/convert/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void convertCurrencyBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()));
+        // Снимок берётся один раз на весь пакет и до начала записи ответа, чтобы 503 ушёл обычным путём
+        RateSnapshot rates = currencyService.getCurrencyRates();
+
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        int index = 0;
+        try (MappingIterator<CurrencyConversionRequest> items = objectMapper
+                .readerFor(CurrencyConversionRequest.class)
+                .readValues(request.getInputStream());
+             JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+            while (true) {
+                CurrencyConversionResult result;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    result = currencyService.convertCurrency(rates, index, items.nextValue());
+                } catch (JsonParseException e) {
+                    // Поток запросов дальше не читается: сообщаем об ошибке последним элементом
+                    writeResult(generator, new CurrencyConversionResult(index, null, null, null,
+                            "Malformed conversion request: " + e.getOriginalMessage()), ndjson);
+                    break;
+                } catch (JsonProcessingException e) {
+                    // Синтаксис цел, но элемент не стал запросом (null, значение не того типа):
+                    // итератор пропускает его до следующего элемента
+                    result = new CurrencyConversionResult(index, null, null, null,
+                            "Invalid conversion request: " + e.getOriginalMessage());
+                }
+                writeResult(generator, result, ndjson);
+                index++;
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+        log.info("Пакетная конвертация завершена, обработано элементов: {}", index);
+    }
+
+    private void writeResult(JsonGenerator generator, CurrencyConversionResult result, boolean ndjson) throws IOException {
+        generator.writeObject(result);
+        if (ndjson) {
+            generator.writeRaw('\n');
+        }
+    }
 }
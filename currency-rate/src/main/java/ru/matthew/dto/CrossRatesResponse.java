@@ -0,0 +1,24 @@
+package ru.matthew.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Матрица кросс-курсов: сколько единиц валюты столбца стоит единица валюты строки")
+public class CrossRatesResponse {
+    @Schema(description = "Дата публикации курсов ЦБ РФ")
+    private LocalDate date;
+    @Schema(description = "Базовая валюта, если ответ ограничен одной строкой")
+    private String base;
+    @Schema(description = "Кросс-курсы по строкам: код валюты строки -> код валюты столбца -> курс")
+    private Map<String, Map<String, Double>> rates;
+}
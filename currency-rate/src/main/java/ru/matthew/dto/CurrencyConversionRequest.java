@@ -8,6 +8,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.RoundingMode;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -25,4 +27,8 @@ public class CurrencyConversionRequest {
     @Positive(message = "Amount must be greater than zero")
     @Schema(description = "Сумма к конвертации")
     private Double amount;
+    @Schema(description = "Точная конвертация в минорных единицах валюты вместо double")
+    private boolean precise;
+    @Schema(description = "Режим округления точной конвертации, по умолчанию из настроек сервиса")
+    private RoundingMode roundingMode;
 }
@@ -1,15 +1,19 @@
 package ru.matthew.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.RoundingMode;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Hidden
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "Сущность ответа на конвертацию валюты")
 public class CurrencyConversionResponse {
     @Schema(description = "Из какой валюты происходила конвертация")
@@ -18,4 +22,14 @@ public class CurrencyConversionResponse {
     private String toCurrency;
     @Schema(description = "Сконвертированное значение")
     private double convertedAmount;
+    @Schema(description = "Сконвертированное значение в минорных единицах, только для точной конвертации")
+    private Long convertedAmountMinorUnits;
+    @Schema(description = "Число знаков минорных единиц целевой валюты, только для точной конвертации")
+    private Integer fractionDigits;
+    @Schema(description = "Применённый режим округления, только для точной конвертации")
+    private RoundingMode roundingMode;
+
+    public CurrencyConversionResponse(String fromCurrency, String toCurrency, double convertedAmount) {
+        this(fromCurrency, toCurrency, convertedAmount, null, null, null);
+    }
 }
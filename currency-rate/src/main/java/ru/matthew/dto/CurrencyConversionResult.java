@@ -0,0 +1,34 @@
+package ru.matthew.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Результат конвертации одного элемента пакета")
+public class CurrencyConversionResult {
+    @Schema(description = "Порядковый номер элемента в пакете")
+    private int index;
+    @Schema(description = "Из какой валюты происходила конвертация")
+    private String fromCurrency;
+    @Schema(description = "В какую валюту происходила конвертация")
+    private String toCurrency;
+    @Schema(description = "Сконвертированное значение, если конвертация успешна")
+    private Double convertedAmount;
+    @Schema(description = "Сконвертированное значение в минорных единицах, только для точной конвертации")
+    private Long convertedAmountMinorUnits;
+    @Schema(description = "Число знаков минорных единиц целевой валюты, только для точной конвертации")
+    private Integer fractionDigits;
+    @Schema(description = "Сообщение об ошибке, если элемент не сконвертирован")
+    private String error;
+
+    public CurrencyConversionResult(int index, String fromCurrency, String toCurrency, Double convertedAmount,
+                                    String error) {
+        this(index, fromCurrency, toCurrency, convertedAmount, null, null, error);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.matthew.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Курсы валюты за период")
+public class CurrencyRateRangeResponse {
+    @Schema(description = "Строковый код валюты")
+    private String code;
+    @Schema(description = "Начало периода включительно")
+    private LocalDate from;
+    @Schema(description = "Конец периода включительно")
+    private LocalDate to;
+    @Schema(description = "Курсы по дням; дни, когда ЦБ не публиковал курс валюты, пропущены")
+    private List<DailyRate> rates;
+}
@@ -1,19 +1,29 @@
 package ru.matthew.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDate;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Hidden
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Schema(description = "Сущность запроса на получение значения валюты")
 public class CurrencyRateResponse {
     @Schema(description = "Строковый код валюты")
     private String code;
     @Schema(description = "Значение валюты")
     private double rate;
+    @Schema(description = "Дата, на которую запрошен курс, только для исторических курсов")
+    private LocalDate date;
+
+    public CurrencyRateResponse(String code, double rate) {
+        this(code, rate, null);
+    }
 }
@@ -0,0 +1,19 @@
+package ru.matthew.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Курс валюты на одну дату")
+public class DailyRate {
+    @Schema(description = "Дата, на которую запрошен курс")
+    private LocalDate date;
+    @Schema(description = "Значение валюты")
+    private double rate;
+}
@@ -0,0 +1,7 @@
+package ru.matthew.exception;
+
+public class InvalidAmountException extends RuntimeException {
+    public InvalidAmountException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.matthew.exception;
+
+public class InvalidDateException extends RuntimeException {
+    public InvalidDateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.matthew.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Плотная матрица кросс-курсов N×N для одного снимка: {@code row(from)[to] = rate(from) / rate(to)}.
+ * Строки строятся лениво при первом обращении, поэтому обновление снимка платит только за используемые строки.
+ */
+public final class CrossRateMatrix {
+    private final double[] rates;
+    private final AtomicReferenceArray<double[]> rows;
+
+    CrossRateMatrix(double[] rates) {
+        this.rates = rates;
+        this.rows = new AtomicReferenceArray<>(rates.length);
+    }
+
+    public double rate(int from, int to) {
+        return row(from)[to];
+    }
+
+    /**
+     * Строка кросс-курсов для валюты {@code from}; массив разделяется между вызовами и не должен изменяться.
+     */
+    public double[] row(int from) {
+        double[] row = rows.get(from);
+        if (row == null) {
+            row = computeRow(from);
+            // Гонка безвредна: строки одинаковые, остаётся первая опубликованная
+            if (!rows.compareAndSet(from, null, row)) {
+                row = rows.get(from);
+            }
+        }
+        return row;
+    }
+
+    private double[] computeRow(int from) {
+        double fromRate = rates[from];
+        double[] row = new double[rates.length];
+        for (int to = 0; to < rates.length; to++) {
+            row[to] = fromRate / rates[to];
+        }
+        return row;
+    }
+}
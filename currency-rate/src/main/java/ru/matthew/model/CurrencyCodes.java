@@ -0,0 +1,39 @@
+package ru.matthew.model;
+
+/**
+ * Отображение трёхбуквенного кода ISO 4217 в число 0..26³-1 без хеширования и аллокаций.
+ */
+public final class CurrencyCodes {
+    public static final int CODE_SPACE = 26 * 26 * 26;
+
+    private CurrencyCodes() {
+    }
+
+    /**
+     * @return индекс кода либо -1, если строка не состоит ровно из трёх латинских заглавных букв
+     */
+    public static int index(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int first = code.charAt(0) - 'A';
+        int second = code.charAt(1) - 'A';
+        int third = code.charAt(2) - 'A';
+        if ((first | second | third) < 0 || first >= 26 || second >= 26 || third >= 26) {
+            return -1;
+        }
+        return (first * 26 + second) * 26 + third;
+    }
+
+    public static String code(int index) {
+        if (index < 0 || index >= CODE_SPACE) {
+            throw new IllegalArgumentException("Currency code index out of range: " + index);
+        }
+        char[] chars = {
+                (char) ('A' + index / (26 * 26)),
+                (char) ('A' + index / 26 % 26),
+                (char) ('A' + index % 26)
+        };
+        return new String(chars);
+    }
+}
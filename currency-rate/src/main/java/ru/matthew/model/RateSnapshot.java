@@ -0,0 +1,183 @@
+package ru.matthew.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Currency;
+
+/**
+ * Неизменяемый снимок курсов ЦБ РФ на дату публикации.
+ * Курсы (рублей за единицу валюты) лежат в {@code double[]} по компактному индексу валюты,
+ * индекс находится по коду через {@link CurrencyCodes} без хеширования строк и упаковки.
+ * Для точной конвертации рядом хранятся исходные {@code Value} в миллионных долях рубля и {@code Nominal},
+ * а также число знаков после запятой валюты по ISO 4217.
+ */
+public final class RateSnapshot {
+    public static final String BASE_CURRENCY = "RUB";
+    // Value хранится как целое число миллионных долей рубля: у ЦБ не больше 4 знаков, запас на VunitRate
+    public static final int VALUE_SCALE = 6;
+    public static final long VALUE_FACTOR = 1_000_000L;
+    // Для валют без минорных единиц в ISO 4217 (XDR и т. п.) считаем по две цифры
+    private static final int DEFAULT_FRACTION_DIGITS = 2;
+
+    @Getter
+    private final LocalDate publicationDate;
+    @Getter
+    private final Instant fetchedAt;
+    private final String[] codes;
+    private final double[] rates;
+    private final long[] values;
+    private final int[] nominals;
+    private final int[] fractionDigits;
+    // Индекс кода ISO -> компактный индекс + 1, 0 означает отсутствие курса
+    private final short[] positions;
+    @Getter
+    private final CrossRateMatrix crossRates;
+
+    private RateSnapshot(LocalDate publicationDate, Instant fetchedAt, String[] codes, double[] rates,
+                         long[] values, int[] nominals) {
+        this.publicationDate = publicationDate;
+        this.fetchedAt = fetchedAt;
+        this.codes = codes;
+        this.rates = rates;
+        this.values = values;
+        this.nominals = nominals;
+        this.fractionDigits = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            fractionDigits[i] = fractionDigitsOf(codes[i]);
+        }
+        this.crossRates = new CrossRateMatrix(rates);
+        this.positions = new short[CurrencyCodes.CODE_SPACE];
+        for (int i = 0; i < codes.length; i++) {
+            positions[CurrencyCodes.index(codes[i])] = (short) (i + 1);
+        }
+    }
+
+    public static Builder builder(LocalDate publicationDate, Instant fetchedAt) {
+        return new Builder(publicationDate, fetchedAt);
+    }
+
+    /**
+     * @return компактный индекс валюты либо -1, если курса для кода нет
+     */
+    public int indexOf(String code) {
+        int codeIndex = CurrencyCodes.index(code);
+        return codeIndex < 0 ? -1 : positions[codeIndex] - 1;
+    }
+
+    public double rate(int index) {
+        return rates[index];
+    }
+
+    /**
+     * @return {@code Value} ЦБ за {@link #nominal(int)} единиц валюты в миллионных долях рубля
+     */
+    public long value(int index) {
+        return values[index];
+    }
+
+    public int nominal(int index) {
+        return nominals[index];
+    }
+
+    /**
+     * @return число знаков минорных единиц валюты по ISO 4217
+     */
+    public int fractionDigits(int index) {
+        return fractionDigits[index];
+    }
+
+    public String code(int index) {
+        return codes[index];
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RateSnapshot{date=").append(publicationDate)
+                .append(", fetchedAt=").append(fetchedAt).append(", rates={");
+        for (int i = 0; i < codes.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(codes[i]).append('=').append(rates[i]);
+        }
+        return builder.append("}}").toString();
+    }
+
+    private static int fractionDigitsOf(String code) {
+        try {
+            int digits = Currency.getInstance(code).getDefaultFractionDigits();
+            return digits < 0 ? DEFAULT_FRACTION_DIGITS : digits;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_FRACTION_DIGITS;
+        }
+    }
+
+    public static final class Builder {
+        private final LocalDate publicationDate;
+        private final Instant fetchedAt;
+        private String[] codes = new String[64];
+        private double[] rates = new double[64];
+        private long[] values = new long[64];
+        private int[] nominals = new int[64];
+        private int size;
+
+        private Builder(LocalDate publicationDate, Instant fetchedAt) {
+            this.publicationDate = publicationDate;
+            this.fetchedAt = fetchedAt;
+            // Базовая валюта всегда присутствует в снимке с курсом 1
+            add(BASE_CURRENCY, 1, VALUE_FACTOR);
+        }
+
+        /**
+         * Добавляет курс в виде ЦБ: {@code value} миллионных долей рубля за {@code nominal} единиц валюты.
+         */
+        public Builder add(String code, int nominal, long value) {
+            if (nominal <= 0 || value <= 0) {
+                throw new IllegalArgumentException("Invalid rate for " + code + ": " + value + "/" + nominal);
+            }
+            return put(code, (double) value / VALUE_FACTOR / nominal, nominal, value);
+        }
+
+        /**
+         * Добавляет уже приведённый к единице валюты курс; точное значение округляется до {@link #VALUE_SCALE} знаков.
+         */
+        public Builder add(String code, double rate) {
+            return put(code, rate, 1, Math.round(rate * VALUE_FACTOR));
+        }
+
+        private Builder put(String code, double rate, int nominal, long value) {
+            if (CurrencyCodes.index(code) < 0) {
+                throw new IllegalArgumentException("Invalid currency code: " + code);
+            }
+            for (int i = 0; i < size; i++) {
+                if (codes[i].equals(code)) {
+                    rates[i] = rate;
+                    nominals[i] = nominal;
+                    values[i] = value;
+                    return this;
+                }
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                nominals = Arrays.copyOf(nominals, size * 2);
+            }
+            codes[size] = code;
+            rates[size] = rate;
+            values[size] = value;
+            nominals[size] = nominal;
+            size++;
+            return this;
+        }
+
+        public RateSnapshot build() {
+            return new RateSnapshot(publicationDate, fetchedAt, Arrays.copyOf(codes, size), Arrays.copyOf(rates, size),
+                    Arrays.copyOf(values, size), Arrays.copyOf(nominals, size));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ru.matthew.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.matthew.model.RateSnapshot;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковый (StAX) парсер ежедневных курсов ЦБ РФ (XML_daily.asp).
+ * Читает элементы {@code Valute} прямо из потока ответа, не собирая ни строку, ни DOM,
+ * и выбирает {@code CharCode}/{@code Nominal}/{@code Value} по имени, а не по позиции.
+ * Так же разбираются справочник валют (XML_val.asp) и динамика курса одной валюты (XML_dynamic.asp).
+ */
+@Component
+@Slf4j
+public class CbrRatesXmlParser {
+    private static final DateTimeFormatter CBR_DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public CbrRatesXmlParser() {
+        // Фабрика потокобезопасна после настройки, поэтому создаётся один раз
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Собирает снимок с курсами в рублях за одну единицу валюты (Value / Nominal)
+     * и датой публикации из атрибута {@code ValCurs/@Date}.
+     * Кодировку документа (windows-1251 у ЦБ) парсер берёт из XML-декларации.
+     */
+    public RateSnapshot parse(InputStream inputStream, Instant fetchedAt) {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            RateSnapshot.Builder rates = null;
+
+            String charCode = null;
+            String value = null;
+            int nominal = 1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "ValCurs" -> rates = RateSnapshot.builder(parseDate(reader), fetchedAt);
+                        case "Valute" -> {
+                            charCode = null;
+                            value = null;
+                            nominal = 1;
+                        }
+                        case "CharCode" -> charCode = reader.getElementText().trim();
+                        case "Nominal" -> nominal = Integer.parseInt(reader.getElementText().trim());
+                        case "Value" -> value = reader.getElementText();
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Valute".equals(reader.getLocalName())) {
+                    if (rates != null && charCode != null && value != null) {
+                        rates.add(charCode, nominal, parseScaledValue(value));
+                    }
+                }
+            }
+            if (rates == null) {
+                throw new XMLStreamException("Элемент ValCurs не найден");
+            }
+            return rates.build();
+        } catch (XMLStreamException | IllegalArgumentException | DateTimeParseException e) {
+            log.error("Ошибка при парсинге XML: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Справочник валют XML_val.asp: код ISO -> идентификатор ЦБ, по которому запрашивается динамика курса.
+     * Берётся {@code ParentCode}: он общий у прежних и текущих идентификаторов одной валюты.
+     */
+    public Map<String, String> parseCurrencyIds(InputStream inputStream) {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            Map<String, String> ids = new HashMap<>();
+
+            String id = null;
+            String parentCode = null;
+            String charCode = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "Item" -> {
+                            id = reader.getAttributeValue(null, "ID");
+                            parentCode = null;
+                            charCode = null;
+                        }
+                        case "ParentCode" -> parentCode = reader.getElementText().trim();
+                        case "ISO_Char_Code" -> charCode = reader.getElementText().trim();
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Item".equals(reader.getLocalName())) {
+                    String cbrId = parentCode != null && !parentCode.isEmpty() ? parentCode : id;
+                    if (charCode != null && !charCode.isEmpty() && cbrId != null) {
+                        ids.putIfAbsent(charCode, cbrId.trim());
+                    }
+                }
+            }
+            return ids;
+        } catch (XMLStreamException e) {
+            log.error("Ошибка при парсинге XML: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Динамика XML_dynamic.asp: снимок с одной валютой на каждую дату установления курса, по возрастанию дат.
+     */
+    public List<RateSnapshot> parseDynamic(InputStream inputStream, String code, Instant fetchedAt) {
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            List<RateSnapshot> publications = new ArrayList<>();
+
+            LocalDate date = null;
+            String value = null;
+            int nominal = 1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "Record" -> {
+                            date = parseDate(reader);
+                            value = null;
+                            nominal = 1;
+                        }
+                        case "Nominal" -> nominal = Integer.parseInt(reader.getElementText().trim());
+                        case "Value" -> value = reader.getElementText();
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Record".equals(reader.getLocalName())) {
+                    if (date != null && value != null) {
+                        publications.add(RateSnapshot.builder(date, fetchedAt)
+                                .add(code, nominal, parseScaledValue(value))
+                                .build());
+                    }
+                }
+            }
+            publications.sort(Comparator.comparing(RateSnapshot::getPublicationDate));
+            return publications;
+        } catch (XMLStreamException | IllegalArgumentException | DateTimeParseException e) {
+            log.error("Ошибка при парсинге XML: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static LocalDate parseDate(XMLStreamReader reader) {
+        String date = reader.getAttributeValue(null, "Date");
+        return date != null ? LocalDate.parse(date.trim(), CBR_DATE_FORMAT) : null;
+    }
+
+    /**
+     * Разбирает {@code Value} вида "96,0880" в целое число миллионных долей рубля без округлений и double.
+     */
+    static long parseScaledValue(String value) {
+        String text = value.trim();
+        if (text.isEmpty()) {
+            throw new NumberFormatException("Пустое значение курса");
+        }
+        long result = 0;
+        int fractionDigits = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == ',' || c == '.') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c < '0' || c > '9') {
+                throw new NumberFormatException("Некорректное значение курса: " + value);
+            } else if (fractionDigits == RateSnapshot.VALUE_SCALE) {
+                // Лишние значащие знаки потеряли бы точность, нули в хвосте допустимы
+                if (c != '0') {
+                    throw new NumberFormatException("Слишком много знаков после запятой: " + value);
+                }
+            } else {
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (result > (Long.MAX_VALUE - 9) / 10) {
+                    throw new NumberFormatException("Слишком большое значение курса: " + value);
+                }
+                result = result * 10 + (c - '0');
+            }
+        }
+        for (int digits = Math.max(fractionDigits, 0); digits < RateSnapshot.VALUE_SCALE; digits++) {
+            if (result > Long.MAX_VALUE / 10) {
+                throw new NumberFormatException("Слишком большое значение курса: " + value);
+            }
+            result *= 10;
+        }
+        return result;
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.debug("Не удалось закрыть XMLStreamReader: {}", e.getMessage());
+        }
+    }
+}
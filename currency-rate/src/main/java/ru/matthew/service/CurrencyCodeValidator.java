@@ -0,0 +1,29 @@
+package ru.matthew.service;
+
+import org.springframework.stereotype.Component;
+import ru.matthew.model.CurrencyCodes;
+
+import java.util.Currency;
+
+/**
+ * Проверка кодов ISO 4217 по битовой карте 26×26×26, построенной один раз при старте.
+ * Проверка выполняется за константное время и ничего не аллоцирует.
+ */
+@Component
+public class CurrencyCodeValidator {
+    private final long[] supported = new long[(CurrencyCodes.CODE_SPACE + 63) >>> 6];
+
+    public CurrencyCodeValidator() {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int index = CurrencyCodes.index(currency.getCurrencyCode());
+            if (index >= 0) {
+                supported[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    public boolean isSupported(String currencyCode) {
+        int index = CurrencyCodes.index(currencyCode);
+        return index >= 0 && (supported[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -1,91 +1,117 @@
 package ru.matthew.service;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.client.RestClientException;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import ru.matthew.exception.ServiceUnavailableException;
+import ru.matthew.client.CbrRatesClient;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.storage.RateSnapshotFileStore;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
 public class CurrencyRateCacheService {
-    @Value("${cbr.api.url}")
-    private String cbrApiUrl;
+    private final CbrRatesClient cbrRatesClient;
+    private final MeterRegistry meterRegistry;
+    private final RateSnapshotFileStore snapshotFileStore;
 
-    private final RestClient restClient;
+    // Текущий снимок отдаётся до тех пор, пока новый не будет полностью загружен
+    private final AtomicReference<RateSnapshot> currentRates = new AtomicReference<>();
+    // Загрузка, к которой присоединяются все одновременные запросы
+    private final AtomicReference<CompletableFuture<RateSnapshot>> inFlightRefresh = new AtomicReference<>();
 
-    public CurrencyRateCacheService(RestClient.Builder restClientBuilder) {
-        this.restClient = restClientBuilder.build();
+    public CurrencyRateCacheService(CbrRatesClient cbrRatesClient,
+                                    MeterRegistry meterRegistry,
+                                    RateSnapshotFileStore snapshotFileStore) {
+        this.cbrRatesClient = cbrRatesClient;
+        this.meterRegistry = meterRegistry;
+        this.snapshotFileStore = snapshotFileStore;
+        // Последние известные курсы отдаются сразу, фоновое обновление заменит их свежими
+        snapshotFileStore.load().ifPresent(currentRates::set);
+        Gauge.builder("currency.rates.staleness", this, CurrencyRateCacheService::getStalenessSeconds)
+                .description("Возраст отдаваемого снимка курсов с момента загрузки")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
 
-    @Cacheable(value = "currencyRates", unless = "#result == null")
     @CircuitBreaker(name = "currencyRateService")
-    public Map<String, Double> getCurrencyRates() {
-
-        String xmlResponse = fetchCurrencyRatesFromApi();
-        log.debug("Получен XML ответ от API: {}", xmlResponse);
-
-        Document xmlDoc = parseXmlResponse(xmlResponse);
-        log.debug("XML ответ успешно распарсен");
-
-        Map<String, Double> rates = new HashMap<>();
-        NodeList nList = xmlDoc.getElementsByTagName("Valute");
-        for (int i = 0; i < nList.getLength(); i++) {
-            String currencyCode = nList.item(i).getChildNodes().item(1).getTextContent();
-            double rate = Double.parseDouble(nList.item(i).getChildNodes().item(5).
-                    getTextContent().replace(",", "."));
-            rates.put(currencyCode, rate);
-            log.debug("Добавлен курс валюты: {} = {}", currencyCode, rate);
+    public RateSnapshot getCurrencyRates() {
+        RateSnapshot rates = currentRates.get();
+        if (rates != null) {
+            return rates;
         }
+        return refreshCurrencyRates();
+    }
 
-        log.info("Курсы валют успешно получены: {}", rates);
-        return rates;
+    // Обновление заранее, в фоне: запросы продолжают получать прежний снимок
+    @Scheduled(fixedRateString = "${cbr.rates.refresh-interval:PT55M}")
+    public void refreshCurrencyRatesAhead() {
+        try {
+            refreshCurrencyRates();
+        } catch (RuntimeException e) {
+            RateSnapshot rates = currentRates.get();
+            log.warn("Не удалось обновить курсы валют, отдаётся снимок от {}",
+                    rates != null ? rates.getFetchedAt() : null, e);
+        }
     }
 
-    private String fetchCurrencyRatesFromApi() {
-        log.info("Запрос курсов валют из внешнего API: {}", cbrApiUrl);
+    private RateSnapshot refreshCurrencyRates() {
+        CompletableFuture<RateSnapshot> refresh = new CompletableFuture<>();
+        CompletableFuture<RateSnapshot> inFlight = inFlightRefresh.compareAndExchange(null, refresh);
+        if (inFlight != null) {
+            return awaitRefresh(inFlight);
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            return restClient
-                    .get()
-                    .uri(cbrApiUrl)
-                    .header("Content-Type", "application/xml")
-                    .retrieve()
-                    .body(String.class);
-        } catch (RestClientException e) {
-            log.error("Ошибка при запросе курсов валют: {}", e.getMessage(), e);
-            throw new ServiceUnavailableException("Currency service is unavailable", 3600);
+            RateSnapshot rates = cbrRatesClient.fetchDailyRates();
+            currentRates.set(rates);
+            snapshotFileStore.save(rates);
+            sample.stop(refreshTimer("success"));
+            log.info("Курсы валют успешно получены: {}", rates);
+            refresh.complete(rates);
+            return rates;
+        } catch (RuntimeException e) {
+            sample.stop(refreshTimer("failure"));
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRefresh.compareAndSet(refresh, null);
         }
     }
 
-    private Document parseXmlResponse(String xmlResponse) {
-        log.debug("Начинается парсинг XML ответа");
+    private RateSnapshot awaitRefresh(CompletableFuture<RateSnapshot> inFlight) {
         try {
-            DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            return dBuilder.parse(new InputSource(new StringReader(xmlResponse)));
-        } catch (Exception e) {
-            log.error("Ошибка при парсинге XML: {}", e.getMessage(), e);
-            throw new RuntimeException(e);
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
-    // Метод для сброса кэша
-    @Scheduled(fixedRate = 3600000)
-    @CacheEvict(value = "currencyRates", allEntries = true)
-    public void evictCurrencyRatesCache() {
-        log.info("Кэш курсов валют сброшен");
+    private Timer refreshTimer(String outcome) {
+        return Timer.builder("currency.rates.refresh")
+                .description("Время загрузки и разбора курсов ЦБ РФ")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private double getStalenessSeconds() {
+        RateSnapshot rates = currentRates.get();
+        if (rates == null) {
+            return Double.NaN;
+        }
+        return Duration.between(rates.getFetchedAt(), Instant.now()).toMillis() / 1000.0;
     }
 }
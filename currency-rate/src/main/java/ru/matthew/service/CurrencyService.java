@@ -1,84 +1,270 @@
 package ru.matthew.service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.matthew.dto.CurrencyConversionRequest;
+import ru.matthew.dto.CurrencyConversionResponse;
+import ru.matthew.dto.CurrencyConversionResult;
+import ru.matthew.dto.CrossRatesResponse;
+import ru.matthew.dto.CurrencyRateRangeResponse;
 import ru.matthew.dto.CurrencyRateResponse;
+import ru.matthew.dto.DailyRate;
 import ru.matthew.exception.CurrencyNotFoundException;
+import ru.matthew.exception.InvalidAmountException;
 import ru.matthew.exception.UnsupportedCurrencyException;
+import ru.matthew.model.CrossRateMatrix;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.storage.StoredRates;
 
-import java.util.Currency;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class CurrencyService {
     private final CurrencyRateCacheService currencyRateCacheService;
+    private final CurrencyCodeValidator currencyCodeValidator;
+    private final Validator validator;
+    private final MinorUnitsConverter minorUnitsConverter;
+    private final HistoricalRateService historicalRateService;
 
-    public CurrencyService(CurrencyRateCacheService currencyRateCacheService) {
+    public CurrencyService(CurrencyRateCacheService currencyRateCacheService,
+                           CurrencyCodeValidator currencyCodeValidator,
+                           Validator validator,
+                           MinorUnitsConverter minorUnitsConverter,
+                           HistoricalRateService historicalRateService) {
         this.currencyRateCacheService = currencyRateCacheService;
+        this.historicalRateService = historicalRateService;
+        this.currencyCodeValidator = currencyCodeValidator;
+        this.validator = validator;
+        this.minorUnitsConverter = minorUnitsConverter;
     }
 
     public CurrencyRateResponse searchCurrencyRate(String currencyCode) {
-        if (isValidCurrencyCode(currencyCode)) {
+        if (!currencyCodeValidator.isSupported(currencyCode)) {
             log.warn("Не поддерживаемый код валюты: {}", currencyCode);
             throw new UnsupportedCurrencyException("Unsupported currency code: " + currencyCode);
         }
 
-        Map<String, Double> rates = currencyRateCacheService.getCurrencyRates();
+        RateSnapshot rates = currencyRateCacheService.getCurrencyRates();
         log.debug("Полученные курсы валют: {}", rates);
 
-        if (!rates.containsKey(currencyCode)) {
+        int index = rates.indexOf(currencyCode);
+        if (index < 0) {
             log.error("Курс валюты не найден для кода: {}", currencyCode);
             throw new CurrencyNotFoundException("Currency rate not found for code: " + currencyCode);
         }
 
-        CurrencyRateResponse response = new CurrencyRateResponse(currencyCode, rates.get(currencyCode));
+        CurrencyRateResponse response = new CurrencyRateResponse(currencyCode, rates.rate(index));
         log.info("Курс валюты {} успешно получен: {}", currencyCode, response.getRate());
         return response;
     }
 
+    /**
+     * Курс на дату: сегодняшний — из текущего снимка, прошедший — из архива.
+     */
+    public CurrencyRateResponse searchCurrencyRate(String currencyCode, LocalDate date) {
+        if (date == null || historicalRateService.isCurrent(date)) {
+            return searchCurrencyRate(currencyCode);
+        }
+        validateCurrencyCode(currencyCode);
+
+        double rate = historicalRateService.getRates(date).rate(currencyCode);
+        if (Double.isNaN(rate)) {
+            log.error("Курс валюты {} на {} не найден", currencyCode, date);
+            throw new CurrencyNotFoundException("Currency rate not found for code: " + currencyCode + " on " + date);
+        }
+        log.info("Курс валюты {} на {} успешно получен: {}", currencyCode, date, rate);
+        return new CurrencyRateResponse(currencyCode, rate, date);
+    }
+
+    public CurrencyRateRangeResponse searchCurrencyRates(String currencyCode, LocalDate from, LocalDate to) {
+        validateCurrencyCode(currencyCode);
+
+        List<DailyRate> rates = new ArrayList<>();
+        for (StoredRates stored : historicalRateService.getRates(currencyCode, from, to)) {
+            double rate = stored.rate(currencyCode);
+            if (!Double.isNaN(rate)) {
+                rates.add(new DailyRate(stored.getDate(), rate));
+            }
+        }
+        if (rates.isEmpty()) {
+            log.error("Курсы валюты {} за период {} - {} не найдены", currencyCode, from, to);
+            throw new CurrencyNotFoundException("Currency rate not found for code: " + currencyCode
+                    + " from " + from + " to " + to);
+        }
+        log.info("Курсы валюты {} за период {} - {} успешно получены: {} дат", currencyCode, from, to, rates.size());
+        return new CurrencyRateRangeResponse(currencyCode, from, to, rates);
+    }
+
     public double convertCurrency(String fromCurrency, String toCurrency, double amount) {
-        validateCurrencyCodes(fromCurrency, toCurrency);
+        validateCurrencyCode(fromCurrency);
+        validateCurrencyCode(toCurrency);
 
-        Map<String, Double> rates = currencyRateCacheService.getCurrencyRates();
+        RateSnapshot rates = currencyRateCacheService.getCurrencyRates();
         log.debug("Полученные курсы валют для конвертации: {}", rates);
 
-        double fromRate = getRate(rates, fromCurrency);
-        double toRate = getRate(rates, toCurrency);
-        log.debug("Курс для {}: {}, Курс для {}: {}", fromCurrency, fromRate, toCurrency, toRate);
+        int fromIndex = getRateIndex(rates, fromCurrency);
+        int toIndex = getRateIndex(rates, toCurrency);
 
-        double convertedAmount = (amount * fromRate) / toRate;
-        log.info("Конвертация успешна: {} {} в {} = {}", amount, fromCurrency, toCurrency, convertedAmount);
+        double crossRate = rates.getCrossRates().rate(fromIndex, toIndex);
+        double convertedAmount = amount * crossRate;
+        // Проверка уровня, чтобы не упаковывать double в аргументы лога на горячем пути
+        if (log.isDebugEnabled()) {
+            log.debug("Конвертация успешна: {} {} в {} = {} (кросс-курс {})",
+                    amount, fromCurrency, toCurrency, convertedAmount, crossRate);
+        }
         return convertedAmount;
     }
 
-    private void validateCurrencyCodes(String... currencyCodes) {
-        for (String currencyCode : currencyCodes) {
-            if (isValidCurrencyCode(currencyCode)) {
-                log.warn("Не поддерживаемый код валюты при валидации: {}", currencyCode);
-                throw new UnsupportedCurrencyException("Unsupported currency code: " + currencyCode);
+    /**
+     * Точная конвертация в минорных единицах целевой валюты; {@code roundingMode == null} означает режим из настроек.
+     * Сумма с большим числом знаков, чем допускает исходная валюта, отклоняется, а не округляется.
+     */
+    public CurrencyConversionResponse convertCurrencyPrecisely(String fromCurrency, String toCurrency, double amount,
+                                                               RoundingMode roundingMode) {
+        validateCurrencyCode(fromCurrency);
+        validateCurrencyCode(toCurrency);
+
+        RateSnapshot rates = currencyRateCacheService.getCurrencyRates();
+        int fromIndex = getRateIndex(rates, fromCurrency);
+        int toIndex = getRateIndex(rates, toCurrency);
+
+        RoundingMode mode = roundingMode != null ? roundingMode : minorUnitsConverter.getDefaultRoundingMode();
+        long convertedMinorUnits;
+        try {
+            convertedMinorUnits = convertMinorUnits(rates, fromIndex, toIndex, amount, mode);
+        } catch (ArithmeticException e) {
+            log.warn("Точная конвертация {} {} в {} невозможна: {}", amount, fromCurrency, toCurrency, e.getMessage());
+            throw new InvalidAmountException(e.getMessage());
+        }
+        int fractionDigits = rates.fractionDigits(toIndex);
+        if (log.isDebugEnabled()) {
+            log.debug("Точная конвертация успешна: {} {} в {} = {} минорных единиц ({})",
+                    amount, fromCurrency, toCurrency, convertedMinorUnits, mode);
+        }
+        return new CurrencyConversionResponse(fromCurrency, toCurrency,
+                minorUnitsConverter.toAmount(convertedMinorUnits, fractionDigits),
+                convertedMinorUnits, fractionDigits, mode);
+    }
+
+    private long convertMinorUnits(RateSnapshot rates, int fromIndex, int toIndex, double amount, RoundingMode mode) {
+        long amountMinorUnits = minorUnitsConverter.toMinorUnits(amount, rates.fractionDigits(fromIndex));
+        return minorUnitsConverter.convert(rates, fromIndex, toIndex, amountMinorUnits, mode);
+    }
+
+    /**
+     * Кросс-курсы снимка: все строки матрицы либо только строка базовой валюты, если она указана.
+     */
+    public CrossRatesResponse getCrossRates(String baseCurrency) {
+        RateSnapshot rates = currencyRateCacheService.getCurrencyRates();
+        CrossRateMatrix crossRates = rates.getCrossRates();
+
+        Map<String, Map<String, Double>> rows = new LinkedHashMap<>();
+        if (baseCurrency != null) {
+            validateCurrencyCode(baseCurrency);
+            int baseIndex = getRateIndex(rates, baseCurrency);
+            rows.put(baseCurrency, toRow(rates, crossRates.row(baseIndex)));
+        } else {
+            for (int from = 0; from < rates.size(); from++) {
+                rows.put(rates.code(from), toRow(rates, crossRates.row(from)));
             }
         }
+        log.debug("Сформированы кросс-курсы для {} валют", rows.size());
+        return new CrossRatesResponse(rates.getPublicationDate(), baseCurrency, rows);
     }
 
-    private double getRate(Map<String, Double> rates, String currency) {
-        if ("RUB".equals(currency)) {
-            return 1.0;
+    private Map<String, Double> toRow(RateSnapshot rates, double[] row) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int to = 0; to < row.length; to++) {
+            result.put(rates.code(to), row[to]);
         }
-        Double rate = rates.get(currency);
+        return result;
+    }
 
-        if (rate == null || rate.isNaN()) {
-            log.error("Курс не найден для кода: {}", currency);
-            throw new CurrencyNotFoundException("Currency rate not found for code: " + currency);
+    public RateSnapshot getCurrencyRates() {
+        return currencyRateCacheService.getCurrencyRates();
+    }
+
+    /**
+     * Конвертация одного элемента пакета по заранее полученному снимку курсов.
+     * Ошибки валидации и отсутствие курса не бросаются, а возвращаются в поле {@code error}.
+     */
+    public CurrencyConversionResult convertCurrency(RateSnapshot rates, int index, CurrencyConversionRequest request) {
+        // null в JSON-массиве - тоже ошибка элемента, а не всего пакета: ответ к этому моменту уже пишется
+        if (request == null) {
+            return new CurrencyConversionResult(index, null, null, null, "Conversion request is required");
+        }
+        String fromCurrency = request.getFromCurrency();
+        String toCurrency = request.getToCurrency();
+
+        Set<ConstraintViolation<CurrencyConversionRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String message = violations.iterator().next().getMessage();
+            return new CurrencyConversionResult(index, fromCurrency, toCurrency, null, message);
+        }
+
+        String error = checkRate(rates, fromCurrency);
+        if (error == null) {
+            error = checkRate(rates, toCurrency);
+        }
+        if (error != null) {
+            return new CurrencyConversionResult(index, fromCurrency, toCurrency, null, error);
+        }
+
+        int fromIndex = rates.indexOf(fromCurrency);
+        int toIndex = rates.indexOf(toCurrency);
+        if (request.isPrecise()) {
+            RoundingMode mode = request.getRoundingMode() != null
+                    ? request.getRoundingMode() : minorUnitsConverter.getDefaultRoundingMode();
+            try {
+                long convertedMinorUnits = convertMinorUnits(rates, fromIndex, toIndex, request.getAmount(), mode);
+                int fractionDigits = rates.fractionDigits(toIndex);
+                return new CurrencyConversionResult(index, fromCurrency, toCurrency,
+                        minorUnitsConverter.toAmount(convertedMinorUnits, fractionDigits),
+                        convertedMinorUnits, fractionDigits, null);
+            } catch (ArithmeticException e) {
+                return new CurrencyConversionResult(index, fromCurrency, toCurrency, null, e.getMessage());
+            }
         }
 
-        return rate;
+        double convertedAmount = request.getAmount() * rates.getCrossRates().rate(fromIndex, toIndex);
+        return new CurrencyConversionResult(index, fromCurrency, toCurrency, convertedAmount, null);
     }
 
-    private boolean isValidCurrencyCode(String currencyCode) {
-        boolean isValid = Currency.getAvailableCurrencies().stream()
-                .noneMatch(currency -> currency.getCurrencyCode().equals(currencyCode));
-        log.debug("Проверка кода валюты {}: {}", currencyCode, isValid);
-        return isValid;
+    private String checkRate(RateSnapshot rates, String currencyCode) {
+        if (!currencyCodeValidator.isSupported(currencyCode)) {
+            return "Unsupported currency code: " + currencyCode;
+        }
+        int rateIndex = rates.indexOf(currencyCode);
+        if (rateIndex < 0 || Double.isNaN(rates.rate(rateIndex))) {
+            return "Currency rate not found for code: " + currencyCode;
+        }
+        return null;
+    }
+
+    private void validateCurrencyCode(String currencyCode) {
+        if (!currencyCodeValidator.isSupported(currencyCode)) {
+            log.warn("Не поддерживаемый код валюты при валидации: {}", currencyCode);
+            throw new UnsupportedCurrencyException("Unsupported currency code: " + currencyCode);
+        }
+    }
+
+    private int getRateIndex(RateSnapshot rates, String currency) {
+        int index = rates.indexOf(currency);
+
+        if (index < 0 || Double.isNaN(rates.rate(index))) {
+            log.error("Курс не найден для кода: {}", currency);
+            throw new CurrencyNotFoundException("Currency rate not found for code: " + currency);
+        }
+
+        return index;
     }
 }
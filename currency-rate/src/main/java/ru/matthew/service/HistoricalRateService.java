@@ -0,0 +1,197 @@
+package ru.matthew.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.matthew.client.CbrRatesClient;
+import ru.matthew.exception.InvalidDateException;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.storage.HistoricalRateStore;
+import ru.matthew.storage.StoredRates;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Курсы на прошедшие даты: из архива, а при промахе — из архива ЦБ с сохранением навсегда,
+ * так как опубликованные курсы прошлых дней не меняются. Отдельная дата догружается запросом
+ * {@code date_req}, недостающие даты периода - одним запросом динамики валюты за весь период.
+ */
+@Service
+@Slf4j
+public class HistoricalRateService {
+    // Курсы ЦБ публикуются по московскому времени, архив XML_daily.asp начинается с 01.07.1992
+    private static final ZoneId CBR_ZONE = ZoneId.of("Europe/Moscow");
+    private static final LocalDate FIRST_RATES_DATE = LocalDate.of(1992, 7, 1);
+    // Курс действует до следующего установления; самые длинные перерывы - новогодние праздники
+    private static final int MAX_PUBLICATION_GAP_DAYS = 15;
+
+    private final HistoricalRateStore historicalRateStore;
+    private final CbrRatesClient cbrRatesClient;
+    private final int maxRangeDays;
+
+    // Загрузки по датам, к которым присоединяются одновременные запросы той же даты
+    private final ConcurrentMap<LocalDate, CompletableFuture<StoredRates>> inFlightFetches = new ConcurrentHashMap<>();
+    // Догрузка ряда валюты; второй запрос той же валюты ждёт и берёт даты из архива
+    private final ConcurrentMap<String, ReentrantLock> seriesLocks = new ConcurrentHashMap<>();
+
+    public HistoricalRateService(HistoricalRateStore historicalRateStore,
+                                 CbrRatesClient cbrRatesClient,
+                                 @Value("${cbr.rates.history.max-range-days:366}") int maxRangeDays) {
+        this.historicalRateStore = historicalRateStore;
+        this.cbrRatesClient = cbrRatesClient;
+        this.maxRangeDays = maxRangeDays;
+    }
+
+    /**
+     * @return true, если на дату отвечает текущий снимок, а не архив
+     */
+    public boolean isCurrent(LocalDate date) {
+        return date.equals(LocalDate.now(CBR_ZONE));
+    }
+
+    public StoredRates getRates(LocalDate date) {
+        validateDate(date);
+        return historicalRateStore.get(date).orElseGet(() -> fetchRates(date));
+    }
+
+    /**
+     * Курсы валюты на дни отрезка включительно: из дневных снимков архива или из ряда валюты.
+     * Недостающие дни догружаются одним запросом динамики; дни, на которые у ЦБ нет курса валюты, пропускаются,
+     * а в ряд записываются без курса, чтобы следующий запрос периода не шёл за ними в ЦБ снова.
+     */
+    public List<StoredRates> getRates(String code, LocalDate from, LocalDate to) {
+        validateDate(from);
+        validateDate(to);
+        if (from.isAfter(to)) {
+            throw new InvalidDateException("Range start " + from + " is after its end " + to);
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new InvalidDateException("Range cannot be longer than " + maxRangeDays + " days");
+        }
+
+        HistoricalRateStore series = historicalRateStore.series(code);
+        List<LocalDate> missing = new ArrayList<>();
+        List<StoredRates> result = collect(series, code, from, to, missing);
+        if (missing.isEmpty()) {
+            return result;
+        }
+        ReentrantLock lock = seriesLocks.computeIfAbsent(code, c -> new ReentrantLock());
+        lock.lock();
+        try {
+            // Пока ждали блокировку, ряд мог догрузить другой запрос
+            missing.clear();
+            result = collect(series, code, from, to, missing);
+            if (!missing.isEmpty()) {
+                fetchSeries(series, code, missing);
+                result = collect(series, code, from, to, new ArrayList<>());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    private List<StoredRates> collect(HistoricalRateStore series, String code, LocalDate from, LocalDate to,
+                                      List<LocalDate> missing) {
+        List<StoredRates> result = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            StoredRates stored = historicalRateStore.get(date).orElse(null);
+            if (stored == null) {
+                stored = series.get(date).orElse(null);
+            }
+            if (stored == null) {
+                missing.add(date);
+            } else if (!Double.isNaN(stored.rate(code))) {
+                result.add(stored);
+            }
+        }
+        return result;
+    }
+
+    private void fetchSeries(HistoricalRateStore series, String code, List<LocalDate> missing) {
+        LocalDate first = missing.get(0);
+        LocalDate last = missing.get(missing.size() - 1);
+        // Запрос с запасом назад: на первую дату может действовать курс, установленный раньше неё
+        List<RateSnapshot> publications = cbrRatesClient.fetchDynamicRates(code,
+                first.minusDays(MAX_PUBLICATION_GAP_DAYS), last);
+
+        Map<LocalDate, RateSnapshot> rates = new HashMap<>();
+        // Пустой снимок отмечает день без курса: опубликованный архив ЦБ не меняется, переспрашивать незачем
+        RateSnapshot noRate = RateSnapshot.builder(null, Instant.now()).build();
+        int found = 0;
+        int next = 0;
+        RateSnapshot current = null;
+        for (LocalDate date : missing) {
+            while (next < publications.size() && !publications.get(next).getPublicationDate().isAfter(date)) {
+                current = publications.get(next++);
+            }
+            // Курс из давней публикации не переносится: ЦБ мог перестать его устанавливать
+            if (current != null
+                    && ChronoUnit.DAYS.between(current.getPublicationDate(), date) <= MAX_PUBLICATION_GAP_DAYS) {
+                rates.put(date, current);
+                found++;
+            } else {
+                rates.put(date, noRate);
+            }
+        }
+        series.appendAll(rates);
+        log.info("Курсы {} за {} - {} загружены из архива ЦБ одним запросом, сохранено дат: {}, из них без курса: {}",
+                code, first, last, rates.size(), rates.size() - found);
+    }
+
+    private void validateDate(LocalDate date) {
+        if (date.isBefore(FIRST_RATES_DATE)) {
+            throw new InvalidDateException("Rates are available since " + FIRST_RATES_DATE);
+        }
+        if (!date.isBefore(LocalDate.now(CBR_ZONE))) {
+            throw new InvalidDateException("Historical rates are available only before today: " + date);
+        }
+    }
+
+    private StoredRates fetchRates(LocalDate date) {
+        CompletableFuture<StoredRates> fetch = new CompletableFuture<>();
+        CompletableFuture<StoredRates> inFlight = inFlightFetches.putIfAbsent(date, fetch);
+        if (inFlight != null) {
+            return awaitFetch(inFlight);
+        }
+
+        try {
+            // Пока шла проверка, дату мог сохранить завершившийся параллельный запрос
+            StoredRates stored = historicalRateStore.get(date).orElse(null);
+            if (stored == null) {
+                stored = historicalRateStore.append(date, cbrRatesClient.fetchDailyRates(date));
+                log.info("Курсы на {} загружены из архива ЦБ и сохранены", date);
+            }
+            fetch.complete(stored);
+            return stored;
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightFetches.remove(date, fetch);
+        }
+    }
+
+    private StoredRates awaitFetch(CompletableFuture<StoredRates> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.matthew.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.matthew.model.RateSnapshot;
+
+import java.math.RoundingMode;
+
+/**
+ * Точная конвертация в минорных единицах ({@code long}) по исходным Value/Nominal снимка ЦБ.
+ * Результат совпадает с {@code BigDecimal.divide(..., 0, roundingMode)}, но считается 128-битным
+ * произведением и делением на примитивах, без аллокаций на горячем пути.
+ */
+@Component
+public class MinorUnitsConverter {
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    // Целые до 2^53 представимы в double точно, дальше сумма из запроса уже искажена
+    private static final double MAX_EXACT_MINOR_UNITS = 0x1p53;
+
+    @Getter
+    private final RoundingMode defaultRoundingMode;
+
+    public MinorUnitsConverter(@Value("${currency.conversion.rounding-mode:HALF_EVEN}") RoundingMode defaultRoundingMode) {
+        this.defaultRoundingMode = defaultRoundingMode;
+    }
+
+    /**
+     * Переводит сумму в минорные единицы; сумма с лишними знаками после запятой не округляется, а отклоняется.
+     *
+     * @throws ArithmeticException если сумму нельзя представить точно
+     */
+    public long toMinorUnits(double amount, int fractionDigits) {
+        long scale = POWERS_OF_TEN[fractionDigits];
+        double scaled = amount * scale;
+        if (!(Math.abs(scaled) < MAX_EXACT_MINOR_UNITS)) {
+            throw new ArithmeticException("Amount is too large: " + amount);
+        }
+        long minorUnits = Math.round(scaled);
+        if ((double) minorUnits / scale != amount) {
+            throw new ArithmeticException("Amount has more than " + fractionDigits + " fraction digits: " + amount);
+        }
+        return minorUnits;
+    }
+
+    public double toAmount(long minorUnits, int fractionDigits) {
+        return (double) minorUnits / POWERS_OF_TEN[fractionDigits];
+    }
+
+    /**
+     * {@code amount * (value(from) / nominal(from)) / (value(to) / nominal(to))} с учётом разрядности обеих валют.
+     *
+     * @throws ArithmeticException при переполнении или если режим {@link RoundingMode#UNNECESSARY} требует округления
+     */
+    public long convert(RateSnapshot rates, int fromIndex, int toIndex, long amountMinorUnits, RoundingMode roundingMode) {
+        int fromDigits = rates.fractionDigits(fromIndex);
+        int toDigits = rates.fractionDigits(toIndex);
+        long numerator = Math.multiplyExact(rates.value(fromIndex), rates.nominal(toIndex));
+        long denominator = Math.multiplyExact(rates.value(toIndex), rates.nominal(fromIndex));
+        if (toDigits >= fromDigits) {
+            numerator = Math.multiplyExact(numerator, POWERS_OF_TEN[toDigits - fromDigits]);
+        } else {
+            denominator = Math.multiplyExact(denominator, POWERS_OF_TEN[fromDigits - toDigits]);
+        }
+
+        boolean negative = amountMinorUnits < 0;
+        long amount = negative ? Math.negateExact(amountMinorUnits) : amountMinorUnits;
+        // Оба множителя неотрицательны, поэтому знаковый multiplyHigh даёт старшие 64 бита беззнакового произведения
+        long high = Math.multiplyHigh(amount, numerator);
+        long low = amount * numerator;
+        return divide(high, low, denominator, negative, roundingMode);
+    }
+
+    /**
+     * Делит 128-битное неотрицательное {@code high:low} на положительный {@code divisor} с округлением частного.
+     */
+    static long divide(long high, long low, long divisor, boolean negative, RoundingMode roundingMode) {
+        long quotient;
+        long remainder;
+        if (high == 0 && low >= 0) {
+            quotient = low / divisor;
+            remainder = low - quotient * divisor;
+        } else {
+            if (high >= divisor) {
+                throw new ArithmeticException("Converted amount overflows long");
+            }
+            // Деление сдвигом и вычитанием: остаток всегда меньше divisor < 2^63, сдвиг не теряет бит
+            remainder = high;
+            quotient = 0;
+            for (int bit = 63; bit >= 0; bit--) {
+                remainder = (remainder << 1) | ((low >>> bit) & 1);
+                quotient <<= 1;
+                if (Long.compareUnsigned(remainder, divisor) >= 0) {
+                    remainder -= divisor;
+                    quotient |= 1;
+                }
+            }
+            if (quotient < 0) {
+                throw new ArithmeticException("Converted amount overflows long");
+            }
+        }
+
+        if (remainder != 0 && roundUp(quotient, remainder, divisor, negative, roundingMode)) {
+            quotient = Math.addExact(quotient, 1);
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    private static boolean roundUp(long quotient, long remainder, long divisor, boolean negative, RoundingMode roundingMode) {
+        return switch (roundingMode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> !negative;
+            case FLOOR -> negative;
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> {
+                // Сравнение остатка с половиной делителя без переполнения: r против d - r
+                int half = Long.compare(remainder, divisor - remainder);
+                if (half != 0) {
+                    yield half > 0;
+                }
+                yield roundingMode == RoundingMode.HALF_UP
+                        || (roundingMode == RoundingMode.HALF_EVEN && (quotient & 1) == 1);
+            }
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+    }
+}
@@ -0,0 +1,241 @@
+package ru.matthew.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.matthew.model.RateSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Архив дневных курсов: по файлу на месяц ({@code rates-2026-10.bin}), записи только дописываются.
+ * Запись — {@code int} длина, {@code long} запрошенная дата (epoch day) и снимок в формате {@link RateSnapshotCodec}.
+ * При старте файлы отображаются в память, а в индексе по дате хранятся срезы отображения;
+ * оборванный хвост файла обрезается.
+ * <p>
+ * Колонки (коды, номиналы, значения) лежат внутри записи дня, а не через весь месяц: месячный файл
+ * с колонкой на валюту пришлось бы переписывать при каждой новой дате, а запрос за период и так читает
+ * из записи дня одно значение двоичным поиском по колонке кодов в отображённой памяти.
+ * <p>
+ * Ряды одной валюты, загруженные из ЦБ за период разом, хранятся так же, в подкаталоге
+ * {@code series/<код>} ({@link #series(String)}): в их записях по одной валюте.
+ */
+@Component
+@Slf4j
+public class HistoricalRateStore {
+    private static final int RECORD_PREFIX_SIZE = 4 + 8;
+
+    private final Path historyDir;
+    private final ConcurrentNavigableMap<LocalDate, StoredRates> index = new ConcurrentSkipListMap<>();
+    // Открытые на дозапись файлы месяцев
+    private final ConcurrentMap<YearMonth, FileChannel> partitions = new ConcurrentHashMap<>();
+    // ReentrantLock, а не synchronized: виртуальный поток не закрепляется за несущим на время записи
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ConcurrentMap<String, HistoricalRateStore> series = new ConcurrentHashMap<>();
+
+    public HistoricalRateStore(@Value("${cbr.rates.history-dir:data/history}") String historyDir) {
+        this.historyDir = Path.of(historyDir);
+        loadPartitions();
+    }
+
+    public Optional<StoredRates> get(LocalDate date) {
+        return Optional.ofNullable(index.get(date));
+    }
+
+    /**
+     * Сохранённые даты отрезка включительно, по возрастанию; пропуски не догружаются.
+     */
+    public Collection<StoredRates> range(LocalDate from, LocalDate to) {
+        return index.subMap(from, true, to, true).values();
+    }
+
+    /**
+     * Дописывает курсы на дату в файл месяца и открывает их для чтения после fsync.
+     * Повтор уже сохранённой даты игнорируется; одновременную загрузку одной даты исключает вызывающий.
+     */
+    public StoredRates append(LocalDate date, RateSnapshot rates) {
+        appendAll(Map.of(date, rates));
+        return index.get(date);
+    }
+
+    /**
+     * То же для многих дат сразу: каждый затронутый файл месяца сбрасывается на диск один раз.
+     */
+    public void appendAll(Map<LocalDate, RateSnapshot> rates) {
+        Map<LocalDate, ByteBuffer> records = new TreeMap<>();
+        rates.forEach((date, snapshot) -> {
+            if (!index.containsKey(date)) {
+                records.put(date, encode(date, snapshot));
+            }
+        });
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try {
+            Set<FileChannel> written = new HashSet<>();
+            appendLock.lock();
+            try {
+                for (Map.Entry<LocalDate, ByteBuffer> record : records.entrySet()) {
+                    FileChannel channel = partition(YearMonth.from(record.getKey()));
+                    ByteBuffer buffer = record.getValue();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    written.add(channel);
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            // fsync вне блокировки: одновременные записи разных дат не ждут друг друга, ядро объединяет сброс
+            for (FileChannel channel : written) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            log.error("Не удалось сохранить курсы на {} в архив: {}", records.keySet(), e.getMessage(), e);
+            throw new UncheckedIOException(e);
+        }
+        records.forEach((date, buffer) ->
+                index.put(date, new StoredRates(date, buffer.position(RECORD_PREFIX_SIZE).slice())));
+    }
+
+    /**
+     * Архив ряда одной валюты; открывается при первом обращении и закрывается вместе с основным.
+     */
+    public HistoricalRateStore series(String code) {
+        HistoricalRateStore store = series.get(code);
+        if (store != null) {
+            return store;
+        }
+        // Файлы ряда читаются вне computeIfAbsent, чтобы загрузка не держала блокировку ячейки карты;
+        // проигравший гонку экземпляр закрывается
+        HistoricalRateStore opened = new HistoricalRateStore(historyDir.resolve("series").resolve(code).toString());
+        store = series.putIfAbsent(code, opened);
+        if (store == null) {
+            return opened;
+        }
+        opened.close();
+        return store;
+    }
+
+    @PreDestroy
+    public void close() {
+        series.values().forEach(HistoricalRateStore::close);
+        series.clear();
+        for (FileChannel channel : partitions.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Не удалось закрыть файл архива: {}", e.getMessage());
+            }
+        }
+        partitions.clear();
+    }
+
+    private static ByteBuffer encode(LocalDate date, RateSnapshot rates) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX_SIZE + RateSnapshotCodec.encodedSize(rates));
+        buffer.putInt(buffer.capacity() - 4).putLong(date.toEpochDay());
+        RateSnapshotCodec.encode(rates, buffer);
+        return buffer.flip();
+    }
+
+    private FileChannel partition(YearMonth month) throws IOException {
+        FileChannel channel = partitions.get(month);
+        if (channel == null) {
+            Files.createDirectories(historyDir);
+            channel = FileChannel.open(historyDir.resolve("rates-" + month + ".bin"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            partitions.put(month, channel);
+        }
+        return channel;
+    }
+
+    private void loadPartitions() {
+        if (!Files.isDirectory(historyDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> partitions = Files.newDirectoryStream(historyDir, "rates-*.bin")) {
+            for (Path partition : partitions) {
+                loadPartition(partition);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать архив курсов {}: {}", historyDir, e.getMessage());
+        }
+        log.info("Архив курсов загружен: {} дат", index.size());
+    }
+
+    private void loadPartition(Path partition) throws IOException {
+        try (FileChannel channel = FileChannel.open(partition, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            Map<LocalDate, StoredRates> records = new HashMap<>();
+            int valid = readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), records);
+            if (valid < size) {
+                // Запись оборвалась при сбое: хвост отбрасывается, следующая допишется за последней целой.
+                // Файл обрезается после чтения, а записи берутся из нового отображения без хвоста,
+                // так что ни один срез в индексе не ссылается на отображение, выходящее за конец файла
+                log.warn("Архив {} повреждён со смещения {}, хвост обрезан", partition, valid);
+                records.clear();
+                channel.truncate(valid);
+                readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, valid), records);
+            }
+            index.putAll(records);
+        }
+    }
+
+    /**
+     * @return длина целой части отображения: смещение первой оборванной записи либо лимит буфера
+     */
+    private static int readRecords(MappedByteBuffer buffer, Map<LocalDate, StoredRates> records) {
+        int offset = 0;
+        while (offset < buffer.limit()) {
+            StoredRates stored = readRecord(buffer, offset);
+            if (stored == null) {
+                break;
+            }
+            records.put(stored.getDate(), stored);
+            offset += 4 + buffer.getInt(offset);
+        }
+        return offset;
+    }
+
+    private static StoredRates readRecord(MappedByteBuffer buffer, int offset) {
+        if (buffer.limit() - offset < RECORD_PREFIX_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length < RECORD_PREFIX_SIZE || length > buffer.limit() - offset - 4) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(buffer.getLong(offset + 4));
+        ByteBuffer record = buffer.slice(offset + RECORD_PREFIX_SIZE, length - 8);
+        try {
+            RateSnapshotCodec.validate(record);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return new StoredRates(date, record);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.matthew.storage;
+
+import ru.matthew.model.CurrencyCodes;
+import ru.matthew.model.RateSnapshot;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * Бинарный формат снимка курсов: заголовок, затем колонки кодов, номиналов и значений, в конце CRC32.
+ * <pre>
+ * int   magic "CBRS"
+ * short версия формата
+ * short размер заголовка
+ * long  дата публикации (epoch day, {@link Long#MIN_VALUE} если не указана)
+ * long  fetchedAt, секунды
+ * int   fetchedAt, наносекунды
+ * int   число валют N
+ * short[N] индексы кодов {@link CurrencyCodes}
+ * int[N]   Nominal
+ * long[N]  Value в миллионных долях рубля
+ * int   CRC32 всего предыдущего
+ * </pre>
+ */
+final class RateSnapshotCodec {
+    static final int MAGIC = 0x43425253;
+    static final short VERSION = 1;
+    static final short HEADER_SIZE = 4 + 2 + 2 + 8 + 8 + 4 + 4;
+    private static final int DATE_OFFSET = 8;
+    private static final int SIZE_OFFSET = HEADER_SIZE - 4;
+    private static final int ENTRY_SIZE = 2 + 4 + 8;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private RateSnapshotCodec() {
+    }
+
+    static int encodedSize(RateSnapshot rates) {
+        return HEADER_SIZE + rates.size() * ENTRY_SIZE + CHECKSUM_SIZE;
+    }
+
+    static void encode(RateSnapshot rates, ByteBuffer buffer) {
+        int start = buffer.position();
+        int size = rates.size();
+        LocalDate publicationDate = rates.getPublicationDate();
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort(HEADER_SIZE)
+                .putLong(publicationDate != null ? publicationDate.toEpochDay() : NO_DATE)
+                .putLong(rates.getFetchedAt().getEpochSecond())
+                .putInt(rates.getFetchedAt().getNano())
+                .putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putShort((short) CurrencyCodes.index(rates.code(i)));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(rates.nominal(i));
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(rates.value(i));
+        }
+        buffer.putInt(checksum(buffer, start, buffer.position()));
+    }
+
+    /**
+     * @throws IllegalArgumentException если файл чужой, другой версии, обрезан или не сходится контрольная сумма
+     */
+    static RateSnapshot decode(ByteBuffer buffer) {
+        validate(buffer);
+        int start = buffer.position();
+        long epochDay = buffer.getLong(start + DATE_OFFSET);
+        Instant fetchedAt = Instant.ofEpochSecond(buffer.getLong(start + DATE_OFFSET + 8),
+                buffer.getInt(start + DATE_OFFSET + 16));
+        int size = buffer.getInt(start + SIZE_OFFSET);
+
+        int codesOffset = start + HEADER_SIZE;
+        int nominalsOffset = codesOffset + size * 2;
+        int valuesOffset = nominalsOffset + size * 4;
+        RateSnapshot.Builder builder = RateSnapshot.builder(epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay),
+                fetchedAt);
+        for (int i = 0; i < size; i++) {
+            builder.add(CurrencyCodes.code(buffer.getShort(codesOffset + i * 2)),
+                    buffer.getInt(nominalsOffset + i * 4),
+                    buffer.getLong(valuesOffset + i * 8));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Проверяет закодированный снимок от текущей позиции до лимита буфера, не сдвигая позицию.
+     *
+     * @throws IllegalArgumentException если файл чужой, другой версии, обрезан или не сходится контрольная сумма
+     */
+    static void validate(ByteBuffer buffer) {
+        buffer = buffer.duplicate();
+        int start = buffer.position();
+        int available = buffer.remaining();
+        if (available < HEADER_SIZE + CHECKSUM_SIZE) {
+            throw new IllegalArgumentException("Snapshot is truncated: " + available + " bytes");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a rate snapshot file");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+        short headerSize = buffer.getShort();
+        int size = buffer.getInt(start + SIZE_OFFSET);
+        if (headerSize != HEADER_SIZE || size < 0 || size > CurrencyCodes.CODE_SPACE
+                || available != HEADER_SIZE + size * ENTRY_SIZE + CHECKSUM_SIZE) {
+            throw new IllegalArgumentException("Snapshot length does not match its header");
+        }
+        int checksumOffset = start + available - CHECKSUM_SIZE;
+        if (buffer.getInt(checksumOffset) != checksum(buffer, start, checksumOffset)) {
+            throw new IllegalArgumentException("Snapshot checksum mismatch");
+        }
+    }
+
+    // Чтение полей проверенного снимка с нулевой позиции буфера без сборки RateSnapshot:
+    // истории нужен один курс из десятков
+
+    static LocalDate publicationDate(ByteBuffer record) {
+        long epochDay = record.getLong(DATE_OFFSET);
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * @return номер записи валюты в колонках либо -1
+     */
+    static int find(ByteBuffer record, int codeIndex) {
+        int size = record.getInt(SIZE_OFFSET);
+        for (int i = 0; i < size; i++) {
+            if (record.getShort(HEADER_SIZE + i * 2) == codeIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int nominal(ByteBuffer record, int entry) {
+        return record.getInt(HEADER_SIZE + record.getInt(SIZE_OFFSET) * 2 + entry * 4);
+    }
+
+    static long value(ByteBuffer record, int entry) {
+        return record.getLong(HEADER_SIZE + record.getInt(SIZE_OFFSET) * 6 + entry * 8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(to).position(from));
+        return (int) crc.getValue();
+    }
+}
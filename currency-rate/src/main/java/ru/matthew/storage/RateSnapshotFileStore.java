@@ -0,0 +1,78 @@
+package ru.matthew.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.matthew.model.RateSnapshot;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Последний успешно загруженный снимок курсов на диске, чтобы сервис отвечал сразу после старта.
+ * Запись идёт через отображённый в память временный файл и атомарную замену,
+ * чтение — через отображение только для чтения. Пустой путь отключает хранение.
+ */
+@Component
+@Slf4j
+public class RateSnapshotFileStore {
+    private final Path snapshotFile;
+
+    public RateSnapshotFileStore(@Value("${cbr.rates.snapshot-file:}") String snapshotFile) {
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+
+    /**
+     * @return снимок из файла либо пустой результат, если файла нет или он повреждён
+     */
+    public Optional<RateSnapshot> load() {
+        if (snapshotFile == null) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            RateSnapshot rates = RateSnapshotCodec.decode(buffer);
+            log.info("Курсы валют восстановлены из файла {}: {}", snapshotFile, rates);
+            return Optional.of(rates);
+        } catch (NoSuchFileException e) {
+            log.info("Файл снимка курсов {} не найден, курсы будут загружены из API", snapshotFile);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Файл снимка курсов {} не прочитан и будет проигнорирован: {}", snapshotFile, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Сохраняет снимок; ошибка записи только логируется, чтобы не мешать отдаче свежих курсов.
+     */
+    public void save(RateSnapshot rates) {
+        if (snapshotFile == null) {
+            return;
+        }
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            if (snapshotFile.getParent() != null) {
+                Files.createDirectories(snapshotFile.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        RateSnapshotCodec.encodedSize(rates));
+                RateSnapshotCodec.encode(rates, buffer);
+                buffer.force();
+            }
+            // Читатель видит либо прежний файл, либо новый целиком; обрыв записи ловит CRC
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Снимок курсов сохранён в файл {}", snapshotFile);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить снимок курсов в файл {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.matthew.storage;
+
+import lombok.Getter;
+import ru.matthew.model.CurrencyCodes;
+import ru.matthew.model.RateSnapshot;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Курсы на дату из исторического хранилища: поля читаются прямо из закодированной записи.
+ */
+public final class StoredRates {
+    @Getter
+    private final LocalDate date;
+    private final ByteBuffer record;
+
+    StoredRates(LocalDate date, ByteBuffer record) {
+        this.date = date;
+        this.record = record;
+    }
+
+    /**
+     * @return дата публикации ЦБ; для выходных и праздников она раньше запрошенной даты
+     */
+    public LocalDate getPublicationDate() {
+        LocalDate publicationDate = RateSnapshotCodec.publicationDate(record);
+        return publicationDate != null ? publicationDate : date;
+    }
+
+    /**
+     * @return рублей за единицу валюты либо {@link Double#NaN}, если ЦБ не публиковал курс на эту дату
+     */
+    public double rate(String code) {
+        int codeIndex = CurrencyCodes.index(code);
+        int entry = codeIndex < 0 ? -1 : RateSnapshotCodec.find(record, codeIndex);
+        if (entry < 0) {
+            return Double.NaN;
+        }
+        return (double) RateSnapshotCodec.value(record, entry) / RateSnapshot.VALUE_FACTOR
+                / RateSnapshotCodec.nominal(record, entry);
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CbrRatesXmlParserTest {
+    private final CbrRatesXmlParser parser = new CbrRatesXmlParser();
+
+    @Test
+    void parse_WhenCompactDocument_ReturnsUnitRates() {
+        // Arrange
+        String xml = "<?xml version=\"1.0\" encoding=\"windows-1251\"?>" +
+                "<ValCurs Date=\"18.10.2026\" name=\"Foreign Currency Market\">" +
+                "<Valute ID=\"R01235\"><NumCode>840</NumCode><CharCode>USD</CharCode><Nominal>1</Nominal>" +
+                "<Name>Доллар США</Name><Value>96,0880</Value><VunitRate>96,088</VunitRate></Valute>" +
+                "<Valute ID=\"R01820\"><NumCode>392</NumCode><CharCode>JPY</CharCode><Nominal>100</Nominal>" +
+                "<Name>Иен</Name><Value>64,3098</Value><VunitRate>0,643098</VunitRate></Valute>" +
+                "</ValCurs>";
+
+        // Act
+        Instant fetchedAt = Instant.now();
+        RateSnapshot rates = parser.parse(new ByteArrayInputStream(xml.getBytes(Charset.forName("windows-1251"))), fetchedAt);
+
+        // Assert
+        assertEquals(3, rates.size());
+        assertEquals(LocalDate.of(2026, 10, 18), rates.getPublicationDate());
+        assertEquals(fetchedAt, rates.getFetchedAt());
+        assertEquals(1.0, rates.rate(rates.indexOf("RUB")));
+        assertEquals(96.088, rates.rate(rates.indexOf("USD")), 1e-9);
+        assertEquals(0.643098, rates.rate(rates.indexOf("JPY")), 1e-9);
+        assertEquals(64_309_800L, rates.value(rates.indexOf("JPY")));
+        assertEquals(100, rates.nominal(rates.indexOf("JPY")));
+        assertEquals(0, rates.fractionDigits(rates.indexOf("JPY")));
+        assertEquals(-1, rates.indexOf("EUR"));
+    }
+
+    @Test
+    void parse_WhenWhitespaceAndReorderedElements_FindsFieldsByName() {
+        // Arrange
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <ValCurs Date="18.10.2026" name="Foreign Currency Market">
+                    <Valute ID="R01239">
+                        <Value>104,6904</Value>
+                        <Nominal>1</Nominal>
+                        <CharCode>EUR</CharCode>
+                    </Valute>
+                    <Valute ID="R01335">
+                        <CharCode>KZT</CharCode>
+                        <Nominal>100</Nominal>
+                        <Value>19,8173</Value>
+                    </Valute>
+                </ValCurs>
+                """;
+
+        // Act
+        RateSnapshot rates = parser.parse(new ByteArrayInputStream(xml.getBytes()), Instant.now());
+
+        // Assert
+        assertEquals(104.6904, rates.rate(rates.indexOf("EUR")), 1e-9);
+        assertEquals(0.198173, rates.rate(rates.indexOf("KZT")), 1e-9);
+    }
+
+    @Test
+    void parse_WhenMalformedDocument_ThrowsException() {
+        // Arrange
+        String xml = "<ValCurs><Valute><CharCode>USD</CharCode>";
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> parser.parse(new ByteArrayInputStream(xml.getBytes()), Instant.now()));
+    }
+}
@@ -0,0 +1,29 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.matthew.service.CurrencyCodeValidator;
+
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CurrencyCodeValidatorTest {
+    private final CurrencyCodeValidator validator = new CurrencyCodeValidator();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"USD", "EUR", "RUB", "JPY", "XDR", "AAA"})
+    void isSupported_MatchesJavaUtilCurrency(String code) {
+        // Act & Assert
+        boolean expected = Currency.getAvailableCurrencies().stream()
+                .anyMatch(currency -> currency.getCurrencyCode().equals(code));
+        assertEquals(expected, validator.isSupported(code));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"usd", "US", "USDT", "U$D", "INVALID_CODE", "ZZ["})
+    void isSupported_WhenMalformedCode_ReturnsFalse(String code) {
+        // Act & Assert
+        assertFalse(validator.isSupported(code));
+    }
+}
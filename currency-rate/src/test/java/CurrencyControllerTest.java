@@ -11,14 +11,22 @@ import org.springframework.test.web.servlet.MockMvc;
 import ru.matthew.CurrencyRateApplication;
 import ru.matthew.dto.CurrencyConversionRequest;
 import ru.matthew.exception.CurrencyNotFoundException;
+import ru.matthew.exception.InvalidDateException;
 import ru.matthew.exception.ServiceUnavailableException;
 import ru.matthew.exception.UnsupportedCurrencyException;
+import ru.matthew.model.RateSnapshot;
 import ru.matthew.service.CurrencyRateCacheService;
+import ru.matthew.service.HistoricalRateService;
+import ru.matthew.storage.StoredRates;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -34,6 +42,9 @@ public class CurrencyControllerTest {
     @MockBean
     private CurrencyRateCacheService currencyRateCacheService;
 
+    @MockBean
+    private HistoricalRateService historicalRateService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Проверка валидации для эндпоинта /currencies/convert
@@ -92,8 +103,9 @@ public class CurrencyControllerTest {
         request.setFromCurrency("USD");
         request.setToCurrency("RUB");
 
-        Map<String, Double> rates = new HashMap<>();
-        rates.put("USD", 94.0);
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 94.0)
+                .build();
 
         when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
 
@@ -107,6 +119,50 @@ public class CurrencyControllerTest {
                 .andExpect(jsonPath("$.convertedAmount").value(9400.0));
     }
 
+    @Test
+    void convertCurrency_WhenPreciseRequest_ReturnsMinorUnits() throws Exception {
+        // Arrange
+        CurrencyConversionRequest request = createRequest(100.01d, "USD", "RUB");
+        request.setPrecise(true);
+        request.setRoundingMode(RoundingMode.DOWN);
+
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 1, 96_088_000L)
+                .build();
+
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.convertedAmountMinorUnits").value(960_976))
+                .andExpect(jsonPath("$.fractionDigits").value(2))
+                .andExpect(jsonPath("$.roundingMode").value("DOWN"))
+                .andExpect(jsonPath("$.convertedAmount").value(9609.76));
+    }
+
+    @Test
+    void convertCurrency_WhenPreciseAmountHasExtraDigits_ThrowsBadRequest() throws Exception {
+        // Arrange
+        CurrencyConversionRequest request = createRequest(100.001d, "USD", "RUB");
+        request.setPrecise(true);
+
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 1, 96_088_000L)
+                .build();
+
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Amount has more than 2 fraction digits: 100.001"));
+    }
+
 
     // Проверка валидации для эндпоинта /currencies/rates/{code}
     @ParameterizedTest
@@ -127,4 +183,185 @@ public class CurrencyControllerTest {
                 new Object[]{"XXX", new CurrencyNotFoundException("Currency rate not found for code: XXX"), "Currency rate not found for code: XXX"}
         );
     }
+
+    // Проверка исторических курсов для эндпоинтов /currencies/rates/{code}?date и /currencies/rates/{code}/range
+    @Test
+    void getCurrencyRate_WhenPastDate_ReturnsHistoricalRate() throws Exception {
+        // Arrange
+        LocalDate date = LocalDate.of(2024, 1, 10);
+        StoredRates stored = storedRates(date, 90.4158);
+        when(historicalRateService.getRates(date)).thenReturn(stored);
+
+        // Act & Assert
+        mockMvc.perform(get("/currencies/rates/{code}", "USD").param("date", "2024-01-10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("USD"))
+                .andExpect(jsonPath("$.rate").value(90.4158))
+                .andExpect(jsonPath("$.date").value("2024-01-10"));
+    }
+
+    @Test
+    void getCurrencyRates_WhenRange_ReturnsDailyRates() throws Exception {
+        // Arrange
+        LocalDate from = LocalDate.of(2024, 1, 9);
+        LocalDate to = LocalDate.of(2024, 1, 10);
+        List<StoredRates> stored = List.of(storedRates(from, 90.4158), storedRates(to, 89.3));
+        when(historicalRateService.getRates("USD", from, to)).thenReturn(stored);
+
+        // Act & Assert
+        mockMvc.perform(get("/currencies/rates/{code}/range", "USD")
+                        .param("from", "2024-01-09")
+                        .param("to", "2024-01-10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rates.length()").value(2))
+                .andExpect(jsonPath("$.rates[0].date").value("2024-01-09"))
+                .andExpect(jsonPath("$.rates[1].rate").value(89.3));
+    }
+
+    @Test
+    void getCurrencyRates_WhenRangeInvalid_ReturnsBadRequest() throws Exception {
+        // Arrange
+        LocalDate from = LocalDate.of(2024, 1, 10);
+        LocalDate to = LocalDate.of(2024, 1, 9);
+        when(historicalRateService.getRates("USD", from, to))
+                .thenThrow(new InvalidDateException("Range start 2024-01-10 is after its end 2024-01-09"));
+
+        // Act & Assert
+        mockMvc.perform(get("/currencies/rates/{code}/range", "USD")
+                        .param("from", "2024-01-10")
+                        .param("to", "2024-01-09"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Range start 2024-01-10 is after its end 2024-01-09"));
+    }
+
+    private static StoredRates storedRates(LocalDate date, double usdRate) {
+        StoredRates stored = mock(StoredRates.class);
+        when(stored.getDate()).thenReturn(date);
+        when(stored.rate("USD")).thenReturn(usdRate);
+        return stored;
+    }
+
+    // Проверка пакетной конвертации для эндпоинта /currencies/convert/batch
+    @Test
+    void convertCurrencyBatch_WhenJsonArray_ReturnsPerItemResults() throws Exception {
+        // Arrange
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 94.0)
+                .build();
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+        String body = objectMapper.writeValueAsString(new CurrencyConversionRequest[]{
+                createRequest(100d, "USD", "RUB"),
+                createRequest(100d, "USD", "ABC"),
+                createRequest(-1d, "USD", "RUB")
+        });
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].convertedAmount").value(9400.0))
+                .andExpect(jsonPath("$[1].error").value("Unsupported currency code: ABC"))
+                .andExpect(jsonPath("$[2].error").value("Amount must be greater than zero"));
+    }
+
+    @Test
+    void convertCurrencyBatch_WhenNullOrEmptyItems_ReturnsPerItemErrors() throws Exception {
+        // Arrange
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 94.0)
+                .build();
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+        String body = "[null, {}, {\"fromCurrency\": \"USD\", \"amount\": \"много\"}, " + objectMapper.writeValueAsString(createRequest(100d, "USD", "RUB")) + "]";
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].error").value(startsWith("Invalid conversion request")))
+                .andExpect(jsonPath("$[1].error").exists())
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[2].error").value(startsWith("Invalid conversion request")))
+                .andExpect(jsonPath("$[3].index").value(3))
+                .andExpect(jsonPath("$[3].convertedAmount").value(9400.0));
+    }
+
+    @Test
+    void convertCurrencyBatch_WhenNdjson_ReturnsNdjsonLines() throws Exception {
+        // Arrange
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.now(), Instant.now())
+                .add("USD", 94.0)
+                .add("EUR", 100.0)
+                .build();
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+        String body = objectMapper.writeValueAsString(createRequest(100d, "USD", "RUB")) + "\n" +
+                objectMapper.writeValueAsString(createRequest(100d, "EUR", "GBP")) + "\n";
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"index\":0,\"fromCurrency\":\"USD\",\"toCurrency\":\"RUB\",\"convertedAmount\":9400.0}\n" +
+                        "{\"index\":1,\"fromCurrency\":\"EUR\",\"toCurrency\":\"GBP\"," +
+                        "\"error\":\"Currency rate not found for code: GBP\"}\n"));
+    }
+
+    @Test
+    void convertCurrencyBatch_WhenExternalServiceUnavailable_ThrowsServiceUnavailableException() throws Exception {
+        // Arrange
+        when(currencyRateCacheService.getCurrencyRates()).thenThrow(new ServiceUnavailableException("Currency service is unavailable", 3600));
+
+        // Act & Assert
+        mockMvc.perform(post("/currencies/convert/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3600"));
+    }
+
+    // Проверка кросс-курсов для эндпоинта /currencies/cross-rates
+    @Test
+    void getCrossRates_WhenBaseGiven_ReturnsSingleRow() throws Exception {
+        // Arrange
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.of(2026, 10, 18), Instant.now())
+                .add("USD", 100.0)
+                .add("EUR", 125.0)
+                .build();
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+
+        // Act & Assert
+        mockMvc.perform(get("/currencies/cross-rates").param("base", "EUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.date").value("2026-10-18"))
+                .andExpect(jsonPath("$.base").value("EUR"))
+                .andExpect(jsonPath("$.rates.length()").value(1))
+                .andExpect(jsonPath("$.rates.EUR.USD").value(1.25))
+                .andExpect(jsonPath("$.rates.EUR.RUB").value(125.0));
+    }
+
+    @Test
+    void getCrossRates_WhenNoBase_ReturnsFullMatrix() throws Exception {
+        // Arrange
+        RateSnapshot rates = RateSnapshot.builder(LocalDate.of(2026, 10, 18), Instant.now())
+                .add("USD", 100.0)
+                .add("EUR", 125.0)
+                .build();
+        when(currencyRateCacheService.getCurrencyRates()).thenReturn(rates);
+
+        // Act & Assert
+        mockMvc.perform(get("/currencies/cross-rates"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.base").doesNotExist())
+                .andExpect(jsonPath("$.rates.length()").value(3))
+                .andExpect(jsonPath("$.rates.USD.EUR").value(0.8))
+                .andExpect(jsonPath("$.rates.RUB.USD").value(0.01));
+    }
 }
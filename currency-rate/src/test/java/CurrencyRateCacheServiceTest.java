@@ -0,0 +1,165 @@
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+import ru.matthew.client.CbrRatesClient;
+import ru.matthew.exception.ServiceUnavailableException;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.parser.CbrRatesXmlParser;
+import ru.matthew.service.CurrencyRateCacheService;
+import ru.matthew.storage.RateSnapshotFileStore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class CurrencyRateCacheServiceTest {
+    private static final String CBR_URL = "http://cbr.test/scripts/XML_daily.asp";
+    private static final String RATES_XML = "<ValCurs Date=\"18.10.2026\" name=\"Foreign Currency Market\">" +
+            "<Valute ID=\"R01235\"><CharCode>USD</CharCode><Nominal>1</Nominal><Value>96,0880</Value></Valute>" +
+            "</ValCurs>";
+
+    @TempDir
+    private Path tempDir;
+
+    private MockRestServiceServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private RateSnapshotFileStore snapshotFileStore;
+    private CurrencyRateCacheService currencyRateCacheService;
+
+    @BeforeEach
+    public void setUp() {
+        snapshotFileStore = new RateSnapshotFileStore(tempDir.resolve("rates.snapshot").toString());
+        currencyRateCacheService = createService();
+    }
+
+    private CurrencyRateCacheService createService() {
+        RestClient.Builder restClientBuilder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(restClientBuilder).build();
+        meterRegistry = new SimpleMeterRegistry();
+        return new CurrencyRateCacheService(new CbrRatesClient(restClientBuilder, new CbrRatesXmlParser(), CBR_URL),
+                meterRegistry, snapshotFileStore);
+    }
+
+    @Test
+    public void getCurrencyRates_WhenSnapshotLoaded_DoesNotCallApiAgain() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withSuccess(RATES_XML, MediaType.APPLICATION_XML));
+
+        // Act
+        RateSnapshot first = currencyRateCacheService.getCurrencyRates();
+        RateSnapshot second = currencyRateCacheService.getCurrencyRates();
+
+        // Assert
+        server.verify();
+        assertSame(first, second);
+        assertEquals(96.088, first.rate(first.indexOf("USD")), 1e-9);
+        assertEquals(1, meterRegistry.get("currency.rates.refresh").tag("outcome", "success").timer().count());
+        assertFalse(Double.isNaN(meterRegistry.get("currency.rates.staleness").gauge().value()));
+    }
+
+    @Test
+    public void refreshCurrencyRatesAhead_WhenApiFails_KeepsServingPreviousSnapshot() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withSuccess(RATES_XML, MediaType.APPLICATION_XML));
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withServerError());
+        RateSnapshot loaded = currencyRateCacheService.getCurrencyRates();
+
+        // Act
+        currencyRateCacheService.refreshCurrencyRatesAhead();
+
+        // Assert
+        server.verify();
+        assertSame(loaded, currencyRateCacheService.getCurrencyRates());
+        assertEquals(1, meterRegistry.get("currency.rates.refresh").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    public void refreshCurrencyRatesAhead_WhenApiSucceeds_SwapsSnapshot() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withSuccess(RATES_XML, MediaType.APPLICATION_XML));
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withSuccess(RATES_XML, MediaType.APPLICATION_XML));
+        RateSnapshot loaded = currencyRateCacheService.getCurrencyRates();
+
+        // Act
+        currencyRateCacheService.refreshCurrencyRatesAhead();
+
+        // Assert
+        server.verify();
+        assertNotSame(loaded, currencyRateCacheService.getCurrencyRates());
+    }
+
+    @Test
+    public void getCurrencyRates_WhenNoSnapshotAndApiFails_ThrowsServiceUnavailable() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withServerError());
+
+        // Act & Assert
+        assertThrows(ServiceUnavailableException.class, () -> currencyRateCacheService.getCurrencyRates());
+    }
+
+    @Test
+    public void getCurrencyRates_WhenRestartedAfterRefresh_ServesPersistedSnapshotWithoutApi() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_URL)).andRespond(withSuccess(RATES_XML, MediaType.APPLICATION_XML));
+        RateSnapshot loaded = currencyRateCacheService.getCurrencyRates();
+        server.verify();
+
+        // Act: новый экземпляр сервиса с тем же файлом; неожиданный запрос к API уронит тест
+        CurrencyRateCacheService restarted = createService();
+        RateSnapshot restored = restarted.getCurrencyRates();
+
+        // Assert
+        assertEquals(loaded.getPublicationDate(), restored.getPublicationDate());
+        assertEquals(loaded.getFetchedAt(), restored.getFetchedAt());
+        assertEquals(96_088_000L, restored.value(restored.indexOf("USD")));
+    }
+
+    @Test
+    public void getCurrencyRates_WhenConcurrentMisses_FetchesOnce() throws Exception {
+        // Arrange
+        int threads = 8;
+        CountDownLatch started = new CountDownLatch(threads);
+        server.expect(once(), requestTo(CBR_URL)).andRespond(request -> {
+            try {
+                started.await();
+                // Даём остальным потокам дойти до ожидания загрузки
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return withSuccess(RATES_XML, MediaType.APPLICATION_XML).createResponse(request);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Act
+        List<Future<RateSnapshot>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return currencyRateCacheService.getCurrencyRates();
+            }));
+        }
+
+        // Assert
+        RateSnapshot expected = results.get(0).get();
+        for (Future<RateSnapshot> result : results) {
+            assertSame(expected, result.get());
+        }
+        executor.shutdown();
+        server.verify();
+    }
+}
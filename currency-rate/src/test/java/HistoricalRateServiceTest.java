@@ -0,0 +1,171 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+import ru.matthew.client.CbrRatesClient;
+import ru.matthew.exception.InvalidDateException;
+import ru.matthew.parser.CbrRatesXmlParser;
+import ru.matthew.service.HistoricalRateService;
+import ru.matthew.storage.HistoricalRateStore;
+import ru.matthew.storage.StoredRates;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class HistoricalRateServiceTest {
+    private static final String CBR_BASE_URL = "http://cbr.test/scripts/";
+    private static final String CBR_URL = CBR_BASE_URL + "XML_daily.asp";
+
+    @TempDir
+    private Path tempDir;
+
+    private MockRestServiceServer server;
+    private HistoricalRateService historicalRateService;
+
+    @BeforeEach
+    public void setUp() {
+        historicalRateService = createService();
+    }
+
+    private HistoricalRateService createService() {
+        RestClient.Builder restClientBuilder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(restClientBuilder).build();
+        return new HistoricalRateService(new HistoricalRateStore(tempDir.toString()),
+                new CbrRatesClient(restClientBuilder, new CbrRatesXmlParser(), CBR_URL), 31);
+    }
+
+    private void expectArchive(String dateReq, String publicationDate, String usdValue) {
+        server.expect(once(), requestTo(CBR_URL + "?date_req=" + dateReq)).andRespond(withSuccess(
+                "<ValCurs Date=\"" + publicationDate + "\" name=\"Foreign Currency Market\">" +
+                        "<Valute ID=\"R01235\"><CharCode>USD</CharCode><Nominal>1</Nominal>" +
+                        "<Value>" + usdValue + "</Value></Valute></ValCurs>",
+                MediaType.APPLICATION_XML));
+    }
+
+    @Test
+    void getRates_WhenDateFetchedOnce_ServesFromArchiveAfterRestart() {
+        // Arrange
+        expectArchive("10/01/2024", "10.01.2024", "90,4158");
+
+        // Act
+        StoredRates fetched = historicalRateService.getRates(LocalDate.of(2024, 1, 10));
+        StoredRates cached = historicalRateService.getRates(LocalDate.of(2024, 1, 10));
+        server.verify();
+        // Новый экземпляр без ожиданий: запрос к ЦБ уронил бы тест
+        StoredRates restored = createService().getRates(LocalDate.of(2024, 1, 10));
+
+        // Assert
+        assertSame(fetched, cached);
+        assertEquals(90.4158, restored.rate("USD"), 1e-9);
+        assertEquals(1.0, restored.rate("RUB"));
+        assertTrue(Double.isNaN(restored.rate("EUR")));
+    }
+
+    @Test
+    void getRates_WhenRangePartiallyStored_FetchesMissingDatesInOneDynamicRequest() {
+        // Arrange
+        expectArchive("09/01/2024", "09.01.2024", "90,4158");
+        server.expect(once(), requestTo(CBR_BASE_URL + "XML_val.asp?d=0")).andRespond(withSuccess(
+                "<Valuta name=\"Foreign Currency Market Lib\">" +
+                        "<Item ID=\"R01235\"><Name>Доллар США</Name><ParentCode>R01235    </ParentCode>" +
+                        "<ISO_Char_Code>USD</ISO_Char_Code></Item></Valuta>",
+                MediaType.APPLICATION_XML));
+        // Пропуски 08.01 и 10.01-12.01 закрываются одним запросом: 08.01 действует курс от 30.12.2023
+        server.expect(once(), requestTo(CBR_BASE_URL
+                + "XML_dynamic.asp?date_req1=24/12/2023&date_req2=12/01/2024&VAL_NM_RQ=R01235")).andRespond(withSuccess(
+                "<ValCurs ID=\"R01235\" name=\"Foreign Currency Market Dynamic\">" +
+                        "<Record Date=\"30.12.2023\" Id=\"R01235\"><Nominal>1</Nominal><Value>89,6883</Value></Record>" +
+                        "<Record Date=\"10.01.2024\" Id=\"R01235\"><Nominal>1</Nominal><Value>89,3000</Value></Record>" +
+                        "<Record Date=\"11.01.2024\" Id=\"R01235\"><Nominal>1</Nominal><Value>88,5000</Value></Record>" +
+                        "</ValCurs>",
+                MediaType.APPLICATION_XML));
+        historicalRateService.getRates(LocalDate.of(2024, 1, 9));
+
+        // Act
+        List<StoredRates> rates = historicalRateService.getRates("USD", LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 12));
+        server.verify();
+        // Новый экземпляр без ожиданий: ряд читается из архива, запрос к ЦБ уронил бы тест
+        List<StoredRates> restored = createService().getRates("USD", LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 12));
+
+        // Assert
+        assertEquals(List.of(LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 9), LocalDate.of(2024, 1, 10),
+                        LocalDate.of(2024, 1, 11), LocalDate.of(2024, 1, 12)),
+                rates.stream().map(StoredRates::getDate).toList());
+        assertEquals(LocalDate.of(2023, 12, 30), rates.get(0).getPublicationDate());
+        assertEquals(89.6883, rates.get(0).rate("USD"), 1e-9);
+        assertEquals(90.4158, rates.get(1).rate("USD"), 1e-9);
+        assertEquals(89.3, rates.get(2).rate("USD"), 1e-9);
+        assertEquals(88.5, restored.get(4).rate("USD"), 1e-9);
+        assertEquals(LocalDate.of(2024, 1, 11), restored.get(4).getPublicationDate());
+    }
+
+    @Test
+    void getRates_WhenRangeHasDaysWithoutRate_RemembersThemAndDoesNotAskAgain() {
+        // Arrange
+        server.expect(once(), requestTo(CBR_BASE_URL + "XML_val.asp?d=0")).andRespond(withSuccess(
+                "<Valuta name=\"Foreign Currency Market Lib\">" +
+                        "<Item ID=\"R01235\"><Name>Доллар США</Name><ParentCode>R01235    </ParentCode>" +
+                        "<ISO_Char_Code>USD</ISO_Char_Code></Item></Valuta>",
+                MediaType.APPLICATION_XML));
+        // До 11.01 курса нет ни в периоде, ни в запасе назад
+        server.expect(once(), requestTo(CBR_BASE_URL
+                + "XML_dynamic.asp?date_req1=24/12/2023&date_req2=12/01/2024&VAL_NM_RQ=R01235")).andRespond(withSuccess(
+                "<ValCurs ID=\"R01235\" name=\"Foreign Currency Market Dynamic\">" +
+                        "<Record Date=\"11.01.2024\" Id=\"R01235\"><Nominal>1</Nominal><Value>88,5000</Value></Record>" +
+                        "</ValCurs>",
+                MediaType.APPLICATION_XML));
+
+        // Act
+        List<StoredRates> fetched = historicalRateService.getRates("USD", LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 12));
+        server.verify();
+        // Без новых ожиданий: повторный запрос к ЦБ уронил бы тест
+        List<StoredRates> repeated = historicalRateService.getRates("USD", LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 12));
+        List<StoredRates> restored = createService().getRates("USD", LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 12));
+
+        // Assert
+        List<LocalDate> expected = List.of(LocalDate.of(2024, 1, 11), LocalDate.of(2024, 1, 12));
+        assertEquals(expected, fetched.stream().map(StoredRates::getDate).toList());
+        assertEquals(expected, repeated.stream().map(StoredRates::getDate).toList());
+        assertEquals(expected, restored.stream().map(StoredRates::getDate).toList());
+    }
+
+    @Test
+    void load_WhenPartitionHasTornTail_KeepsIntactRecordsAndAppendsAfterThem() throws IOException {
+        // Arrange
+        expectArchive("10/01/2024", "10.01.2024", "90,4158");
+        historicalRateService.getRates(LocalDate.of(2024, 1, 10));
+        Files.write(tempDir.resolve("rates-2024-01.bin"), new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        // Act
+        HistoricalRateService restarted = createService();
+        expectArchive("11/01/2024", "11.01.2024", "89,3000");
+        restarted.getRates(LocalDate.of(2024, 1, 11));
+        HistoricalRateStore reloaded = new HistoricalRateStore(tempDir.toString());
+
+        // Assert
+        assertEquals(2, reloaded.range(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)).size());
+        assertEquals(89.3, reloaded.get(LocalDate.of(2024, 1, 11)).orElseThrow().rate("USD"), 1e-9);
+    }
+
+    @Test
+    void getRates_WhenDateOrRangeInvalid_ThrowsInvalidDateException() {
+        // Act & Assert
+        assertThrows(InvalidDateException.class, () -> historicalRateService.getRates(LocalDate.now().plusDays(2)));
+        assertThrows(InvalidDateException.class, () -> historicalRateService.getRates(LocalDate.of(1990, 1, 1)));
+        assertThrows(InvalidDateException.class, () ->
+                historicalRateService.getRates("USD", LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 9)));
+        assertThrows(InvalidDateException.class, () ->
+                historicalRateService.getRates("USD", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1)));
+    }
+}
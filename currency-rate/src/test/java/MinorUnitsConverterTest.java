@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.service.MinorUnitsConverter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MinorUnitsConverterTest {
+    private final MinorUnitsConverter converter = new MinorUnitsConverter(RoundingMode.HALF_EVEN);
+
+    private final RateSnapshot rates = RateSnapshot.builder(LocalDate.of(2026, 10, 18), Instant.now())
+            .add("USD", 1, 96_088_000L)
+            .add("JPY", 100, 64_309_800L)
+            .add("KWD", 1, 314_105_600L)
+            .add("IDR", 10_000, 58_741_200L)
+            .build();
+
+    @Test
+    void convert_WhenUsdToRub_ReturnsExactKopecks() {
+        // Arrange
+        long amount = converter.toMinorUnits(100.01, 2);
+
+        // Act
+        long converted = converter.convert(rates, rates.indexOf("USD"), rates.indexOf("RUB"), amount, RoundingMode.HALF_EVEN);
+
+        // Assert: 100.01 * 96.088 = 9609.76088
+        assertEquals(960_976L, converted);
+        assertEquals(9609.76, converter.toAmount(converted, 2));
+    }
+
+    @Test
+    void convert_WhenTie_AppliesRoundingMode() {
+        // Arrange: курс 4 рубля за доллар даёт ровно половину цента
+        RateSnapshot tie = RateSnapshot.builder(LocalDate.now(), Instant.now()).add("USD", 1, 4_000_000L).build();
+        int rub = tie.indexOf("RUB");
+        int usd = tie.indexOf("USD");
+
+        // Act & Assert: 0.10 RUB / 4 = 0.025 USD = 2.5 цента
+        assertEquals(2L, converter.convert(tie, rub, usd, 10, RoundingMode.HALF_EVEN));
+        assertEquals(3L, converter.convert(tie, rub, usd, 10, RoundingMode.HALF_UP));
+        assertEquals(2L, converter.convert(tie, rub, usd, 10, RoundingMode.HALF_DOWN));
+        assertEquals(3L, converter.convert(tie, rub, usd, 10, RoundingMode.CEILING));
+        assertEquals(-3L, converter.convert(tie, rub, usd, -10, RoundingMode.FLOOR));
+        assertThrows(ArithmeticException.class, () -> converter.convert(tie, rub, usd, 10, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void convert_WhenRandomAmounts_MatchesBigDecimal() {
+        // Arrange
+        Random random = new Random(42);
+        String[] codes = {"RUB", "USD", "JPY", "KWD", "IDR"};
+
+        for (int i = 0; i < 20_000; i++) {
+            int from = rates.indexOf(codes[random.nextInt(codes.length)]);
+            int to = rates.indexOf(codes[random.nextInt(codes.length)]);
+            // Большие суммы проверяют 128-битную ветку деления
+            long amount = i % 2 == 0 ? random.nextInt(10_000_000) : random.nextLong() >>> 24;
+            RoundingMode mode = RoundingMode.values()[random.nextInt(RoundingMode.UNNECESSARY.ordinal())];
+
+            // Act
+            long actual = converter.convert(rates, from, to, amount, mode);
+
+            // Assert
+            assertEquals(expected(from, to, amount, mode), actual,
+                    () -> amount + " " + rates.code(from) + " -> " + rates.code(to) + " " + mode);
+        }
+    }
+
+    @Test
+    void toMinorUnits_WhenTooManyFractionDigits_ThrowsArithmeticException() {
+        // Act & Assert
+        assertEquals(10_012L, converter.toMinorUnits(100.12, 2));
+        assertEquals(100L, converter.toMinorUnits(100, 0));
+        assertThrows(ArithmeticException.class, () -> converter.toMinorUnits(100.123, 2));
+        assertThrows(ArithmeticException.class, () -> converter.toMinorUnits(0.5, 0));
+        assertThrows(ArithmeticException.class, () -> converter.toMinorUnits(1e18, 2));
+    }
+
+    @Test
+    void convert_WhenResultOverflowsLong_ThrowsArithmeticException() {
+        // Act & Assert
+        assertThrows(ArithmeticException.class, () ->
+                converter.convert(rates, rates.indexOf("KWD"), rates.indexOf("IDR"), Long.MAX_VALUE / 2, RoundingMode.DOWN));
+    }
+
+    private long expected(int from, int to, long amount, RoundingMode mode) {
+        BigDecimal numerator = BigDecimal.valueOf(amount)
+                .multiply(BigDecimal.valueOf(rates.value(from)))
+                .multiply(BigDecimal.valueOf(rates.nominal(to)))
+                .scaleByPowerOfTen(rates.fractionDigits(to));
+        BigDecimal denominator = BigDecimal.valueOf(rates.value(to))
+                .multiply(BigDecimal.valueOf(rates.nominal(from)))
+                .scaleByPowerOfTen(rates.fractionDigits(from));
+        BigInteger result = numerator.divide(denominator, 0, mode).toBigIntegerExact();
+        return result.longValueExact();
+    }
+}
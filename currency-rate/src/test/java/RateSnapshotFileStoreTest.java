@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.matthew.model.RateSnapshot;
+import ru.matthew.storage.RateSnapshotFileStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateSnapshotFileStoreTest {
+    @TempDir
+    private Path tempDir;
+
+    private final RateSnapshot rates = RateSnapshot.builder(LocalDate.of(2026, 10, 18), Instant.ofEpochSecond(1_792_300_000L, 123))
+            .add("USD", 1, 96_088_000L)
+            .add("JPY", 100, 64_309_800L)
+            .build();
+
+    @Test
+    void load_WhenSaved_ReturnsEqualSnapshot() {
+        // Arrange
+        RateSnapshotFileStore store = new RateSnapshotFileStore(tempDir.resolve("nested/rates.snapshot").toString());
+        store.save(rates);
+
+        // Act
+        RateSnapshot restored = store.load().orElseThrow();
+
+        // Assert
+        assertEquals(rates.getPublicationDate(), restored.getPublicationDate());
+        assertEquals(rates.getFetchedAt(), restored.getFetchedAt());
+        assertEquals(rates.size(), restored.size());
+        int jpy = restored.indexOf("JPY");
+        assertEquals(100, restored.nominal(jpy));
+        assertEquals(64_309_800L, restored.value(jpy));
+        assertEquals(0.643098, restored.rate(jpy), 1e-12);
+        assertEquals(1.0, restored.rate(restored.indexOf("RUB")));
+    }
+
+    @Test
+    void load_WhenFileTruncated_ReturnsEmpty() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("rates.snapshot");
+        RateSnapshotFileStore store = new RateSnapshotFileStore(file.toString());
+        store.save(rates);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        // Act & Assert
+        assertEquals(Optional.empty(), store.load());
+    }
+
+    @Test
+    void load_WhenPayloadCorrupted_ReturnsEmpty() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("rates.snapshot");
+        RateSnapshotFileStore store = new RateSnapshotFileStore(file.toString());
+        store.save(rates);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(file, bytes);
+
+        // Act & Assert
+        assertEquals(Optional.empty(), store.load());
+    }
+
+    @Test
+    void load_WhenFileMissingOrStoreDisabled_ReturnsEmpty() {
+        // Act & Assert
+        assertEquals(Optional.empty(), new RateSnapshotFileStore(tempDir.resolve("missing").toString()).load());
+        assertEquals(Optional.empty(), new RateSnapshotFileStore("").load());
+    }
+}
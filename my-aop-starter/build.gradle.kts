@@ -15,21 +15,22 @@ dependencies {
     implementation(libs.starter.aop)
     implementation(libs.spring.boot.autoconfigure)
     implementation(libs.aspectjweaver)
+    // Режим timed.mode=agent: замер встраивается в байткод при загрузке классов
+    implementation("net.bytebuddy:byte-buddy")
+    implementation("net.bytebuddy:byte-buddy-agent")
+    // Экспорт в Micrometer и /actuator/timed включаются, только если приложение само подключило actuator
+    compileOnly("org.springframework.boot:spring-boot-actuator-autoconfigure")
+    compileOnly("io.micrometer:micrometer-core")
     compileOnly(libs.lombok)
     annotationProcessor(libs.lombok)
+    testImplementation(libs.junit.api)
+    testRuntimeOnly(libs.junit.engine)
 }
 
 tasks.test {
     useJUnitPlatform()
 }
 
-tasks.withType<Jar> {
-    duplicatesStrategy = DuplicatesStrategy.EXCLUDE
-    from("src/main/resources") {
-        include("META-INF/spring.factories")
-    }
-}
-
 tasks.bootJar {
     enabled = false
 }
\ No newline at end of file
@@ -5,7 +5,35 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Замер длительности вызовов метода или всех публичных методов класса. Аннотация на методе
+ * важнее аннотации на классе.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD, ElementType.TYPE})
 public @interface Timed {
+
+    /**
+     * Доля замеряемых вызовов от 0 (не включая) до 1, округляется вниз до степени двойки: 0.01 - каждый 128-й.
+     * Число вызовов и распределение времени остаются несмещёнными оценками по всем вызовам.
+     */
+    double sampleRate() default 1.0;
+
+    /**
+     * Допустимая доля времени метода, уходящая на сам замер, например 0.01. Если замер обходится дороже,
+     * доля замеряемых вызовов снижается автоматически, но не выше {@link #sampleRate()}. 0 - без подстройки.
+     */
+    double overheadBudget() default 0;
+
+    /**
+     * Замерять ещё и процессорное время потока. Чтение счётчика заметно дороже чтения часов,
+     * поэтому для частых вызовов - вместе с выборкой. Счётчики ресурсов относятся к потоку, в котором
+     * выполняется метод: работа, переданная в другие потоки, в них не попадает.
+     */
+    boolean cpu() default false;
+
+    /**
+     * Замерять ещё и объём памяти, выделенной потоком за вызов.
+     */
+    boolean allocations() default false;
 }
@@ -1,33 +1,43 @@
 package ru.matthew.aop;
 
-import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.stereotype.Component;
-
-
+import ru.matthew.aop.jfr.TimedEvent;
+import ru.matthew.aop.metrics.MethodTimer;
+import ru.matthew.aop.metrics.TimedRegistry;
+
+/**
+ * Режим {@code timed.mode=proxy}: замер через прокси Spring AOP. Работает только для вызовов снаружи бина,
+ * через прокси; вызовы изнутри класса и приватные методы не замеряются.
+ */
 @Aspect
-@Component
-@Slf4j
 public class TimedAspect {
+    private final TimedRegistry registry;
+    private final TimedRecorder recorder;
+
+    public TimedAspect(TimedRegistry registry, TimedRecorder recorder) {
+        this.registry = registry;
+        this.recorder = recorder;
+    }
 
     @Around("@annotation(ru.matthew.aop.Timed) || @within(ru.matthew.aop.Timed)")
     public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getName();
-
+        MethodTimer timer = registry.timer(((MethodSignature) joinPoint.getSignature()).getMethod());
+        int sampleShift = timer.trySample();
+        if (sampleShift < 0) {
+            return joinPoint.proceed();
+        }
+
+        TimedEvent event = recorder.beginEvent();
+        long startCpuNanos = timer.readCpuNanos();
+        long startAllocatedBytes = timer.readAllocatedBytes();
         long startTime = System.nanoTime();
-
-        Object result = joinPoint.proceed();
-
-        long executionTime = System.nanoTime() - startTime;
-
-        log.info("Метод {}.{} выполнен за {} наносекунд", className, methodName, executionTime);
-
-        return result;
+        try {
+            return joinPoint.proceed();
+        } finally {
+            recorder.record(timer, startTime, sampleShift, startCpuNanos, startAllocatedBytes, event);
+        }
     }
 }
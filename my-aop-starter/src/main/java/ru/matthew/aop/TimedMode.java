@@ -0,0 +1,12 @@
+package ru.matthew.aop;
+
+public enum TimedMode {
+    /**
+     * Прокси Spring AOP вокруг бинов.
+     */
+    PROXY,
+    /**
+     * Замер, встроенный в байткод методов агентом Byte Buddy при загрузке классов.
+     */
+    AGENT
+}
@@ -0,0 +1,153 @@
+package ru.matthew.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.matthew.aop.jfr.TimedEvent;
+import ru.matthew.aop.metrics.LatencyHistogram;
+import ru.matthew.aop.metrics.MethodTimer;
+import ru.matthew.aop.metrics.ThreadResources;
+
+import java.time.Duration;
+
+/**
+ * Общая для прокси и агента запись завершённого вызова: длительность в гистограмму метода,
+ * а вызовы не короче порога - ещё и в лог.
+ * <p>
+ * Цена одного замера (два чтения часов и запись в гистограмму, а также чтения счётчиков ресурсов потока)
+ * оценивается при создании, а дальше засекается на части замеренных вызовов каждого метода: так оценка
+ * учитывает его гистограммы, конкуренцию за них и нагрузку на машину. По скользящей оценке методы
+ * с бюджетом накладных расходов подбирают долю замеряемых вызовов.
+ * <p>
+ * Замеренный вызов, кроме того, становится событием JFR {@link TimedEvent}, если идёт запись с этим событием.
+ */
+@Slf4j
+public class TimedRecorder {
+    private static final int CALIBRATION_ROUNDS = 5;
+    private static final int CALIBRATION_CALLS = 10_000;
+
+    private final long slowThresholdNanos;
+    private final boolean jfrEnabled;
+    private final long jfrThresholdNanos;
+    private final double samplingCostNanos;
+    private final double cpuReadCostNanos;
+    private final double allocationReadCostNanos;
+
+    public TimedRecorder(Duration slowThreshold) {
+        this(slowThreshold, true, Duration.ZERO);
+    }
+
+    /**
+     * @param jfrEnabled   создавать ли события JFR
+     * @param jfrThreshold события для более коротких вызовов не записываются
+     */
+    public TimedRecorder(Duration slowThreshold, boolean jfrEnabled, Duration jfrThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.jfrEnabled = jfrEnabled;
+        this.jfrThresholdNanos = jfrThreshold.toNanos();
+        // Начальная оценка до первых засечек метода
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        this.samplingCostNanos = calibrate(() -> {
+            long start = System.nanoTime();
+            histogram.record(System.nanoTime() - start);
+        });
+        this.cpuReadCostNanos = ThreadResources.cpuSupported() ? calibrate(ThreadResources::cpuNanos) : 0;
+        this.allocationReadCostNanos = ThreadResources.allocationSupported()
+                ? calibrate(ThreadResources::allocatedBytes) : 0;
+        log.debug("Цена замера @Timed: {} нс, чтения процессорного времени: {} нс, чтения выделенной памяти: {} нс",
+                samplingCostNanos, cpuReadCostNanos, allocationReadCostNanos);
+    }
+
+    public double samplingCostNanos() {
+        return samplingCostNanos;
+    }
+
+    /**
+     * Начинает событие JFR для замеряемого вызова; вызывается до чтения часов.
+     *
+     * @return событие или {@code null}, если JFR его не записывает
+     */
+    public TimedEvent beginEvent() {
+        return jfrEnabled ? TimedEvent.beginIfEnabled() : null;
+    }
+
+    public void record(MethodTimer timer, long startNanos) {
+        record(timer, startNanos, 0);
+    }
+
+    /**
+     * @param sampleShift значение {@link MethodTimer#trySample()}, с которым вызов был выбран для замера
+     */
+    public void record(MethodTimer timer, long startNanos, int sampleShift) {
+        record(timer, startNanos, sampleShift, -1, -1, null);
+    }
+
+    /**
+     * @param startCpuNanos       {@link MethodTimer#readCpuNanos()} перед вызовом
+     * @param startAllocatedBytes {@link MethodTimer#readAllocatedBytes()} перед вызовом
+     * @param event               результат {@link #beginEvent()}
+     */
+    public void record(MethodTimer timer, long startNanos, int sampleShift, long startCpuNanos, long startAllocatedBytes,
+                       TimedEvent event) {
+        long now = System.nanoTime();
+        long executionTime = now - startNanos;
+        if (event != null) {
+            event.end();
+        }
+        boolean probe = timer.probeOverhead();
+        long cpuTime = startCpuNanos >= 0 ? ThreadResources.cpuNanos() - startCpuNanos : -1;
+        long allocated = startAllocatedBytes >= 0 ? ThreadResources.allocatedBytes() - startAllocatedBytes : -1;
+        long readNanos = probe ? System.nanoTime() - now : 0;
+        timer.record(executionTime, sampleShift);
+        if (cpuTime >= 0) {
+            timer.recordCpu(cpuTime, sampleShift);
+        }
+        if (allocated >= 0) {
+            timer.recordAllocations(allocated, sampleShift);
+        }
+        if (probe) {
+            // Вход читает те же счётчики и часы, что и выход, поэтому его цена - это чтения выхода
+            timer.recordOverhead(System.nanoTime() - now + readNanos);
+        }
+        timer.adjust(now, timer.overheadNanos(samplingCost(timer)));
+        if (event != null && executionTime >= jfrThresholdNanos) {
+            event.commit(timer, sampleShift, cpuTime, allocated);
+        }
+        if (executionTime >= slowThresholdNanos) {
+            logSlowCall(timer, executionTime, cpuTime, allocated);
+        }
+    }
+
+    private double samplingCost(MethodTimer timer) {
+        double cost = samplingCostNanos;
+        if (timer.tracksCpu()) {
+            cost += 2 * cpuReadCostNanos;
+        }
+        if (timer.tracksAllocations()) {
+            cost += 2 * allocationReadCostNanos;
+        }
+        return cost;
+    }
+
+    private static void logSlowCall(MethodTimer timer, long executionTime, long cpuTime, long allocated) {
+        if (cpuTime < 0 && allocated < 0) {
+            log.warn("Медленный вызов {}: {} мс", timer.name(), executionTime / 1_000_000);
+        } else {
+            log.warn("Медленный вызов {}: {} мс, процессор {} мс, выделено {} КБ", timer.name(),
+                    executionTime / 1_000_000,
+                    cpuTime < 0 ? "-" : cpuTime / 1_000_000,
+                    allocated < 0 ? "-" : allocated / 1024);
+        }
+    }
+
+    // Лучший из нескольких прогонов: первые идут в интерпретаторе и завышают цену
+    private static double calibrate(Runnable operation) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            long started = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_CALLS; i++) {
+                operation.run();
+            }
+            best = Math.min(best, (double) (System.nanoTime() - started) / CALIBRATION_CALLS);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.matthew.aop.agent;
+
+import net.bytebuddy.asm.Advice;
+import ru.matthew.aop.jfr.TimedEvent;
+
+/**
+ * Совет для методов с {@code @Timed(cpu = true)} или {@code @Timed(allocations = true)}: кроме времени
+ * запоминает процессорное время и выделенную память потока до вызова. Счётчики читаются до часов,
+ * чтобы их цена не попадала в длительность вызова.
+ */
+public final class ProfiledAdvice {
+
+    private ProfiledAdvice() {
+    }
+
+    @Advice.OnMethodEnter
+    public static long enter(@TimerId int timerId,
+                             @Advice.Local("sampleShift") int sampleShift,
+                             @Advice.Local("startCpuNanos") long startCpuNanos,
+                             @Advice.Local("startAllocatedBytes") long startAllocatedBytes,
+                             @Advice.Local("event") TimedEvent event) {
+        sampleShift = TimedDispatcher.trySample(timerId);
+        if (sampleShift < 0) {
+            return 0;
+        }
+        event = TimedDispatcher.beginEvent();
+        startCpuNanos = TimedDispatcher.readCpuNanos(timerId);
+        startAllocatedBytes = TimedDispatcher.readAllocatedBytes(timerId);
+        return System.nanoTime();
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(@Advice.Enter long startNanos, @TimerId int timerId,
+                            @Advice.Local("sampleShift") int sampleShift,
+                            @Advice.Local("startCpuNanos") long startCpuNanos,
+                            @Advice.Local("startAllocatedBytes") long startAllocatedBytes,
+                            @Advice.Local("event") TimedEvent event) {
+        if (sampleShift >= 0) {
+            TimedDispatcher.record(timerId, startNanos, sampleShift, startCpuNanos, startAllocatedBytes, event);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.matthew.aop.agent;
+
+import net.bytebuddy.asm.Advice;
+import ru.matthew.aop.jfr.TimedEvent;
+
+/**
+ * Код, который Byte Buddy встраивает в начало и конец каждого замеряемого метода.
+ * Объектов на вызов не создаётся: время старта и вес замера лежат в локальных переменных, номер метода -
+ * константа. Невыбранный для замера вызов не читает часы. Событие JFR создаётся, только пока его записывают.
+ */
+public final class TimedAdvice {
+
+    private TimedAdvice() {
+    }
+
+    @Advice.OnMethodEnter
+    public static long enter(@TimerId int timerId, @Advice.Local("sampleShift") int sampleShift,
+                             @Advice.Local("event") TimedEvent event) {
+        sampleShift = TimedDispatcher.trySample(timerId);
+        if (sampleShift < 0) {
+            return 0;
+        }
+        event = TimedDispatcher.beginEvent();
+        return System.nanoTime();
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(@Advice.Enter long startNanos, @TimerId int timerId,
+                            @Advice.Local("sampleShift") int sampleShift,
+                            @Advice.Local("event") TimedEvent event) {
+        if (sampleShift >= 0) {
+            TimedDispatcher.record(timerId, startNanos, sampleShift, event);
+        }
+    }
+}
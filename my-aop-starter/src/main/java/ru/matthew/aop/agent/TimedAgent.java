@@ -0,0 +1,108 @@
+package ru.matthew.aop.agent;
+
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+import net.bytebuddy.utility.JavaModule;
+import ru.matthew.aop.Timed;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.metrics.TimedRegistry;
+import ru.matthew.aop.metrics.TimerSettings;
+
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.List;
+
+import static net.bytebuddy.matcher.ElementMatchers.declaresMethod;
+import static net.bytebuddy.matcher.ElementMatchers.isAnnotatedWith;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+
+/**
+ * Режим {@code timed.mode=agent}: агент Byte Buddy встраивает замер прямо в байткод методов с {@code @Timed},
+ * без прокси и без объекта точки соединения на вызов. Замеряются и вызовы изнутри класса, и приватные
+ * методы, если на них стоит аннотация; аннотация на классе, как и в режиме прокси, относится к его
+ * публичным методам. Уже загруженные классы переопределяются.
+ */
+public final class TimedAgent {
+    private static final TimedRegistry REGISTRY = new TimedRegistry();
+    private static volatile boolean installed;
+
+    private TimedAgent() {
+    }
+
+    /**
+     * Устанавливает агент в текущую JVM; повторный вызов только меняет {@code recorder}.
+     *
+     * @param packages пакеты, классы которых проверяются на {@code @Timed}; пустой список - все, кроме служебных
+     */
+    public static synchronized void install(TimedRecorder recorder, List<String> packages) {
+        TimedDispatcher.setRecorder(recorder);
+        if (installed) {
+            return;
+        }
+        Instrumentation instrumentation = ByteBuddyAgent.install();
+        new AgentBuilder.Default()
+                .disableClassFormatChanges()
+                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                .ignore(nameStartsWith("net.bytebuddy.")
+                        .or(nameStartsWith("java."))
+                        .or(nameStartsWith("jdk."))
+                        .or(nameStartsWith("sun."))
+                        .or(nameStartsWith("com.sun."))
+                        .or(nameStartsWith("ru.matthew.aop.")))
+                .type(inPackages(packages).and(isAnnotatedWith(Timed.class)
+                        .or(declaresMethod(isAnnotatedWith(Timed.class)))))
+                .transform(TimedAgent::instrument)
+                .installOn(instrumentation);
+        installed = true;
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    /**
+     * Статистика инструментированных методов; в режиме агента она же отдаётся как бин.
+     */
+    public static TimedRegistry registry() {
+        return REGISTRY;
+    }
+
+    private static DynamicType.Builder<?> instrument(DynamicType.Builder<?> builder, TypeDescription type,
+                                                     ClassLoader classLoader, JavaModule module,
+                                                     ProtectionDomain protectionDomain) {
+        AnnotationDescription.Loadable<Timed> typeTimed = type.getDeclaredAnnotations().ofType(Timed.class);
+        for (MethodDescription.InDefinedShape method : type.getDeclaredMethods()) {
+            if (!method.isMethod() || method.isAbstract() || method.isNative() || method.isSynthetic()) {
+                continue;
+            }
+            AnnotationDescription.Loadable<Timed> methodTimed = method.getDeclaredAnnotations().ofType(Timed.class);
+            AnnotationDescription.Loadable<Timed> timed = methodTimed != null ? methodTimed
+                    : typeTimed != null && method.isPublic() ? typeTimed : null;
+            if (timed != null) {
+                TimerSettings settings = TimerSettings.of(timed.load());
+                int timerId = TimedDispatcher.register(REGISTRY.timer(type.getName(), method.getName(), settings));
+                // Методы без замера ресурсов потока получают совет без лишних чтений и локальных переменных
+                builder = builder.visit(Advice.withCustomMapping()
+                        .bind(TimerId.class, timerId)
+                        .to(settings.profiled() ? ProfiledAdvice.class : TimedAdvice.class)
+                        .on(ElementMatchers.is(method)));
+            }
+        }
+        return builder;
+    }
+
+    private static ElementMatcher.Junction<TypeDescription> inPackages(List<String> packages) {
+        ElementMatcher.Junction<TypeDescription> matcher = packages.isEmpty() ? ElementMatchers.any() : ElementMatchers.none();
+        for (String name : packages) {
+            matcher = matcher.or(nameStartsWith(name + "."));
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.matthew.aop.agent;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import ru.matthew.aop.TimedMode;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.cfg.TimedProperties;
+
+/**
+ * Устанавливает агент при {@code timed.mode=agent} до создания контекста, чтобы классы бинов
+ * загружались уже инструментированными. Если установить не удалось (например, JRE без модуля attach),
+ * автоконфигурация остаётся на прокси.
+ */
+public class TimedAgentEnvironmentPostProcessor implements EnvironmentPostProcessor {
+    private final Log log;
+
+    public TimedAgentEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(TimedAgentEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        TimedProperties properties = Binder.get(environment)
+                .bind("timed", TimedProperties.class)
+                .orElseGet(TimedProperties::new);
+        if (properties.getMode() != TimedMode.AGENT) {
+            return;
+        }
+        try {
+            TimedRecorder recorder = new TimedRecorder(properties.getSlowThreshold(),
+                    properties.getJfr().isEnabled(), properties.getJfr().getThreshold());
+            TimedAgent.install(recorder, properties.getAgentPackages());
+            log.info("Агент @Timed установлен, пакеты: " + properties.getAgentPackages());
+        } catch (RuntimeException | LinkageError e) {
+            log.warn("Не удалось установить агент @Timed, замер останется на прокси Spring AOP", e);
+        }
+    }
+}
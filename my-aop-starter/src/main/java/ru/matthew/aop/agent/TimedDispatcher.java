@@ -0,0 +1,66 @@
+package ru.matthew.aop.agent;
+
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.jfr.TimedEvent;
+import ru.matthew.aop.metrics.MethodTimer;
+
+import java.util.Arrays;
+
+/**
+ * Точка входа из инструментированного кода: статистика методов лежит в массиве по номеру,
+ * выданному при инструментировании, поэтому вызов находит её одним чтением массива.
+ */
+public final class TimedDispatcher {
+    private static volatile MethodTimer[] timers = new MethodTimer[0];
+    private static volatile TimedRecorder recorder;
+
+    private TimedDispatcher() {
+    }
+
+    public static int trySample(int timerId) {
+        return timers[timerId].trySample();
+    }
+
+    public static TimedEvent beginEvent() {
+        return recorder.beginEvent();
+    }
+
+    public static void record(int timerId, long startNanos, int sampleShift, TimedEvent event) {
+        recorder.record(timers[timerId], startNanos, sampleShift, -1, -1, event);
+    }
+
+    public static long readCpuNanos(int timerId) {
+        return timers[timerId].readCpuNanos();
+    }
+
+    public static long readAllocatedBytes(int timerId) {
+        return timers[timerId].readAllocatedBytes();
+    }
+
+    public static void record(int timerId, long startNanos, int sampleShift, long startCpuNanos,
+                              long startAllocatedBytes, TimedEvent event) {
+        recorder.record(timers[timerId], startNanos, sampleShift, startCpuNanos, startAllocatedBytes, event);
+    }
+
+    static void setRecorder(TimedRecorder value) {
+        recorder = value;
+    }
+
+    /**
+     * Вызывается при инструментировании класса, до того, как его код сможет выполниться.
+     *
+     * @return номер статистики для встраивания в код метода
+     */
+    static synchronized int register(MethodTimer timer) {
+        MethodTimer[] current = timers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == timer) {
+                return i;
+            }
+        }
+        MethodTimer[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = timer;
+        timers = next;
+        return current.length;
+    }
+}
@@ -1,13 +1,55 @@
 package ru.matthew.aop.cfg;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import ru.matthew.aop.TimedAspect;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.agent.TimedAgent;
+import ru.matthew.aop.endpoint.TimedEndpoint;
+import ru.matthew.aop.metrics.TimedMeterBinder;
+import ru.matthew.aop.metrics.TimedRegistry;
 
-@Configuration
+@AutoConfiguration
+@EnableConfigurationProperties(TimedProperties.class)
 public class AutoConfigure {
     @Bean
-    public TimedAspect timedAspect() {
-        return new TimedAspect();
+    @ConditionalOnMissingBean
+    public TimedRegistry timedRegistry() {
+        return TimedAgent.isInstalled() ? TimedAgent.registry() : new TimedRegistry();
+    }
+
+    @Bean
+    @Conditional(OnProxyModeCondition.class)
+    public TimedAspect timedAspect(TimedRegistry timedRegistry, TimedProperties properties) {
+        return new TimedAspect(timedRegistry, new TimedRecorder(properties.getSlowThreshold(),
+                properties.getJfr().isEnabled(), properties.getJfr().getThreshold()));
+    }
+
+    // Micrometer и actuator необязательны: вложенные классы не загружаются, если их нет в classpath
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class TimedMetricsConfiguration {
+        @Bean
+        public TimedMeterBinder timedMeterBinder(TimedRegistry timedRegistry) {
+            return new TimedMeterBinder(timedRegistry);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(Endpoint.class)
+    static class TimedEndpointConfiguration {
+        @Bean
+        @ConditionalOnAvailableEndpoint
+        public TimedEndpoint timedEndpoint(TimedRegistry timedRegistry) {
+            return new TimedEndpoint(timedRegistry);
+        }
     }
 }
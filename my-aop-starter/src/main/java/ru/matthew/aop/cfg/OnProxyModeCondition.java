@@ -0,0 +1,17 @@
+package ru.matthew.aop.cfg;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import ru.matthew.aop.agent.TimedAgent;
+
+/**
+ * Прокси нужны, только если агент не установлен: иначе вызов замерялся бы дважды.
+ */
+class OnProxyModeCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return !TimedAgent.isInstalled();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.matthew.aop.cfg;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.matthew.aop.TimedMode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "timed")
+public class TimedProperties {
+    /**
+     * Вызовы не короче порога пишутся в лог с уровнем WARN.
+     */
+    private Duration slowThreshold = Duration.ofSeconds(1);
+
+    private TimedMode mode = TimedMode.PROXY;
+
+    /**
+     * Пакеты, в которых агент ищет {@code @Timed}; чем уже, тем меньше работы при загрузке классов.
+     */
+    private List<String> agentPackages = new ArrayList<>();
+
+    private Jfr jfr = new Jfr();
+
+    @Data
+    public static class Jfr {
+        /**
+         * Выключает события JFR совсем; включённые ничего не стоят, пока запись их не собирает.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Более короткие вызовы не попадают в запись; порог {@code threshold} из настроек JFR действует тоже.
+         */
+        private Duration threshold = Duration.ZERO;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.matthew.aop.endpoint;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import ru.matthew.aop.metrics.HistogramSnapshot;
+import ru.matthew.aop.metrics.MethodTimer;
+import ru.matthew.aop.metrics.TimedRegistry;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/timed}: статистика методов с {@code @Timed} с момента старта, время в миллисекундах,
+ * память в байтах.
+ */
+@Endpoint(id = "timed")
+public class TimedEndpoint {
+    private final TimedRegistry registry;
+
+    public TimedEndpoint(TimedRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, MethodStats> timed() {
+        Map<String, MethodStats> result = new TreeMap<>();
+        for (MethodTimer timer : registry.timers()) {
+            result.put(timer.name(), MethodStats.of(timer));
+        }
+        return result;
+    }
+
+    /**
+     * При выборочном замере {@code count} и перцентили - оценки по всем вызовам, {@code sampleRate} - текущая
+     * доля замеряемых вызовов. {@code cpu} и {@code allocations} - {@code null}, если не включены в {@code @Timed}.
+     */
+    public record MethodStats(long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double p999Ms,
+                              double maxMs, double sampleRate, CpuStats cpu, AllocationStats allocations) {
+
+        static MethodStats of(MethodTimer timer) {
+            HistogramSnapshot snapshot = timer.snapshot();
+            HistogramSnapshot cpu = timer.cpuSnapshot();
+            HistogramSnapshot allocations = timer.allocationSnapshot();
+            return new MethodStats(snapshot.count(),
+                    millis(snapshot.meanNanos()),
+                    millis(snapshot.percentileNanos(0.5)),
+                    millis(snapshot.percentileNanos(0.9)),
+                    millis(snapshot.percentileNanos(0.99)),
+                    millis(snapshot.percentileNanos(0.999)),
+                    millis(snapshot.maxNanos()),
+                    timer.sampleRate(),
+                    cpu != null ? CpuStats.of(cpu) : null,
+                    allocations != null ? AllocationStats.of(allocations) : null);
+        }
+    }
+
+    public record CpuStats(double meanMs, double p50Ms, double p99Ms, double totalMs) {
+
+        static CpuStats of(HistogramSnapshot snapshot) {
+            return new CpuStats(millis(snapshot.meanNanos()),
+                    millis(snapshot.percentileNanos(0.5)),
+                    millis(snapshot.percentileNanos(0.99)),
+                    millis(snapshot.totalNanos()));
+        }
+    }
+
+    /**
+     * Память, выделенная потоком за вызов, в байтах.
+     */
+    public record AllocationStats(double meanBytes, long p50Bytes, long p99Bytes, long totalBytes) {
+
+        static AllocationStats of(HistogramSnapshot snapshot) {
+            return new AllocationStats(snapshot.meanNanos(),
+                    snapshot.percentileNanos(0.5),
+                    snapshot.percentileNanos(0.99),
+                    snapshot.totalNanos());
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.matthew.aop.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import ru.matthew.aop.metrics.MethodTimer;
+
+/**
+ * Событие JFR на вызов метода с {@code @Timed}: начало и длительность - собственные поля события, поток
+ * записывается JFR. В JMC события лежат в категории Application / Timed рядом с GC, блокировками и вводом-выводом.
+ * <p>
+ * Событие создаётся, только если идёт запись и событие в ней включено; порог длительности задаётся
+ * настройкой {@code threshold} события в JFR и {@code timed.jfr.threshold}.
+ */
+@Name(TimedEvent.NAME)
+@Label("Timed Method Call")
+@Category({"Application", "Timed"})
+@Description("Вызов метода, помеченного @Timed")
+@StackTrace(false)
+public class TimedEvent extends jdk.jfr.Event {
+    public static final String NAME = "ru.matthew.Timed";
+
+    private static final EventType TYPE = EventType.getEventType(TimedEvent.class);
+
+    @Label("Class")
+    String className;
+
+    @Label("Method")
+    String methodName;
+
+    @Label("Sample Weight")
+    @Description("Сколько вызовов представляет замер при выборке")
+    long sampleWeight;
+
+    @Label("CPU Time")
+    @Description("Процессорное время потока, 0 - не замерялось")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @Description("Память, выделенная потоком, 0 - не замерялась")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+
+    /**
+     * @return начатое событие или {@code null}, если ни одна запись JFR его не включает
+     */
+    public static TimedEvent beginIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        TimedEvent event = new TimedEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Заполняет событие и передаёт в JFR; событие короче порога из настроек записи JFR отбрасывает сам.
+     *
+     * @param cpuTime   процессорное время или -1, если не замерялось
+     * @param allocated выделенная память или -1, если не замерялась
+     */
+    public void commit(MethodTimer timer, int sampleShift, long cpuTime, long allocated) {
+        className = timer.className();
+        methodName = timer.methodName();
+        sampleWeight = 1L << sampleShift;
+        this.cpuTime = Math.max(0, cpuTime);
+        this.allocated = Math.max(0, allocated);
+        commit();
+    }
+}
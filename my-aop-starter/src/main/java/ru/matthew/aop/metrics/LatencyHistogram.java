@@ -0,0 +1,127 @@
+package ru.matthew.aop.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей в наносекундах (или других неотрицательных величин, например байтов)
+ * с лог-линейными корзинами, как в HdrHistogram: в каждой степени
+ * двойки 32 корзины одинаковой ширины, поэтому погрешность перцентиля не больше 1/32 значения.
+ * Запись без блокировок: счётчики разбиты на полосы по потокам, снимок суммирует полосы.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Больше 2^37 нс (около 137 с) значения попадают в последнюю корзину
+    private static final long MAX_TRACKABLE = (1L << 37) - 1;
+    static final int BUCKETS = bucket(MAX_TRACKABLE) + 1;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        this(defaultStripes());
+    }
+
+    /**
+     * @param stripes число полос, степень двойки
+     */
+    public LatencyHistogram(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Число полос должно быть степенью двойки: " + stripes);
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripes - 1;
+    }
+
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Запись выборочного замера: значение учитывается {@code weight} раз, чтобы число вызовов
+     * и суммарное время оставались несмещёнными оценками по всем вызовам.
+     */
+    public void record(long nanos, long weight) {
+        long value = Math.max(0, nanos);
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        stripe.counts.getAndAdd(bucket(Math.min(value, MAX_TRACKABLE)), weight);
+        stripe.total.getAndAdd(value * weight);
+        long max = stripe.max.get();
+        while (value > max && !stripe.max.compareAndSet(max, value)) {
+            max = stripe.max.get();
+        }
+    }
+
+    /**
+     * Число записей без сборки снимка, для частого опроса.
+     */
+    public long count() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                count += stripe.counts.get(i);
+            }
+        }
+        return count;
+    }
+
+    public long totalNanos() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.total.get();
+        }
+        return total;
+    }
+
+    /**
+     * Снимок слабо согласован: записи, идущие во время снятия, могут попасть в одни счётчики и не попасть в другие.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        long max = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.counts.get(i);
+            }
+            total += stripe.total.get();
+            max = Math.max(max, stripe.max.get());
+        }
+        return new HistogramSnapshot(counts, total, max);
+    }
+
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return наибольшее значение, попадающее в корзину
+     */
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static int defaultStripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(16, Integer.highestOneBit(Math.max(1, processors - 1)) << 1);
+    }
+
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+    }
+}
@@ -0,0 +1,224 @@
+package ru.matthew.aop.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Статистика одного метода, помеченного {@code @Timed}. Перегрузки метода делят одну статистику.
+ * <p>
+ * Вызов замеряется с вероятностью {@code 2^-shift}, и замер учитывается с весом {@code 2^shift}.
+ * При бюджете накладных расходов {@code shift} пересчитывается не чаще раза в {@link #ADJUST_INTERVAL_NANOS}
+ * по среднему времени вызова за прошедший интервал и скользящей оценке цены замера: в среднем у каждого
+ * 64-го замера засекается и сама запись.
+ * <p>
+ * Процессорное время и выделенная память, если включены, копятся в отдельных гистограммах с теми же весами.
+ */
+public class MethodTimer {
+    static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Не реже одного замера на миллион вызовов
+    private static final int MAX_SHIFT = 20;
+    private static final int OVERHEAD_PROBE_BITS = 6;
+    // Вес новой цены замера в скользящем среднем
+    private static final double OVERHEAD_SMOOTHING = 0.1;
+    // Вытеснение потока посреди засечки не должно разом поднимать оценку
+    private static final double OVERHEAD_OUTLIER_FACTOR = 4;
+
+    private final String className;
+    private final String methodName;
+    private final double overheadBudget;
+    private final int minShift;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LatencyHistogram cpuHistogram;
+    private final LatencyHistogram allocationHistogram;
+    private volatile int sampleShift;
+    private volatile long nextAdjustNanos = System.nanoTime() + ADJUST_INTERVAL_NANOS;
+    private long adjustedCount;
+    private long adjustedTotalNanos;
+    // NaN, пока цену замера ещё не засекали
+    private volatile double overheadNanos = Double.NaN;
+
+    MethodTimer(String className, String methodName, TimerSettings settings) {
+        this.className = className;
+        this.methodName = methodName;
+        this.overheadBudget = settings.overheadBudget();
+        this.minShift = shiftFor(1 / settings.sampleRate());
+        this.sampleShift = minShift;
+        this.cpuHistogram = settings.cpu() && ThreadResources.cpuSupported() ? new LatencyHistogram() : null;
+        this.allocationHistogram = settings.allocations() && ThreadResources.allocationSupported()
+                ? new LatencyHistogram() : null;
+    }
+
+    public boolean tracksCpu() {
+        return cpuHistogram != null;
+    }
+
+    public boolean tracksAllocations() {
+        return allocationHistogram != null;
+    }
+
+    /**
+     * @return процессорное время потока или {@code -1}, если для метода оно не замеряется
+     */
+    public long readCpuNanos() {
+        return cpuHistogram != null ? ThreadResources.cpuNanos() : -1;
+    }
+
+    /**
+     * @return объём выделенной потоком памяти или {@code -1}, если для метода он не замеряется
+     */
+    public long readAllocatedBytes() {
+        return allocationHistogram != null ? ThreadResources.allocatedBytes() : -1;
+    }
+
+    public String className() {
+        return className;
+    }
+
+    public String methodName() {
+        return methodName;
+    }
+
+    public String name() {
+        return className + "." + methodName;
+    }
+
+    /**
+     * Решает, замерять ли очередной вызов.
+     *
+     * @return степень веса замера или {@code -1}, если вызов не замеряется
+     */
+    public int trySample() {
+        int shift = sampleShift;
+        if (shift == 0 || (ThreadLocalRandom.current().nextInt() & ((1 << shift) - 1)) == 0) {
+            return shift;
+        }
+        return -1;
+    }
+
+    /**
+     * Текущая доля замеряемых вызовов.
+     */
+    public double sampleRate() {
+        return 1.0 / (1 << sampleShift);
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    /**
+     * @param shift значение {@link #trySample()}, с которым вызов был выбран для замера
+     */
+    public void record(long nanos, int shift) {
+        histogram.record(nanos, 1L << shift);
+    }
+
+    public void recordCpu(long nanos, int shift) {
+        cpuHistogram.record(nanos, 1L << shift);
+    }
+
+    public void recordAllocations(long bytes, int shift) {
+        allocationHistogram.record(bytes, 1L << shift);
+    }
+
+    /**
+     * Решает, засекать ли у замеренного вызова цену самого замера.
+     */
+    public boolean probeOverhead() {
+        return overheadBudget > 0 && (ThreadLocalRandom.current().nextInt() & ((1 << OVERHEAD_PROBE_BITS) - 1)) == 0;
+    }
+
+    /**
+     * Учитывает засечённую цену замера в скользящем среднем. Одновременные засечки из разных потоков
+     * могут потерять одна другую, что для сглаженной оценки неважно.
+     */
+    public void recordOverhead(long nanos) {
+        double current = overheadNanos;
+        overheadNanos = Double.isNaN(current)
+                ? nanos
+                : current + OVERHEAD_SMOOTHING * (Math.min(nanos, OVERHEAD_OUTLIER_FACTOR * current) - current);
+    }
+
+    /**
+     * @param fallback цена, пока засечек ещё не было
+     * @return скользящая оценка цены одного замера
+     */
+    public double overheadNanos(double fallback) {
+        double current = overheadNanos;
+        return Double.isNaN(current) ? fallback : current;
+    }
+
+    /**
+     * Подстраивает долю замеряемых вызовов под бюджет, если подошло время пересчёта.
+     *
+     * @param nowNanos     время окончания замера, чтобы не читать часы ещё раз
+     * @param costNanos    цена одного замера, обычно {@link #overheadNanos(double)}
+     */
+    public void adjust(long nowNanos, double costNanos) {
+        if (overheadBudget == 0 || nowNanos - nextAdjustNanos < 0) {
+            return;
+        }
+        synchronized (this) {
+            if (nowNanos - nextAdjustNanos < 0) {
+                return;
+            }
+            nextAdjustNanos = nowNanos + ADJUST_INTERVAL_NANOS;
+            long count = histogram.count();
+            long total = histogram.totalNanos();
+            long calls = count - adjustedCount;
+            double meanNanos = (double) (total - adjustedTotalNanos) / Math.max(1, calls);
+            adjustedCount = count;
+            adjustedTotalNanos = total;
+            if (calls > 0) {
+                // Замер каждого 2^shift вызова стоит в среднем cost / 2^shift на вызов, это не больше budget * mean
+                int shift = shiftFor(costNanos / (overheadBudget * Math.max(1, meanNanos)));
+                sampleShift = Math.max(minShift, shift);
+            }
+        }
+    }
+
+    public long count() {
+        return histogram.count();
+    }
+
+    public long totalNanos() {
+        return histogram.totalNanos();
+    }
+
+    public HistogramSnapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    public long totalCpuNanos() {
+        return cpuHistogram != null ? cpuHistogram.totalNanos() : 0;
+    }
+
+    public long totalAllocatedBytes() {
+        return allocationHistogram != null ? allocationHistogram.totalNanos() : 0;
+    }
+
+    /**
+     * @return снимок процессорного времени или {@code null}, если оно не замеряется
+     */
+    public HistogramSnapshot cpuSnapshot() {
+        return cpuHistogram != null ? cpuHistogram.snapshot() : null;
+    }
+
+    /**
+     * @return снимок выделенной памяти в байтах или {@code null}, если она не замеряется
+     */
+    public HistogramSnapshot allocationSnapshot() {
+        return allocationHistogram != null ? allocationHistogram.snapshot() : null;
+    }
+
+    /**
+     * @return наименьшая степень двойки не меньше {@code ratio}, от 0 до {@link #MAX_SHIFT}
+     */
+    private static int shiftFor(double ratio) {
+        if (!(ratio > 1)) {
+            return 0;
+        }
+        long ceil = (long) Math.min(Math.ceil(ratio - 1e-9), 1L << MAX_SHIFT);
+        return Math.min(MAX_SHIFT, 64 - Long.numberOfLeadingZeros(ceil - 1));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.matthew.aop.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Процессорное время и объём выделенной памяти текущего потока через {@code com.sun.management.ThreadMXBean}.
+ * Если JVM их не поддерживает, методы возвращают {@code -1}.
+ */
+public final class ThreadResources {
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    private static final boolean CPU_SUPPORTED = THREADS != null && THREADS.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOCATION_SUPPORTED = THREADS != null && THREADS.isThreadAllocatedMemorySupported();
+
+    static {
+        if (CPU_SUPPORTED && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        if (ALLOCATION_SUPPORTED && !THREADS.isThreadAllocatedMemoryEnabled()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    private ThreadResources() {
+    }
+
+    public static boolean cpuSupported() {
+        return CPU_SUPPORTED;
+    }
+
+    public static boolean allocationSupported() {
+        return ALLOCATION_SUPPORTED;
+    }
+
+    public static long cpuNanos() {
+        return CPU_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    public static long allocatedBytes() {
+        return ALLOCATION_SUPPORTED ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean sunBean ? sunBean : null;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.matthew.aop.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикует статистику {@code @Timed} в Micrometer: {@code timed.method} - число вызовов и суммарное время,
+ * {@code timed.method.percentile} - перцентили с тегом {@code phi}; при включённых замерах ресурсов
+ * ещё {@code timed.method.cpu} и {@code timed.method.allocated}. Значения считываются из гистограмм
+ * при опросе реестра, на пути вызова метода Micrometer не участвует.
+ */
+public class TimedMeterBinder implements MeterBinder {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final TimedRegistry timedRegistry;
+
+    public TimedMeterBinder(TimedRegistry timedRegistry) {
+        this.timedRegistry = timedRegistry;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timedRegistry.onTimer(timer -> register(registry, timer));
+    }
+
+    private static void register(MeterRegistry registry, MethodTimer timer) {
+        Tags tags = Tags.of("class", timer.className(), "method", timer.methodName());
+        FunctionTimer.builder("timed.method", timer, MethodTimer::count, MethodTimer::totalNanos, TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("Вызовы методов с @Timed")
+                .register(registry);
+        if (timer.tracksCpu()) {
+            FunctionTimer.builder("timed.method.cpu", timer, MethodTimer::count, MethodTimer::totalCpuNanos,
+                            TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .description("Процессорное время вызовов методов с @Timed(cpu = true)")
+                    .register(registry);
+        }
+        if (timer.tracksAllocations()) {
+            FunctionCounter.builder("timed.method.allocated", timer, MethodTimer::totalAllocatedBytes)
+                    .tags(tags)
+                    .baseUnit(BaseUnits.BYTES)
+                    .description("Память, выделенная за вызовы методов с @Timed(allocations = true)")
+                    .register(registry);
+        }
+        for (double percentile : PERCENTILES) {
+            TimeGauge.builder("timed.method.percentile", timer, TimeUnit.NANOSECONDS,
+                            t -> t.snapshot().percentileNanos(percentile))
+                    .tags(tags.and("phi", String.valueOf(percentile)))
+                    .register(registry);
+        }
+    }
+}
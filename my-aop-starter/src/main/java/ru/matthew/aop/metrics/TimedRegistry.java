@@ -0,0 +1,67 @@
+package ru.matthew.aop.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.matthew.aop.Timed;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Статистика всех методов с {@code @Timed}. Статистика метода заводится при первом вызове,
+ * дальше находится по {@link Method} без сборки строк.
+ */
+@Slf4j
+public class TimedRegistry {
+    private final Map<Method, MethodTimer> byMethod = new ConcurrentHashMap<>();
+    private final Map<String, MethodTimer> byName = new ConcurrentHashMap<>();
+    private final List<Consumer<MethodTimer>> listeners = new CopyOnWriteArrayList<>();
+
+    public MethodTimer timer(Method method) {
+        MethodTimer timer = byMethod.get(method);
+        return timer != null ? timer : byMethod.computeIfAbsent(method, this::register);
+    }
+
+    /**
+     * Статистика по имени метода, для методов, известных без {@link Method}.
+     */
+    public MethodTimer timer(String className, String methodName, TimerSettings settings) {
+        return register(className, methodName, settings);
+    }
+
+    public Collection<MethodTimer> timers() {
+        return byName.values();
+    }
+
+    /**
+     * Вызывает {@code listener} для уже заведённых и для всех будущих методов.
+     */
+    public synchronized void onTimer(Consumer<MethodTimer> listener) {
+        listeners.add(listener);
+        byName.values().forEach(listener);
+    }
+
+    private MethodTimer register(Method method) {
+        Timed timed = method.getAnnotation(Timed.class);
+        if (timed == null) {
+            timed = method.getDeclaringClass().getAnnotation(Timed.class);
+        }
+        return register(method.getDeclaringClass().getName(), method.getName(), TimerSettings.of(timed));
+    }
+
+    // Заведение и подписка под одним монитором, чтобы подписчик не пропустил метод, заведённый одновременно с подпиской
+    private synchronized MethodTimer register(String className, String methodName, TimerSettings settings) {
+        return byName.computeIfAbsent(className + "." + methodName, name -> {
+            MethodTimer timer = new MethodTimer(className, methodName, settings);
+            if (settings.cpu() && !timer.tracksCpu() || settings.allocations() && !timer.tracksAllocations()) {
+                log.warn("JVM не поддерживает замер ресурсов потока, для {} замеряется только время", name);
+            }
+            listeners.forEach(listener -> listener.accept(timer));
+            return timer;
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package ru.matthew.aop.metrics;
+
+import ru.matthew.aop.Timed;
+
+/**
+ * Параметры замера метода из {@link Timed}.
+ */
+public record TimerSettings(double sampleRate, double overheadBudget, boolean cpu, boolean allocations) {
+    public static final TimerSettings DEFAULT = new TimerSettings(1.0, 0, false, false);
+
+    public TimerSettings {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Доля замеряемых вызовов должна быть в (0, 1]: " + sampleRate);
+        }
+        if (!(overheadBudget >= 0)) {
+            throw new IllegalArgumentException("Бюджет накладных расходов не может быть отрицательным: " + overheadBudget);
+        }
+    }
+
+    public TimerSettings(double sampleRate, double overheadBudget) {
+        this(sampleRate, overheadBudget, false, false);
+    }
+
+    /**
+     * @return нужны ли замеры ресурсов потока помимо времени
+     */
+    public boolean profiled() {
+        return cpu || allocations;
+    }
+
+    public static TimerSettings of(Timed timed) {
+        return timed == null ? DEFAULT
+                : new TimerSettings(timed.sampleRate(), timed.overheadBudget(), timed.cpu(), timed.allocations());
+    }
+}
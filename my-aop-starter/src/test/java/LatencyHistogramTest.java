@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.aop.metrics.HistogramSnapshot;
+import ru.matthew.aop.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentileNanos_ForRandomLatencies_StaysWithinBucketPrecision() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Логнормальное распределение от микросекунд до секунд
+            values[i] = (long) Math.exp(11 + 2 * random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        // Act
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        // Assert
+        assertEquals(values.length, snapshot.count());
+        assertEquals(values[values.length - 1], snapshot.maxNanos());
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long estimate = snapshot.percentileNanos(quantile);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 32 + 1,
+                    quantile + ": " + exact + " vs " + estimate);
+        }
+    }
+
+    @Test
+    public void record_WhenThreadsRecordConcurrently_LosesNoCounts() throws Exception {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 4;
+        int records = 100_000;
+        List<Thread> workers = new ArrayList<>();
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    histogram.record(i);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Assert
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals((long) threads * records, snapshot.count());
+        assertEquals((long) threads * records * (records - 1) / 2, snapshot.totalNanos());
+        assertEquals(records - 1, snapshot.maxNanos());
+    }
+
+    @Test
+    public void percentileNanos_ForHugeAndNegativeValues_ClampsToRange() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        // Act
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        // Assert
+        assertEquals(2, snapshot.count());
+        assertEquals(0, snapshot.percentileNanos(0.5));
+        assertEquals(Long.MAX_VALUE, snapshot.maxNanos());
+        assertTrue(snapshot.percentileNanos(1.0) >= (1L << 36));
+    }
+}
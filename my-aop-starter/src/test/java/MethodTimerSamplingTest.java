@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.metrics.HistogramSnapshot;
+import ru.matthew.aop.metrics.MethodTimer;
+import ru.matthew.aop.metrics.TimedRegistry;
+import ru.matthew.aop.metrics.TimerSettings;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodTimerSamplingTest {
+    private final TimedRegistry registry = new TimedRegistry();
+
+    @Test
+    public void trySample_WithSampleRate_KeepsCountAndTotalUnbiased() {
+        // Arrange: 0.1 округляется вниз до 1/16
+        MethodTimer timer = registry.timer("Service", "call", new TimerSettings(0.1, 0));
+        int calls = 1_000_000;
+        int sampled = 0;
+
+        // Act
+        for (int i = 0; i < calls; i++) {
+            int shift = timer.trySample();
+            if (shift >= 0) {
+                sampled++;
+                timer.record(1_000 + i % 1_000, shift);
+            }
+        }
+
+        // Assert
+        HistogramSnapshot snapshot = timer.snapshot();
+        assertEquals(1.0 / 16, timer.sampleRate());
+        assertEquals(calls / 16.0, sampled, calls / 16.0 * 0.05);
+        assertEquals(calls, snapshot.count(), calls * 0.05);
+        assertEquals(1_500, snapshot.meanNanos(), 1_500 * 0.01);
+        assertEquals(1_500, snapshot.percentileNanos(0.5), 1_500 * 0.05);
+    }
+
+    @Test
+    public void adjust_WhenSamplingCostExceedsBudget_LowersSampleRate() {
+        // Arrange: вызов 100 нс, замер 50 нс, бюджет 1% - замерять нужно не чаще раза в 50 вызовов
+        MethodTimer timer = registry.timer("Service", "hot", new TimerSettings(1.0, 0.01));
+        for (int i = 0; i < 1_000; i++) {
+            timer.record(100, timer.trySample());
+        }
+
+        // Act
+        timer.adjust(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 50);
+
+        // Assert
+        assertEquals(1.0 / 64, timer.sampleRate());
+    }
+
+    @Test
+    public void adjust_WhenCallsAreSlow_KeepsConfiguredSampleRate() {
+        // Arrange: вызов 1 мс, замер 50 нс - укладывается в бюджет и без выборки
+        MethodTimer timer = registry.timer("Service", "slow", new TimerSettings(0.5, 0.01));
+        for (int i = 0; i < 1_000; i++) {
+            int shift = timer.trySample();
+            if (shift >= 0) {
+                timer.record(1_000_000, shift);
+            }
+        }
+
+        // Act
+        timer.adjust(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 50);
+
+        // Assert
+        assertEquals(0.5, timer.sampleRate());
+    }
+
+    @Test
+    public void adjust_WhenMeasuredOverheadGrows_LowersSampleRate() {
+        // Arrange: вызов 100 нс, засечки цены замера растут с 50 до 200 нс
+        MethodTimer timer = registry.timer("Service", "contended", new TimerSettings(1.0, 0.01));
+        long now = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            timer.record(100, timer.trySample());
+            timer.recordOverhead(50);
+        }
+        timer.adjust(now + TimeUnit.SECONDS.toNanos(1), timer.overheadNanos(5));
+        double cheapRate = timer.sampleRate();
+
+        // Act
+        for (int i = 0; i < 64_000; i++) {
+            int shift = timer.trySample();
+            if (shift >= 0) {
+                timer.record(100, shift);
+                timer.recordOverhead(200);
+            }
+        }
+        timer.adjust(now + TimeUnit.SECONDS.toNanos(2), timer.overheadNanos(5));
+
+        // Assert
+        assertEquals(1.0 / 64, cheapRate);
+        assertEquals(1.0 / 256, timer.sampleRate());
+    }
+
+    @Test
+    public void recordOverhead_WhenProbeIsOutlier_MovesEstimateGradually() {
+        // Arrange
+        MethodTimer timer = registry.timer("Service", "preempted", new TimerSettings(1.0, 0.01));
+        for (int i = 0; i < 100; i++) {
+            timer.recordOverhead(50);
+        }
+
+        // Act: поток вытеснили посреди засечки
+        timer.recordOverhead(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Assert
+        assertEquals(65, timer.overheadNanos(0), 1e-6);
+    }
+
+    @Test
+    public void record_WithOverheadBudget_ProbesInstrumentationCost() {
+        // Arrange
+        TimedRecorder recorder = new TimedRecorder(Duration.ofMinutes(1), false, Duration.ZERO);
+        MethodTimer budgeted = registry.timer("Service", "budgeted", new TimerSettings(1.0, 0.01));
+        MethodTimer unbudgeted = registry.timer("Service", "unbudgeted", new TimerSettings(1.0, 0));
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            recorder.record(budgeted, System.nanoTime(), budgeted.trySample());
+            recorder.record(unbudgeted, System.nanoTime(), unbudgeted.trySample());
+        }
+
+        // Assert
+        assertTrue(budgeted.overheadNanos(Double.NaN) > 0);
+        assertTrue(Double.isNaN(unbudgeted.overheadNanos(Double.NaN)));
+    }
+}
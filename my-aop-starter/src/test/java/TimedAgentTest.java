@@ -0,0 +1,114 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.matthew.aop.Timed;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.agent.TimedAgent;
+import ru.matthew.aop.metrics.MethodTimer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimedAgentTest {
+
+    @BeforeAll
+    public static void installAgent() {
+        TimedAgent.install(new TimedRecorder(Duration.ofHours(1)), List.of());
+    }
+
+    @Test
+    public void install_ForSelfInvocationAndPrivateMethods_RecordsEachCall() {
+        // Act
+        new Loader().load(3);
+
+        // Assert
+        assertEquals(1, count("load"));
+        assertEquals(3, count("loadPage"));
+    }
+
+    @Test
+    public void install_WhenMethodThrows_StillRecordsCall() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> new Loader().fail());
+        assertEquals(1, count("fail"));
+    }
+
+    @Test
+    public void install_WithSampleRate_EstimatesCallCount() {
+        // Arrange
+        Loader loader = new Loader();
+
+        // Act
+        for (int i = 0; i < 40_000; i++) {
+            loader.sampled(i);
+        }
+
+        // Assert
+        assertEquals(40_000, count("sampled"), 40_000 * 0.1);
+    }
+
+    @Test
+    public void install_WithAllocationsAndCpu_RecordsThreadResources() {
+        // Arrange
+        Loader loader = new Loader();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            loader.allocate(1 << 20);
+        }
+
+        // Assert
+        MethodTimer timer = timer("allocate");
+        assertTrue(timer.tracksAllocations());
+        assertTrue(timer.allocationSnapshot().meanNanos() >= 1 << 20);
+        assertEquals(10, timer.cpuSnapshot().count());
+        assertTrue(timer.totalCpuNanos() > 0);
+        assertNull(timer("load").cpuSnapshot());
+    }
+
+    private static long count(String method) {
+        return timer(method).count();
+    }
+
+    private static MethodTimer timer(String method) {
+        return TimedAgent.registry().timers().stream()
+                .filter(timer -> timer.className().equals(Loader.class.getName()) && timer.methodName().equals(method))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    public static class Loader {
+        @Timed
+        public int load(int pages) {
+            int loaded = 0;
+            for (int page = 0; page < pages; page++) {
+                loaded += loadPage(page);
+            }
+            return loaded;
+        }
+
+        @Timed
+        public void fail() {
+            throw new IllegalStateException("Ошибка загрузки");
+        }
+
+        @Timed(sampleRate = 0.25)
+        public int sampled(int value) {
+            return value * 31;
+        }
+
+        @Timed(allocations = true, cpu = true)
+        public byte[] allocate(int size) {
+            byte[] bytes = new byte[size];
+            Arrays.fill(bytes, (byte) 1);
+            return bytes;
+        }
+
+        @Timed
+        private int loadPage(int page) {
+            return page + 1;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.jfr.TimedEvent;
+import ru.matthew.aop.metrics.MethodTimer;
+import ru.matthew.aop.metrics.TimedRegistry;
+import ru.matthew.aop.metrics.TimerSettings;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimedEventTest {
+    private final MethodTimer timer = new TimedRegistry().timer("ru.matthew.Loader", "load", TimerSettings.DEFAULT);
+
+    @Test
+    public void record_WhileRecording_CommitsEventsAboveThreshold() throws Exception {
+        // Arrange
+        TimedRecorder recorder = new TimedRecorder(Duration.ofHours(1), true, Duration.ofMillis(5));
+        Path file = Files.createTempFile("timed", ".jfr");
+        List<RecordedEvent> events;
+
+        // Act
+        try (Recording recording = new Recording()) {
+            recording.enable(TimedEvent.NAME);
+            recording.start();
+            call(recorder, 0);
+            call(recorder, 10);
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(TimedEvent.NAME))
+                    .toList();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // Assert: быстрый вызов отброшен порогом, медленный записан с длительностью и потоком
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("ru.matthew.Loader", event.getString("className"));
+        assertEquals("load", event.getString("methodName"));
+        assertEquals(1, event.getLong("sampleWeight"));
+        assertTrue(event.getDuration().toMillis() >= 10);
+        assertEquals(Thread.currentThread().getName(), event.getThread().getJavaName());
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    public void beginEvent_WithoutRecordingOrWhenDisabled_ReturnsNull() {
+        // Arrange
+        TimedRecorder disabled = new TimedRecorder(Duration.ofHours(1), false, Duration.ZERO);
+
+        // Act & Assert
+        assertNull(new TimedRecorder(Duration.ofHours(1)).beginEvent());
+        try (Recording recording = new Recording()) {
+            recording.enable(TimedEvent.NAME);
+            recording.start();
+            assertNull(disabled.beginEvent());
+        }
+    }
+
+    private void call(TimedRecorder recorder, long sleepMillis) throws InterruptedException {
+        TimedEvent event = recorder.beginEvent();
+        assertNotNull(event);
+        long start = System.nanoTime();
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+        recorder.record(timer, start, 0, -1, -1, event);
+    }
+}
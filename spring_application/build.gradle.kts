@@ -3,6 +3,7 @@ plugins {
     id("org.springframework.boot") version "3.3.4"
     id("io.spring.dependency-management") version "1.1.6"
     id("jacoco")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "ru.matthew"
@@ -15,6 +16,7 @@ repositories {
 dependencies {
     implementation(project(":my-aop-starter"))
     implementation(libs.spring.boot)
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     compileOnly(libs.lombok)
     annotationProcessor(libs.lombok)
     testImplementation(libs.mockito)
@@ -29,6 +31,11 @@ dependencies {
     testImplementation("org.wiremock:wiremock:3.9.1")
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    includeTests.set(false)
+}
+
 tasks.test {
     useJUnitPlatform()
 }
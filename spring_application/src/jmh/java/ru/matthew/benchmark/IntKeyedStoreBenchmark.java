@@ -0,0 +1,106 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.IntKeyedStore;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск, запись и постраничный обход категорий по id: обобщённое хранилище с ключом {@link Integer}
+ * против {@link IntKeyedStore}, оба с упорядоченными ключами и без вторичных индексов.
+ * Id берутся за пределами кеша {@code Integer.valueOf}, чтобы упаковка была настоящей.
+ * Аллокации на операцию - запуском с {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntKeyedStoreBenchmark {
+    private static final int FIRST_ID = 1_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"100000"})
+    private int entities;
+
+    private InMemoryStore<Integer, PlaceCategory> genericStore;
+    private IntKeyedStore<PlaceCategory> intKeyedStore;
+    private PlaceCategory[] categories;
+    // Категории с id за пределами заполненного диапазона: вставляются и сразу удаляются
+    private PlaceCategory[] absent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        genericStore = new InMemoryStore<>();
+        intKeyedStore = new IntKeyedStore<>();
+        categories = new PlaceCategory[entities];
+        absent = new PlaceCategory[entities];
+        for (int i = 0; i < entities; i++) {
+            categories[i] = new PlaceCategory(FIRST_ID + i, "slug-" + i, "Категория " + i);
+            genericStore.save(categories[i]);
+            intKeyedStore.save(categories[i]);
+            absent[i] = new PlaceCategory(FIRST_ID + entities + i, "absent-" + i, "Новая категория " + i);
+        }
+    }
+
+    @Benchmark
+    public Optional<PlaceCategory> getGeneric() {
+        int id = FIRST_ID + ThreadLocalRandom.current().nextInt(entities);
+        return genericStore.get(id);
+    }
+
+    @Benchmark
+    public Optional<PlaceCategory> getIntKeyed() {
+        int id = FIRST_ID + ThreadLocalRandom.current().nextInt(entities);
+        return intKeyedStore.get(id);
+    }
+
+    @Benchmark
+    public boolean replaceGeneric() {
+        return genericStore.replaceIfPresent(categories[ThreadLocalRandom.current().nextInt(entities)]);
+    }
+
+    @Benchmark
+    public boolean replaceIntKeyed() {
+        return intKeyedStore.replaceIfPresent(categories[ThreadLocalRandom.current().nextInt(entities)]);
+    }
+
+    @Benchmark
+    public boolean insertAndDeleteGeneric() {
+        PlaceCategory category = absent[ThreadLocalRandom.current().nextInt(entities)];
+        return genericStore.putIfAbsent(category) && genericStore.delete(category.getId());
+    }
+
+    @Benchmark
+    public boolean insertAndDeleteIntKeyed() {
+        PlaceCategory category = absent[ThreadLocalRandom.current().nextInt(entities)];
+        return intKeyedStore.putIfAbsent(category) && intKeyedStore.delete(category.getId());
+    }
+
+    @Benchmark
+    public List<PlaceCategory> pageGeneric() {
+        return genericStore.page(FIRST_ID + ThreadLocalRandom.current().nextInt(entities), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<PlaceCategory> pageIntKeyed() {
+        return intKeyedStore.page(FIRST_ID + ThreadLocalRandom.current().nextInt(entities), PAGE_SIZE);
+    }
+}
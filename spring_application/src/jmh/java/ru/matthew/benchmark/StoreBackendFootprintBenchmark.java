@@ -0,0 +1,171 @@
+package ru.matthew.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.configuration.BenchmarkStores;
+import ru.matthew.model.Location;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.HeapStoreBackend;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.OffHeapStoreBackend;
+import ru.matthew.repository.StoreBackendType;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Занимаемая память и паузы GC хранилища локаций в том виде, в каком его собирает {@link DataSourceConfig}:
+ * записи в куче или вне её, упорядоченные ключи, индексы по названию и лента изменений. После заполнения
+ * замеряется куча и прямые буферы, затем под нагрузкой чтений и замен собираются длительности пауз GC.
+ * С {@code heapStructures=false} упорядоченные ключи и индексы выключены, как при
+ * {@code store.ordered-keys=false} и {@code store.secondary-indexes=false}: так видно, сколько кучи
+ * остаётся у OFF_HEAP без них. Лента изменений ограничена своей ёмкостью и от числа записей не зависит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 1, time = 10)
+// Вспомогательные счётчики JMH суммируются по итерациям, поэтому замер - одна длинная итерация
+@Measurement(iterations = 1, time = 30)
+@Fork(value = 1, jvmArgs = {"-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class StoreBackendFootprintBenchmark {
+    @Param({"10000000"})
+    private int entities;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    private StoreBackendType backend;
+
+    @Param({"true", "false"})
+    private boolean heapStructures;
+
+    @Param({"65536"})
+    private int changeFeedCapacity;
+
+    private InMemoryStore<String, Location> store;
+    private long heapBytes;
+    private long offHeapBytes;
+    private NotificationListener pauseListener;
+    private long[] pauses = new long[1024];
+    private int pauseCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        store = BenchmarkStores.locationStore(
+                        backend == StoreBackendType.HEAP
+                                ? new HeapStoreBackend<>()
+                                : new OffHeapStoreBackend<>(EntityCodecs.LOCATION),
+                        heapStructures, heapStructures)
+                .enableChangeFeed(changeFeedCapacity);
+        for (int i = 0; i < entities; i++) {
+            store.save(new Location("slug-" + i, "Город " + i));
+        }
+        heapBytes = usedHeap() - heapBefore;
+        offHeapBytes = usedDirect() - directBefore;
+
+        pauseListener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                recordPause(info.getGcInfo().getDuration());
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(pauseListener, null, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).removeNotificationListener(pauseListener);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public synchronized void resetPauses() {
+        pauseCount = 0;
+    }
+
+    @Benchmark
+    public Optional<Location> readAndReplace(Footprint footprint) {
+        String slug = "slug-" + ThreadLocalRandom.current().nextInt(entities);
+        Location current = store.get(slug).orElseThrow();
+        return store.compute(slug, (key, previous) -> new Location(slug, current.getName()));
+    }
+
+    private synchronized void recordPause(long millis) {
+        if (pauseCount == pauses.length) {
+            pauses = Arrays.copyOf(pauses, pauseCount * 2);
+        }
+        pauses[pauseCount++] = millis;
+    }
+
+    private synchronized long pausePercentile(double percentile) {
+        if (pauseCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(pauses, pauseCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(percentile * pauseCount) - 1];
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    /**
+     * Итоги итерации в отчёте JMH рядом со временем операции.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double heapMb;
+        public double offHeapMb;
+        public double gcPauses;
+        public double gcPauseP99Ms;
+        public double gcPauseMaxMs;
+
+        @TearDown(Level.Iteration)
+        public void record(StoreBackendFootprintBenchmark benchmark) {
+            heapMb = benchmark.heapBytes / (1024.0 * 1024);
+            offHeapMb = benchmark.offHeapBytes / (1024.0 * 1024);
+            synchronized (benchmark) {
+                gcPauses = benchmark.pauseCount;
+            }
+            gcPauseP99Ms = benchmark.pausePercentile(0.99);
+            gcPauseMaxMs = benchmark.pausePercentile(1.0);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.configuration.BenchmarkStores;
+import ru.matthew.model.Location;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.FsyncPolicy;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.StoreJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность {@code save} с журналом при разных политиках fsync.
+ * Один писатель при {@link FsyncPolicy#GROUP} платит fsync за каждую запись; при нескольких писателях
+ * один fsync подтверждает всю накопленную пачку, поэтому пропускная способность растёт с их числом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreJournalWriteBenchmark {
+    @Param({"GROUP", "INTERVAL", "NONE"})
+    private FsyncPolicy policy;
+
+    private Path dir;
+    private InMemoryStore<String, Location> store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        store = BenchmarkStores.indexedLocationStore().attachJournal(new StoreJournal<>(dir, EntityCodecs.LOCATION,
+                policy, Duration.ofMillis(100), Duration.ofSeconds(30)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void saveSingleWriter() {
+        save();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void saveEightWriters() {
+        save();
+    }
+
+    private void save() {
+        int id = ThreadLocalRandom.current().nextInt(100_000);
+        store.save(new Location("slug-" + id, "Город " + id));
+    }
+}
@@ -0,0 +1,89 @@
+package ru.matthew.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.matthew.configuration.BenchmarkStores;
+import ru.matthew.model.Location;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.FsyncPolicy;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.StoreJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Время восстановления хранилища с индексами: весь объём в снимке против всего объёма в хвосте WAL.
+ * Каждый вызов заново читает файлы, поэтому режим - однократный замер.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class StoreRecoveryBenchmark {
+    @Param({"1000000"})
+    private int entities;
+
+    @Param({"snapshot", "wal"})
+    private String layout;
+
+    private Path dir;
+    private InMemoryStore<String, Location> recovered;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("recovery-bench");
+        StoreJournal<String, Location> journal = journal();
+        try (InMemoryStore<String, Location> store = new InMemoryStore<String, Location>().attachJournal(journal)) {
+            for (int i = 0; i < entities; i++) {
+                store.save(new Location("slug-" + i, "Город " + i));
+            }
+            if (layout.equals("snapshot")) {
+                journal.compact();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRecovered() {
+        if (recovered != null) {
+            recovered.close();
+            recovered = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public InMemoryStore<String, Location> recover() {
+        recovered = BenchmarkStores.indexedLocationStore().attachJournal(journal());
+        return recovered;
+    }
+
+    private StoreJournal<String, Location> journal() {
+        return new StoreJournal<>(dir, EntityCodecs.LOCATION, FsyncPolicy.NONE, Duration.ofMillis(100), Duration.ofHours(1));
+    }
+}
@@ -0,0 +1,127 @@
+package ru.matthew.benchmark;
+
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.matthew.aop.Timed;
+import ru.matthew.aop.TimedAspect;
+import ru.matthew.aop.TimedRecorder;
+import ru.matthew.aop.agent.TimedAgent;
+import ru.matthew.aop.jfr.TimedEvent;
+import ru.matthew.aop.metrics.TimedRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена {@code @Timed} на вызов короткого метода: без замера, через прокси Spring AOP и со встроенным агентом
+ * замером, в том числе с бюджетом накладных расходов 5%, с замером процессорного времени и памяти потока
+ * и с идущей записью JFR, собирающей {@link TimedEvent}. В остальных режимах запись не идёт, и событие стоит
+ * одной проверки. Каждый режим - в своей JVM, поэтому агент из одного режима не инструментирует классы другого.
+ * Аллокации на вызов - запуском с {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimedOverheadBenchmark {
+    private static final Duration NEVER_SLOW = Duration.ofHours(1);
+
+    @Param({"NONE", "PROXY", "AGENT", "AGENT_BUDGET", "AGENT_PROFILED", "AGENT_JFR"})
+    private String mode;
+
+    private Calculator calculator;
+    private long argument = 42;
+    private Recording recording;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calculator = switch (mode) {
+            case "NONE" -> new Calculator();
+            case "PROXY" -> {
+                AspectJProxyFactory factory = new AspectJProxyFactory(new TimedCalculator());
+                factory.setProxyTargetClass(true);
+                factory.addAspect(new TimedAspect(new TimedRegistry(), new TimedRecorder(NEVER_SLOW)));
+                yield factory.getProxy();
+            }
+            case "AGENT" -> {
+                TimedAgent.install(new TimedRecorder(NEVER_SLOW), List.of("ru.matthew.benchmark"));
+                yield new TimedCalculator();
+            }
+            case "AGENT_BUDGET" -> {
+                TimedAgent.install(new TimedRecorder(NEVER_SLOW), List.of("ru.matthew.benchmark"));
+                yield new BudgetedCalculator();
+            }
+            case "AGENT_PROFILED" -> {
+                TimedAgent.install(new TimedRecorder(NEVER_SLOW), List.of("ru.matthew.benchmark"));
+                yield new ProfiledCalculator();
+            }
+            case "AGENT_JFR" -> {
+                TimedAgent.install(new TimedRecorder(NEVER_SLOW), List.of("ru.matthew.benchmark"));
+                recording = new Recording();
+                recording.enable(TimedEvent.NAME);
+                recording.setToDisk(false);
+                recording.start();
+                yield new TimedCalculator();
+            }
+            default -> throw new IllegalArgumentException(mode);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Benchmark
+    public long call() {
+        return calculator.compute(argument);
+    }
+
+    public static class Calculator {
+        public long compute(long x) {
+            return x * 31 + 7;
+        }
+    }
+
+    public static class TimedCalculator extends Calculator {
+        @Timed
+        @Override
+        public long compute(long x) {
+            return x * 31 + 7;
+        }
+    }
+
+    public static class BudgetedCalculator extends Calculator {
+        @Timed(overheadBudget = 0.05)
+        @Override
+        public long compute(long x) {
+            return x * 31 + 7;
+        }
+    }
+
+    public static class ProfiledCalculator extends Calculator {
+        @Timed(cpu = true, allocations = true)
+        @Override
+        public long compute(long x) {
+            return x * 31 + 7;
+        }
+    }
+}
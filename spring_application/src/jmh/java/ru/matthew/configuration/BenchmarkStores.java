@@ -0,0 +1,28 @@
+package ru.matthew.configuration;
+
+import ru.matthew.model.Location;
+import ru.matthew.repository.HeapStoreBackend;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.StoreBackend;
+
+/**
+ * Хранилища для бенчмарков, собранные так же, как бины {@link DataSourceConfig}.
+ */
+public final class BenchmarkStores {
+
+    private BenchmarkStores() {
+    }
+
+    public static InMemoryStore<String, Location> indexedLocationStore() {
+        return locationStore(new HeapStoreBackend<>(), true, true);
+    }
+
+    /**
+     * @param ordered упорядоченный обход для постраничной выдачи
+     * @param indexed вторичные индексы для поиска
+     */
+    public static InMemoryStore<String, Location> locationStore(StoreBackend<String, Location> backend,
+                                                                boolean ordered, boolean indexed) {
+        return DataSourceConfig.newLocationStore(backend, ordered, indexed);
+    }
+}
@@ -1,20 +1,96 @@
 package ru.matthew.configuration;
 
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import ru.matthew.model.Location;
 import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.EntityCodec;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.HashIndex;
+import ru.matthew.repository.HeapStoreBackend;
 import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.IntKeyedStore;
+import ru.matthew.repository.OffHeapStoreBackend;
+import ru.matthew.repository.PrefixIndex;
+import ru.matthew.repository.StoreBackend;
+import ru.matthew.repository.StoreBackendType;
+import ru.matthew.repository.StoreJournalFactory;
+
+import java.util.Locale;
 
 @Configuration
 public class DataSourceConfig {
+    // Точное совпадение названия без учёта регистра
+    public static final String NAME_INDEX = "name";
+    public static final String LOCATION_NAME_PREFIX_INDEX = "name-prefix";
+    public static final String PLACE_CATEGORY_SLUG_PREFIX_INDEX = "slug-prefix";
+
     @Bean
-    public InMemoryStore<String, Location> locationStore() {
-        return new InMemoryStore<>();
+    public InMemoryStore<String, Location> locationStore(@Value("${store.backend}") StoreBackendType backend,
+                                                         @Value("${store.ordered-keys}") boolean orderedKeys,
+                                                         @Value("${store.secondary-indexes}") boolean secondaryIndexes,
+                                                         @Value("${store.change-feed.capacity}") int changeFeedCapacity,
+                                                         ObjectProvider<StoreJournalFactory> journals) {
+        InMemoryStore<String, Location> store = newLocationStore(backend(backend, EntityCodecs.LOCATION),
+                orderedKeys, secondaryIndexes);
+        journals.ifAvailable(factory -> store.attachJournal(factory.create("locations", EntityCodecs.LOCATION)));
+        return store.enableChangeFeed(changeFeedCapacity);
     }
 
     @Bean
-    public InMemoryStore<Integer, PlaceCategory> placeCategoryStore() {
-        return new InMemoryStore<>();
+    public InMemoryStore<Integer, PlaceCategory> placeCategoryStore(@Value("${store.backend}") StoreBackendType backend,
+                                                                    @Value("${store.place-categories.int-keys}") boolean intKeys,
+                                                                    @Value("${store.ordered-keys}") boolean orderedKeys,
+                                                                    @Value("${store.secondary-indexes}") boolean secondaryIndexes,
+                                                                    @Value("${store.change-feed.capacity}") int changeFeedCapacity,
+                                                                    ObjectProvider<StoreJournalFactory> journals) {
+        InMemoryStore<Integer, PlaceCategory> store = newPlaceCategoryStore(intKeys
+                ? new IntKeyedStore<>(orderedKeys)
+                : new InMemoryStore<>(backend(backend, EntityCodecs.PLACE_CATEGORY), orderedKeys), secondaryIndexes);
+        journals.ifAvailable(factory -> store.attachJournal(factory.create("place-categories", EntityCodecs.PLACE_CATEGORY)));
+        return store.enableChangeFeed(changeFeedCapacity);
+    }
+
+    /**
+     * Упорядоченные ключи и индексы лежат в куче при любом хранении записей; без них хранилище
+     * не отдаёт страницы и не ищет, зато в куче от каждой записи ничего не остаётся.
+     *
+     * @param ordered упорядоченный обход для постраничной выдачи
+     * @param indexed вторичные индексы для поиска
+     */
+    static InMemoryStore<String, Location> newLocationStore(StoreBackend<String, Location> backend,
+                                                            boolean ordered, boolean indexed) {
+        InMemoryStore<String, Location> store = new InMemoryStore<>(backend, ordered);
+        if (indexed) {
+            store.addIndex(NAME_INDEX, new HashIndex<>(location -> normalizeName(location.getName())))
+                    .addIndex(LOCATION_NAME_PREFIX_INDEX, new PrefixIndex<>(Location::getName));
+        }
+        return store;
+    }
+
+    /**
+     * @param store пустое хранилище с нужным хранением записей и ключей
+     * @param indexed вторичные индексы для поиска
+     */
+    static <S extends InMemoryStore<Integer, PlaceCategory>> S newPlaceCategoryStore(S store, boolean indexed) {
+        if (indexed) {
+            store.addIndex(NAME_INDEX, new HashIndex<>(category -> normalizeName(category.getName())))
+                    .addIndex(PLACE_CATEGORY_SLUG_PREFIX_INDEX, new PrefixIndex<>(PlaceCategory::getSlug));
+        }
+        return store;
+    }
+
+    private static <K, T> StoreBackend<K, T> backend(StoreBackendType type, EntityCodec<K, T> codec) {
+        return switch (type) {
+            case HEAP -> new HeapStoreBackend<>();
+            case OFF_HEAP -> new OffHeapStoreBackend<>(codec);
+        };
+    }
+
+    public static String normalizeName(String name) {
+        return StringUtils.lowerCase(StringUtils.trimToNull(name), Locale.ROOT);
     }
 }
@@ -0,0 +1,29 @@
+package ru.matthew.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class HttpClientConfig {
+    // Spring Boot молча пропускает spring.threads.virtual.enabled на JDK ниже 21, и включённая настройка
+    // оставила бы приложение на платформенных потоках
+    public HttpClientConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Виртуальные потоки требуют JDK 21+, приложение запущено на JDK "
+                    + Runtime.version().feature());
+        }
+    }
+
+    // Один клиент на приложение: соединения с KudaGo переиспользуются между запросами и страницами
+    @Bean
+    public HttpClient kudaGoHttpClient(@Value("${kudago.connect-timeout:PT5S}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
@@ -1,42 +1,101 @@
 package ru.matthew.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.matthew.aop.Timed;
+import ru.matthew.dto.CursorPageDTO;
 import ru.matthew.dto.SuccessJsonDTO;
 import ru.matthew.model.Location;
+import ru.matthew.repository.Versioned;
+import ru.matthew.service.ChangeStreamService;
 import ru.matthew.service.LocationService;
 
-import java.util.Collection;
-
-@Timed
+@Timed(allocations = true)
 @RestController
 @RequestMapping("/api/v1/locations")
 @Slf4j
 public class LocationsController {
 
     private final LocationService locationService;
+    private final ChangeStreamService changeStreamService;
+    private final ObjectMapper objectMapper;
+    private final VersionedJsonCache allLocationsJson;
 
     @Autowired
-    public LocationsController(LocationService locationService) {
+    public LocationsController(LocationService locationService, ChangeStreamService changeStreamService,
+                               ObjectMapper objectMapper) {
         this.locationService = locationService;
+        this.changeStreamService = changeStreamService;
+        this.objectMapper = objectMapper;
+        this.allLocationsJson = new VersionedJsonCache(objectMapper);
     }
 
-    @GetMapping
-    public Collection<Location> getAllLocations() {
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAllLocations(@RequestParam(required = false) String q,
+                                             @RequestParam(required = false) String prefix,
+                                             WebRequest request) {
+        if (q != null || prefix != null) {
+            log.debug("Поиск локаций (q: {}, prefix: {})", q, prefix);
+            return ResponseEntity.ok(locationService.searchLocations(q, prefix));
+        }
         log.debug("Запрос всех локаций");
-        Collection<Location> locations = locationService.getAllLocations();
+        // Версия читается до содержимого, поэтому отданное тело не старее своего ETag
+        long version = locationService.getLocationsVersion();
+        if (request.checkNotModified(allLocationsJson.etag(version))) {
+            log.debug("Список локаций не изменился с версии {}", version);
+            return null;
+        }
+        VersionedJsonCache.Body locations = allLocationsJson.get(version, locationService::getAllLocations);
         log.info("Успешно получены все локации");
-        return locations;
+        return ResponseEntity.ok()
+                .eTag(locations.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(locations.bytes());
+    }
+
+    @GetMapping(params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CursorPageDTO<String, Location> getLocationsPage(@RequestParam int limit,
+                                                          @RequestParam(required = false) String after) {
+        log.debug("Запрос страницы локаций (limit: {}, after: {})", limit, after);
+        return locationService.getLocationsPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLocations(@RequestParam(required = false) String after,
+                                                                 @RequestParam(required = false) Integer limit) {
+        log.debug("Потоковая выдача локаций (after: {}, limit: {})", after, limit);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(NdjsonResponseBody.of(objectMapper, locationService.streamLocations(after, limit)));
+    }
+
+    /**
+     * Изменения локаций как Server-Sent Events. Продолжение с {@code Last-Event-ID} или {@code after};
+     * без них - только изменения после подписки.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLocationChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                            @RequestParam(required = false) String after) {
+        log.debug("Подписка на изменения локаций (Last-Event-ID: {}, after: {})", lastEventId, after);
+        return changeStreamService.subscribe(locationService.getLocationChanges(),
+                lastEventId != null ? lastEventId : after);
     }
 
     @GetMapping("/{slug}")
-    public Location getLocationBySlug(@PathVariable String slug) {
+    public ResponseEntity<Location> getLocationBySlug(@PathVariable String slug) {
         log.debug("Запрос локации по slug: {}", slug);
-        Location location = locationService.getLocationBySlug(slug);
+        Versioned<Location> location = locationService.getVersionedLocationBySlug(slug);
         log.info("Локация с slug {} найдена", slug);
-        return location;
+        return ResponseEntity.ok()
+                .eTag(VersionHeaders.etag(location.version()))
+                .body(location.value());
     }
 
     @PostMapping
@@ -47,8 +106,9 @@ public class LocationsController {
     }
 
     @PutMapping("/{slug}")
-    public SuccessJsonDTO updateLocation(@PathVariable String slug, @RequestBody Location location) {
-        locationService.updateLocation(slug, location);
+    public SuccessJsonDTO updateLocation(@PathVariable String slug, @RequestBody Location location,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        locationService.updateLocation(slug, location, VersionHeaders.expectedVersion(ifMatch));
         log.info("Локация с slug {} успешно обновлена", slug);
         return new SuccessJsonDTO("Локация успешно обновлена");
     }
@@ -0,0 +1,41 @@
+package ru.matthew.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Пишет сущности в ответ по одной в строке (application/x-ndjson) прямо в выходной поток по мере обхода,
+ * не собирая всю коллекцию в один буфер.
+ */
+final class NdjsonResponseBody {
+    private static final SerializedString LINE_SEPARATOR = new SerializedString("\n");
+
+    private NdjsonResponseBody() {
+    }
+
+    static StreamingResponseBody of(ObjectMapper objectMapper, Stream<?> values) {
+        return outputStream -> {
+            try (values; JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(LINE_SEPARATOR);
+                // Сброс после каждой сущности дробил бы ответ на мелкие записи, буфер сбрасывается по заполнению
+                ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+                Iterator<?> iterator = values.iterator();
+                boolean written = false;
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    written = true;
+                }
+                if (written) {
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+}
@@ -1,17 +1,24 @@
 package ru.matthew.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.matthew.aop.Timed;
+import ru.matthew.dto.CursorPageDTO;
 import ru.matthew.dto.SuccessJsonDTO;
 import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.Versioned;
+import ru.matthew.service.ChangeStreamService;
 import ru.matthew.service.PlaceCategoryService;
 
-import java.util.Collection;
-
-@Timed
+@Timed(allocations = true)
 @RestController
 @RequestMapping("/api/v1/places/categories")
 @Validated
@@ -19,26 +26,78 @@ import java.util.Collection;
 public class PlaceCategoriesController {
 
     private final PlaceCategoryService placeCategoryService;
+    private final ChangeStreamService changeStreamService;
+    private final ObjectMapper objectMapper;
+    private final VersionedJsonCache allCategoriesJson;
 
     @Autowired
-    public PlaceCategoriesController(PlaceCategoryService placeCategoryService) {
+    public PlaceCategoriesController(PlaceCategoryService placeCategoryService, ChangeStreamService changeStreamService,
+                                     ObjectMapper objectMapper) {
         this.placeCategoryService = placeCategoryService;
+        this.changeStreamService = changeStreamService;
+        this.objectMapper = objectMapper;
+        this.allCategoriesJson = new VersionedJsonCache(objectMapper);
     }
 
-    @GetMapping
-    public Collection<PlaceCategory> getAllPlaceCategories() {
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAllPlaceCategories(@RequestParam(required = false) String q,
+                                                   @RequestParam(required = false) String prefix,
+                                                   WebRequest request) {
+        if (q != null || prefix != null) {
+            log.debug("Поиск категорий мест (q: {}, prefix: {})", q, prefix);
+            return ResponseEntity.ok(placeCategoryService.searchPlaceCategories(q, prefix));
+        }
         log.debug("Получение всех категорий мест");
-        Collection<PlaceCategory> categories = placeCategoryService.getAllPlaceCategories();
+        // Версия читается до содержимого, поэтому отданное тело не старее своего ETag
+        long version = placeCategoryService.getPlaceCategoriesVersion();
+        if (request.checkNotModified(allCategoriesJson.etag(version))) {
+            log.debug("Список категорий мест не изменился с версии {}", version);
+            return null;
+        }
+        VersionedJsonCache.Body categories = allCategoriesJson.get(version, placeCategoryService::getAllPlaceCategories);
         log.info("Успешно получены все категории мест");
-        return categories;
+        return ResponseEntity.ok()
+                .eTag(categories.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(categories.bytes());
+    }
+
+    @GetMapping(params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CursorPageDTO<Integer, PlaceCategory> getPlaceCategoriesPage(@RequestParam int limit,
+                                                                        @RequestParam(required = false) Integer after) {
+        log.debug("Запрос страницы категорий мест (limit: {}, after: {})", limit, after);
+        return placeCategoryService.getPlaceCategoriesPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPlaceCategories(@RequestParam(required = false) Integer after,
+                                                                       @RequestParam(required = false) Integer limit) {
+        log.debug("Потоковая выдача категорий мест (after: {}, limit: {})", after, limit);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(NdjsonResponseBody.of(objectMapper, placeCategoryService.streamPlaceCategories(after, limit)));
+    }
+
+    /**
+     * Изменения категорий мест как Server-Sent Events. Продолжение с {@code Last-Event-ID} или {@code after};
+     * без них - только изменения после подписки.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPlaceCategoryChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                 @RequestParam(required = false) String after) {
+        log.debug("Подписка на изменения категорий мест (Last-Event-ID: {}, after: {})", lastEventId, after);
+        return changeStreamService.subscribe(placeCategoryService.getPlaceCategoryChanges(),
+                lastEventId != null ? lastEventId : after);
     }
 
     @GetMapping("/{id}")
-    public PlaceCategory getPlaceCategoryById(@PathVariable int id) {
+    public ResponseEntity<PlaceCategory> getPlaceCategoryById(@PathVariable int id) {
         log.debug("Запрос категории места по id: {}", id);
-        PlaceCategory category = placeCategoryService.getPlaceCategoryById(id);
+        Versioned<PlaceCategory> category = placeCategoryService.getVersionedPlaceCategoryById(id);
         log.info("Категория места с id {} найдена", id);
-        return category;
+        return ResponseEntity.ok()
+                .eTag(VersionHeaders.etag(category.version()))
+                .body(category.value());
     }
 
     @PostMapping
@@ -49,8 +108,9 @@ public class PlaceCategoriesController {
     }
 
     @PutMapping("/{id}")
-    public SuccessJsonDTO updatePlaceCategory(@PathVariable int id, @RequestBody PlaceCategory placeCategory) {
-        placeCategoryService.updatePlaceCategory(id, placeCategory);
+    public SuccessJsonDTO updatePlaceCategory(@PathVariable int id, @RequestBody PlaceCategory placeCategory,
+                                              @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        placeCategoryService.updatePlaceCategory(id, placeCategory, VersionHeaders.expectedVersion(ifMatch));
         log.info("Категория места с id {} успешно обновлена", id);
         return new SuccessJsonDTO("Категория места успешно обновлена");
     }
@@ -0,0 +1,38 @@
+package ru.matthew.controller;
+
+import ru.matthew.exception.VersionConflictException;
+
+/**
+ * Версия сущности из {@code InMemoryStore} передаётся клиенту в ETag и возвращается в If-Match.
+ */
+final class VersionHeaders {
+
+    private VersionHeaders() {
+    }
+
+    static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return ожидаемая версия либо {@code null}, если заголовка нет или он равен {@code *}
+     * @throws VersionConflictException для слабого ETag: If-Match сравнивает метки только строго (RFC 9110, 13.1.1)
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            throw new VersionConflictException("Слабый ETag не подходит для If-Match: " + ifMatch);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный заголовок If-Match: " + ifMatch);
+        }
+    }
+}
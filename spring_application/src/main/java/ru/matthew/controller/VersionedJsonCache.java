@@ -0,0 +1,77 @@
+package ru.matthew.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * JSON ответа, сериализованный один раз на версию изменений хранилища: пока версия прежняя,
+ * повторная отдача - копирование готовых байтов без Jackson.
+ */
+final class VersionedJsonCache {
+    // Счётчик версий после перезапуска начинается заново, метка запуска не даёт старому ETag совпасть с новым
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReference<Entry> cached = new AtomicReference<>(new Entry(-1, CompletableFuture.completedFuture(null)));
+    private final ObjectMapper objectMapper;
+
+    VersionedJsonCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * Сильный ETag честен, потому что тело версии сериализует только первый запрос, поставивший её в кеш;
+     * одновременные запросы той же версии ждут его байты. Запрос, чья версия уже вытеснена более новой,
+     * получает тело и ETag новой версии.
+     *
+     * @param version версия, прочитанная до {@code body}: содержимое не старее неё
+     */
+    Body get(long version, Supplier<?> body) {
+        Entry entry = cached.get();
+        if (entry.version() < version) {
+            Entry created = new Entry(version, new CompletableFuture<>());
+            entry = cached.accumulateAndGet(created, (current, next) -> next.version() > current.version() ? next : current);
+            if (entry == created) {
+                serialize(created, body);
+            }
+        }
+        try {
+            return new Body(etag(entry.version()), entry.bytes().join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void serialize(Entry entry, Supplier<?> body) {
+        try {
+            entry.bytes().complete(objectMapper.writeValueAsBytes(body.get()));
+        } catch (JsonProcessingException e) {
+            entry.bytes().completeExceptionally(new IllegalStateException("Не удалось сериализовать ответ", e));
+        } catch (RuntimeException e) {
+            entry.bytes().completeExceptionally(e);
+        }
+        if (entry.bytes().isCompletedExceptionally()) {
+            // Неудачная версия не остаётся в кеше: следующий запрос попробует сериализовать заново
+            cached.compareAndSet(entry, new Entry(-1, CompletableFuture.completedFuture(null)));
+        }
+    }
+
+    /**
+     * Готовый ответ: ETag версии и её байты.
+     */
+    record Body(String etag, byte[] bytes) {
+    }
+
+    private record Entry(long version, CompletableFuture<byte[]> bytes) {
+    }
+}
@@ -0,0 +1,19 @@
+package ru.matthew.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница коллекции; {@code nextCursor} передаётся в {@code after} следующего запроса
+ * и равен {@code null} на последней странице.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDTO<K, T> {
+    private List<T> items;
+    private K nextCursor;
+}
@@ -0,0 +1,7 @@
+package ru.matthew.exception;
+
+public class FeatureDisabledException extends RuntimeException {
+    public FeatureDisabledException(String message) {
+        super(message);
+    }
+}
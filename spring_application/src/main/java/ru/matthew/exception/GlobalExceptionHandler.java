@@ -23,10 +23,25 @@ public class GlobalExceptionHandler {
                 .body(new ErrorJsonDTO("Conflict", e.getMessage()));
     }
 
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ErrorJsonDTO> handleVersionConflictException(VersionConflictException e) {
+        return ResponseEntity
+                .status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ErrorJsonDTO("Precondition Failed", e.getMessage()));
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorJsonDTO> handleIllegalArgumentException(IllegalArgumentException e) {
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
                 .body(new ErrorJsonDTO("Bad Request", e.getMessage()));
     }
+
+    // Постраничная выдача и поиск, выключенные в настройках хранилища
+    @ExceptionHandler(FeatureDisabledException.class)
+    public ResponseEntity<ErrorJsonDTO> handleFeatureDisabledException(FeatureDisabledException e) {
+        return ResponseEntity
+                .status(HttpStatus.NOT_IMPLEMENTED)
+                .body(new ErrorJsonDTO("Not Implemented", e.getMessage()));
+    }
 }
@@ -0,0 +1,7 @@
+package ru.matthew.exception;
+
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.matthew.repository;
+
+import java.util.List;
+
+/**
+ * Результат чтения ленты изменений. {@code resyncRequired} означает, что часть изменений после курсора
+ * уже вытеснена из кольца: читателю нужно заново загрузить данные целиком и продолжить с {@code lastSequence}.
+ */
+public record ChangeBatch<K, T>(List<StoreChange<K, T>> changes, boolean resyncRequired, long lastSequence) {
+}
@@ -0,0 +1,82 @@
+package ru.matthew.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченная лента изменений хранилища в кольцевом буфере без блокировок. Писатель получает номер
+ * атомарным инкрементом и кладёт изменение в ячейку по номеру, не дожидаясь читателей: отставший читатель
+ * теряет вытесненные изменения и узнаёт об этом по номеру в ячейке, а не задерживает запись.
+ * <p>
+ * Номера начинаются с 1 и действуют в пределах эпохи - одного запуска приложения.
+ */
+public class ChangeFeed<K, T> {
+    private final AtomicReferenceArray<StoreChange<K, T>> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * @param capacity размер кольца, степень двойки
+     */
+    public ChangeFeed(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер ленты изменений должен быть степенью двойки: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Вызывается под блокировкой ключа, поэтому изменения одного ключа получают номера в порядке применения.
+     */
+    void publish(StoreChange.Type type, K key, T value, long version) {
+        long next = sequence.incrementAndGet();
+        slots.set(index(next), new StoreChange<>(next, type, key, value, version));
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return номер последнего выданного изменения, {@code 0}, если изменений не было
+     */
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Изменения с номерами больше {@code after} по порядку, не больше {@code limit}. Чтение останавливается
+     * на первом номере, который уже выдан, но ещё не записан в кольцо: следующий вызов продолжит с него.
+     */
+    public ChangeBatch<K, T> readAfter(long after, int limit) {
+        long last = sequence.get();
+        if (after < 0 || after > last || last - after > slots.length()) {
+            return new ChangeBatch<>(List.of(), true, last);
+        }
+        List<StoreChange<K, T>> changes = new ArrayList<>((int) Math.min(limit, last - after));
+        for (long next = after + 1; next <= last && changes.size() < limit; next++) {
+            StoreChange<K, T> change = slots.get(index(next));
+            if (change == null || change.sequence() < next) {
+                break;
+            }
+            if (change.sequence() > next) {
+                // Писатели обошли кольцо, пока читатель шёл по нему
+                return new ChangeBatch<>(List.of(), true, last);
+            }
+            changes.add(change);
+        }
+        return new ChangeBatch<>(changes, false, last);
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.matthew.repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Двоичное представление ключа и сущности для журнала и снимков {@link StoreJournal}.
+ */
+public interface EntityCodec<K, T> {
+
+    void writeKey(DataOutput out, K key) throws IOException;
+
+    K readKey(DataInput in) throws IOException;
+
+    void writeValue(DataOutput out, T value) throws IOException;
+
+    T readValue(DataInput in) throws IOException;
+}
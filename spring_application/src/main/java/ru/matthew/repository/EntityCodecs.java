@@ -0,0 +1,71 @@
+package ru.matthew.repository;
+
+import ru.matthew.model.Location;
+import ru.matthew.model.PlaceCategory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public final class EntityCodecs {
+    public static final EntityCodec<String, Location> LOCATION = new EntityCodec<>() {
+        @Override
+        public void writeKey(DataOutput out, String key) throws IOException {
+            out.writeUTF(key);
+        }
+
+        @Override
+        public String readKey(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+
+        @Override
+        public void writeValue(DataOutput out, Location value) throws IOException {
+            writeNullable(out, value.getSlug());
+            writeNullable(out, value.getName());
+        }
+
+        @Override
+        public Location readValue(DataInput in) throws IOException {
+            return new Location(readNullable(in), readNullable(in));
+        }
+    };
+
+    public static final EntityCodec<Integer, PlaceCategory> PLACE_CATEGORY = new EntityCodec<>() {
+        @Override
+        public void writeKey(DataOutput out, Integer key) throws IOException {
+            out.writeInt(key);
+        }
+
+        @Override
+        public Integer readKey(DataInput in) throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        public void writeValue(DataOutput out, PlaceCategory value) throws IOException {
+            out.writeInt(value.getId());
+            writeNullable(out, value.getSlug());
+            writeNullable(out, value.getName());
+        }
+
+        @Override
+        public PlaceCategory readValue(DataInput in) throws IOException {
+            return new PlaceCategory(in.readInt(), readNullable(in), readNullable(in));
+        }
+    };
+
+    private EntityCodecs() {
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
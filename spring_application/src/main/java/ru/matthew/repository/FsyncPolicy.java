@@ -0,0 +1,19 @@
+package ru.matthew.repository;
+
+/**
+ * Когда записи журнала {@link StoreJournal} сбрасываются на диск.
+ */
+public enum FsyncPolicy {
+    /**
+     * Запись возвращается только после fsync; ожидающие писатели разделяют один fsync (group commit).
+     */
+    GROUP,
+    /**
+     * Фоновый fsync раз в интервал: при сбое теряется не больше интервала записей.
+     */
+    INTERVAL,
+    /**
+     * Фоновая передача записей ОС без fsync: переживает падение процесса, но не питания.
+     */
+    NONE
+}
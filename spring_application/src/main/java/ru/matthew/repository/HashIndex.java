@@ -0,0 +1,50 @@
+package ru.matthew.repository;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Индекс точного совпадения по произвольной функции от сущности. Сущности, для которых функция вернула
+ * {@code null}, в индекс не попадают.
+ */
+public class HashIndex<K, T, V> implements StoreIndex<K, T, V> {
+    private final ConcurrentMap<V, IndexKeys<K>> index = new ConcurrentHashMap<>();
+    private final Function<? super T, ? extends V> extractor;
+
+    public HashIndex(Function<? super T, ? extends V> extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public void add(K key, T value) {
+        V indexed = extractor.apply(value);
+        if (indexed != null) {
+            index.compute(indexed, (v, keys) -> IndexKeys.with(keys, key));
+        }
+    }
+
+    @Override
+    public void remove(K key, T value) {
+        V indexed = extractor.apply(value);
+        if (indexed != null) {
+            index.computeIfPresent(indexed, (v, keys) -> IndexKeys.without(keys, key));
+        }
+    }
+
+    @Override
+    public Set<K> lookup(V query) {
+        if (query == null) {
+            return Set.of();
+        }
+        IndexKeys<K> keys = index.get(query);
+        return keys == null ? Set.of() : keys.view();
+    }
+
+    @Override
+    public boolean matches(T value, V query) {
+        return Objects.equals(extractor.apply(value), query);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.matthew.repository;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Записи объектами в куче. compute у ConcurrentHashMap блокирует только корзину ключа:
+ * записи разных ключей не мешают друг другу.
+ */
+public class HeapStoreBackend<K, T> implements StoreBackend<K, T> {
+    private final ConcurrentHashMap<K, Versioned<T>> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public Versioned<T> get(K key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public Versioned<T> compute(K key, BiFunction<? super K, ? super Versioned<T>, ? extends Versioned<T>> remapping) {
+        return entries.compute(key, remapping);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Iterator<K> keys() {
+        return entries.keySet().iterator();
+    }
+
+    @Override
+    public Iterator<Versioned<T>> values() {
+        return entries.values().iterator();
+    }
+}
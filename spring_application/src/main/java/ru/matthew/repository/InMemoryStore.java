@@ -1,41 +1,531 @@
 package ru.matthew.repository;
 
+import ru.matthew.exception.FeatureDisabledException;
 import ru.matthew.model.Identifiable;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.stream.Stream;
 
-public class InMemoryStore<K, T extends Identifiable<K>> {
-    private final ConcurrentHashMap<K, T> store = new ConcurrentHashMap<>();
+public class InMemoryStore<K, T extends Identifiable<K>> implements AutoCloseable {
+    // Меньшие пачки вставляются в вызывающем потоке: накладные расходы параллельного стрима больше выигрыша
+    private static final int PARALLEL_SAVE_THRESHOLD = 4096;
+
+    // Возврат из функции изменения, означающий «оставить как есть»
+    private static final Object KEEP = new Object();
+    private static final long NOT_CHANGED = -1;
+    private static final long NO_JOURNAL = 0;
+
+    private final StoreBackend<K, T> store;
+    private final AtomicLong versions = new AtomicLong();
+    // Растёт после того, как изменение стало видно читателям: содержимое не старее прочитанного значения
+    private final AtomicLong modifications = new AtomicLong();
+    private final Collection<T> valuesView = new AbstractCollection<>() {
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<Versioned<T>> entries = store.values();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return entries.next().value();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+    };
+    private final Map<String, StoreIndex<K, T, ?>> indexes = new ConcurrentHashMap<>();
+    // Упорядоченное представление ключей для постраничного обхода.
+    // null, если обход выключен: оно остаётся в куче и при хранении записей вне её
+    private final OrderedKeys<K> orderedKeys;
+    // При GROUP: для каждого ключа цепочка изменений, ещё не подтверждённых fsync, чтобы откатить их при сбое
+    private final Map<K, Undo<T>> undurable = new ConcurrentHashMap<>();
+    // При GROUP: события ленты по номерам записей журнала; уходят в ленту по порядку, когда записи сохранены
+    private final ConcurrentSkipListMap<Long, Unpublished<K, T>> unpublished = new ConcurrentSkipListMap<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private StoreJournal<K, T> journal;
+    private boolean groupCommit;
+    private ChangeFeed<K, T> changes;
+    private boolean recovered;
+
+    public InMemoryStore() {
+        this(new HeapStoreBackend<>());
+    }
+
+    public InMemoryStore(StoreBackend<K, T> backend) {
+        this(backend, true);
+    }
+
+    /**
+     * @param ordered поддерживать ли упорядоченный обход ({@link #stream}, {@link #page}, {@link #hasAfter})
+     */
+    public InMemoryStore(StoreBackend<K, T> backend, boolean ordered) {
+        this(backend, ordered ? new SkipListOrderedKeys<>() : null);
+    }
+
+    /**
+     * @param orderedKeys упорядоченные ключи или {@code null} без упорядоченного обхода
+     */
+    protected InMemoryStore(StoreBackend<K, T> backend, OrderedKeys<K> orderedKeys) {
+        this.store = backend;
+        this.orderedKeys = orderedKeys;
+    }
+
+    /**
+     * Восстанавливает содержимое из журнала и дальше записывает в него каждое изменение.
+     * Вызывается при создании хранилища, до первых запросов.
+     */
+    public InMemoryStore<K, T> attachJournal(StoreJournal<K, T> journal) {
+        journal.open(this::restore);
+        this.journal = journal;
+        this.groupCommit = journal.getFsyncPolicy() == FsyncPolicy.GROUP;
+        this.recovered = store.size() > 0;
+        return this;
+    }
+
+    /**
+     * @return было ли содержимое восстановлено из журнала при старте
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Включает ленту изменений: каждое следующее создание, замена и удаление попадает в неё по порядку.
+     * Восстановленное из журнала содержимое в ленту не попадает.
+     */
+    public InMemoryStore<K, T> enableChangeFeed(int capacity) {
+        this.changes = new ChangeFeed<>(capacity);
+        return this;
+    }
+
+    public ChangeFeed<K, T> changeFeed() {
+        if (changes == null) {
+            throw new IllegalStateException("Лента изменений не включена");
+        }
+        return changes;
+    }
+
+    /**
+     * Регистрирует вторичный индекс и заполняет его текущим содержимым хранилища.
+     */
+    public InMemoryStore<K, T> addIndex(String name, StoreIndex<K, T, ?> index) {
+        if (indexes.putIfAbsent(name, index) != null) {
+            throw new IllegalArgumentException("Индекс " + name + " уже зарегистрирован");
+        }
+        store.keys().forEachRemaining(key -> store.compute(key, (k, entry) -> {
+            if (entry != null) {
+                index.add(k, entry.value());
+            }
+            return entry;
+        }));
+        return this;
+    }
+
+    public boolean hasIndex(String name) {
+        return indexes.containsKey(name);
+    }
+
+    /**
+     * Монотонная версия содержимого целиком, меняется при каждом изменении любого ключа.
+     * Содержимое, прочитанное после получения версии, не старее неё, поэтому по ней можно кешировать
+     * производные данные: устаревший кеш после изменения будет замечен по новой версии.
+     */
+    public long modificationVersion() {
+        return modifications.get();
+    }
 
     public Collection<T> getAll() {
-        return store.values();
+        return valuesView;
+    }
+
+    /**
+     * Значения по возрастанию ключа, начиная со следующего после {@code after} (или с первого, если {@code null}).
+     * Обход слабо согласован: записи, сделанные во время обхода, могут как попасть в него, так и нет,
+     * но ключ никогда не отдаётся дважды и курсор не сбивается от вставок и удалений.
+     *
+     * @throws FeatureDisabledException если хранилище создано без упорядоченного обхода
+     */
+    public Stream<T> stream(K after) {
+        return requireOrdered().after(after)
+                .map(store::get)
+                .filter(Objects::nonNull)
+                .map(Versioned::value);
+    }
+
+    public List<T> page(K after, int limit) {
+        return stream(after).limit(limit).toList();
+    }
+
+    /**
+     * @return есть ли ключи после {@code key}
+     */
+    public boolean hasAfter(K key) {
+        return requireOrdered().hasAfter(key);
     }
 
     public Optional<T> get(K key) {
+        return getVersioned(key).map(Versioned::value);
+    }
+
+    public Optional<Versioned<T>> getVersioned(K key) {
         return Optional.ofNullable(store.get(key));
     }
 
+    /**
+     * Поиск по вторичному индексу. Кандидаты перепроверяются по актуальному значению,
+     * чтобы не отдавать запись, изменённую между чтением индекса и чтением хранилища.
+     */
+    @SuppressWarnings("unchecked")
+    public <Q> List<T> findBy(String indexName, Q query) {
+        StoreIndex<K, T, Q> index = (StoreIndex<K, T, Q>) indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("Индекс " + indexName + " не зарегистрирован");
+        }
+        List<T> result = new ArrayList<>();
+        for (K key : index.lookup(query)) {
+            Versioned<T> entry = store.get(key);
+            if (entry != null && index.matches(entry.value(), query)) {
+                result.add(entry.value());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Вставка или замена без условий.
+     */
     public void save(T value) {
-        if (value != null) {
-            K key = value.getKey();
-            store.put(key, value);
-        } else {
-            throw new IllegalArgumentException("Value не может быть null!");
+        K key = requireValue(value).getKey();
+        commit(mutate(key, previous -> value));
+    }
+
+    /**
+     * @return {@code true}, если ключа не было и значение вставлено
+     */
+    public boolean putIfAbsent(T value) {
+        K key = requireValue(value).getKey();
+        return commit(mutate(key, previous -> previous == null ? value : KEEP));
+    }
+
+    /**
+     * @return {@code true}, если ключ был и значение заменено
+     */
+    public boolean replaceIfPresent(T value) {
+        K key = requireValue(value).getKey();
+        return commit(mutate(key, previous -> previous != null ? value : KEEP));
+    }
+
+    /**
+     * Оптимистичная замена: проходит, только если с момента чтения версии {@code expectedVersion}
+     * значение никто не менял и не удалял.
+     *
+     * @return {@code true}, если версия совпала и значение заменено
+     */
+    public boolean compareAndSet(T value, long expectedVersion) {
+        K key = requireValue(value).getKey();
+        return commit(mutate(key, previous ->
+                previous != null && previous.version() == expectedVersion ? value : KEEP));
+    }
+
+    /**
+     * Атомарное изменение по текущему значению ({@code null}, если ключа нет). Функция вызывается под блокировкой
+     * ключа и должна быть быстрой; результат {@code null} удаляет ключ.
+     *
+     * @return значение после изменения
+     */
+    public Optional<T> compute(K key, BiFunction<? super K, ? super T, ? extends T> remapping) {
+        Versioned<T>[] current = newHolder();
+        commit(mutate(key, previous -> {
+            T value = remapping.apply(key, previous == null ? null : previous.value());
+            if (value != null && !key.equals(value.getKey())) {
+                throw new IllegalArgumentException("Функция изменения вернула значение с другим ключом: " + value.getKey());
+            }
+            return value == null && previous == null ? KEEP : value;
+        }, current));
+        return Optional.ofNullable(current[0]).map(Versioned::value);
+    }
+
+    /**
+     * Массовая вставка без перезаписи. Повторы ключей отсеиваются одним проходом по пачке, затем каждая
+     * запись вставляется атомарно, если ключа ещё нет в хранилище; большие пачки вставляются параллельно.
+     * С журналом fsync ожидается один раз на всю пачку.
+     *
+     * @return отклонённые значения: ключ уже был в хранилище или повторяется в пачке
+     */
+    public List<T> saveAll(Collection<? extends T> values) {
+        Map<K, T> batch = new HashMap<>((int) (values.size() / 0.75f) + 1);
+        List<T> rejected = new ArrayList<>();
+        for (T value : values) {
+            if (batch.putIfAbsent(requireValue(value).getKey(), value) != null) {
+                rejected.add(value);
+            }
         }
+
+        Queue<T> conflicts = new ConcurrentLinkedQueue<>();
+        LongAccumulator lastSeq = new LongAccumulator(Math::max, 0);
+        Stream<T> inserts = batch.values().stream();
+        if (batch.size() >= PARALLEL_SAVE_THRESHOLD) {
+            inserts = inserts.parallel();
+        }
+        inserts.forEach(value -> {
+            long seq = mutate(value.getKey(), previous -> previous == null ? value : KEEP);
+            if (seq == NOT_CHANGED) {
+                conflicts.add(value);
+            } else {
+                lastSeq.accumulate(seq);
+            }
+        });
+        commit(lastSeq.get());
+        rejected.addAll(conflicts);
+        return rejected;
     }
 
     public void update(T value) {
-        if (value != null) {
-            K key = value.getKey();
-            store.replace(key, value);
-        } else {
+        replaceIfPresent(value);
+    }
+
+    /**
+     * @return {@code true}, если ключ был и удалён
+     */
+    public boolean delete(K key) {
+        return commit(mutate(key, previous -> previous != null ? null : KEEP));
+    }
+
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private long mutate(K key, Function<Versioned<T>, Object> change) {
+        return mutate(key, change, null);
+    }
+
+    /**
+     * Единственная точка изменения: функция получает текущую запись под блокировкой ключа и возвращает
+     * новое значение, {@code null} для удаления или {@link #KEEP}. Запись в журнал идёт до изменения карты:
+     * если она не удалась, compute оставляет прежнее значение. В ленту изменений запись попадает там же,
+     * под блокировкой ключа, поэтому её номера согласованы с порядком изменений каждого ключа.
+     * <p>
+     * При {@link FsyncPolicy#GROUP} изменение видно читателям, пока писатель ждёт fsync, но в ленту уходит
+     * только после него, в порядке номеров журнала; если fsync не удался, хранилище откатывает всё
+     * неподтверждённое (см. {@link #stop()}).
+     *
+     * @return номер записи журнала, {@link #NO_JOURNAL} без журнала или {@link #NOT_CHANGED}
+     */
+    @SuppressWarnings("unchecked")
+    private long mutate(K key, Function<Versioned<T>, Object> change, Versioned<T>[] current) {
+        long[] seq = {NOT_CHANGED};
+        Versioned<T> entry = store.compute(key, (k, previous) -> {
+            Object next = change.apply(previous);
+            if (next == KEEP) {
+                return previous;
+            }
+            T value = (T) next;
+            seq[0] = groupCommit ? appendUndurable(k, previous, value)
+                    : journal != null ? journal.append(k, value) : NO_JOURNAL;
+            reindex(k, previous == null ? null : previous.value(), value);
+            Versioned<T> updated = value == null ? null : new Versioned<>(value, versions.incrementAndGet());
+            if (changes != null) {
+                Unpublished<K, T> event = event(k, previous, updated);
+                if (groupCommit) {
+                    unpublished.put(seq[0], event);
+                } else {
+                    changes.publish(event.type(), k, event.value(), event.version());
+                }
+            }
+            return updated;
+        });
+        if (current != null) {
+            current[0] = entry;
+        }
+        if (seq[0] != NOT_CHANGED) {
+            modifications.incrementAndGet();
+        }
+        return seq[0];
+    }
+
+    /**
+     * Ждёт сохранности записи журнала, если хранилище с журналом.
+     *
+     * @return было ли изменение
+     */
+    private boolean commit(long seq) {
+        if (seq > 0) {
+            try {
+                journal.commit(seq);
+            } catch (RuntimeException e) {
+                if (groupCommit) {
+                    stop();
+                }
+                throw e;
+            }
+            if (groupCommit) {
+                settle(journal.durableSeq());
+            }
+        }
+        return seq != NOT_CHANGED;
+    }
+
+    /**
+     * Пишет изменение в журнал, запомнив прежнюю запись ключа для отката. Откат регистрируется до записи:
+     * если журнал откажет уже после неё, {@link #stop()} увидит ключ. Вызывается под блокировкой ключа.
+     */
+    private long appendUndurable(K key, Versioned<T> previous, T value) {
+        Undo<T> earlier = undurable.get(key);
+        if (earlier != null && earlier.seq() <= journal.durableSeq()) {
+            // Вся цепочка уже сохранена, откатывать её незачем
+            earlier = null;
+        }
+        undurable.put(key, new Undo<>(Long.MAX_VALUE, previous, earlier));
+        long seq;
+        try {
+            seq = journal.append(key, value);
+        } catch (RuntimeException e) {
+            if (earlier == null) {
+                undurable.remove(key);
+            } else {
+                undurable.put(key, earlier);
+            }
+            throw e;
+        }
+        undurable.put(key, new Undo<>(seq, previous, earlier));
+        return seq;
+    }
+
+    /**
+     * Забывает откаты сохранённых изменений и отдаёт в ленту их события по порядку номеров журнала.
+     * Изменения одного ключа получают номера по очереди под его блокировкой, поэтому их порядок в ленте сохраняется.
+     */
+    private void settle(long durable) {
+        // Удаление условное: цепочку, которую продлили после чтения, оно не тронет
+        undurable.entrySet().removeIf(entry -> entry.getValue().seq() <= durable);
+        if (unpublished.isEmpty()) {
+            return;
+        }
+        publishLock.lock();
+        try {
+            Map.Entry<Long, Unpublished<K, T>> next;
+            while ((next = unpublished.firstEntry()) != null && next.getKey() <= durable) {
+                unpublished.remove(next.getKey());
+                Unpublished<K, T> change = next.getValue();
+                changes.publish(change.type(), change.key(), change.value(), change.version());
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Журнал не сохранил пачку и больше не принимает записей, поэтому хранилище перестаёт меняться:
+     * каждый неподтверждённый ключ возвращается к последнему сохранённому значению, а события
+     * неподтверждённых изменений в ленту так и не попадают. Может вызываться несколькими писателями пачки.
+     */
+    private void stop() {
+        long durable = journal.durableSeq();
+        settle(durable);
+        unpublished.clear();
+        for (K key : undurable.keySet()) {
+            store.compute(key, (k, current) -> {
+                Versioned<T> restored = current;
+                for (Undo<T> undo = undurable.remove(k); undo != null && undo.seq() > durable; undo = undo.earlier()) {
+                    restored = undo.previous();
+                }
+                if (restored != current) {
+                    reindex(k, current == null ? null : current.value(), restored == null ? null : restored.value());
+                }
+                return restored;
+            });
+        }
+        modifications.incrementAndGet();
+    }
+
+    private void restore(K key, T value) {
+        store.compute(key, (k, previous) -> {
+            reindex(k, previous == null ? null : previous.value(), value);
+            return value == null ? null : new Versioned<>(value, versions.incrementAndGet());
+        });
+        modifications.incrementAndGet();
+    }
+
+    private static <K, T> Unpublished<K, T> event(K key, Versioned<T> previous, Versioned<T> updated) {
+        if (updated == null) {
+            return new Unpublished<>(StoreChange.Type.DELETE, key, null, previous.version());
+        }
+        StoreChange.Type type = previous == null ? StoreChange.Type.CREATE : StoreChange.Type.UPDATE;
+        return new Unpublished<>(type, key, updated.value(), updated.version());
+    }
+
+    // Вызывается под блокировкой ключа в compute, поэтому записи одного ключа не перемешиваются в индексах
+    private void reindex(K key, T previous, T value) {
+        if (orderedKeys != null) {
+            if (previous == null && value != null) {
+                orderedKeys.add(key);
+            } else if (previous != null && value == null) {
+                orderedKeys.remove(key);
+            }
+        }
+        for (StoreIndex<K, T, ?> index : indexes.values()) {
+            if (previous != null) {
+                index.remove(key, previous);
+            }
+            if (value != null) {
+                index.add(key, value);
+            }
+        }
+    }
+
+    private OrderedKeys<K> requireOrdered() {
+        if (orderedKeys == null) {
+            throw new FeatureDisabledException("Упорядоченный обход ключей выключен");
+        }
+        return orderedKeys;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Versioned<T>[] newHolder() {
+        return (Versioned<T>[]) new Versioned[1];
+    }
+
+    private static <T> T requireValue(T value) {
+        if (value == null) {
             throw new IllegalArgumentException("Value не может быть null!");
         }
+        return value;
+    }
+
+    /**
+     * Неподтверждённое изменение ключа: номер записи журнала, запись до него и более раннее неподтверждённое.
+     */
+    private record Undo<T>(long seq, Versioned<T> previous, Undo<T> earlier) {
     }
 
-    public void delete(K key) {
-        store.remove(key);
+    private record Unpublished<K, T>(StoreChange.Type type, K key, T value, long version) {
     }
 }
@@ -0,0 +1,86 @@
+package ru.matthew.repository;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ключи одного значения индекса. Пока их немного, это неизменяемое множество, которое заменяется копией;
+ * дальше - множество на {@link ConcurrentHashMap}, которое меняется на месте, так что построение индекса
+ * по значению, общему для многих сущностей, стоит {@code O(1)} на ключ, а не копию всех ключей.
+ * <p>
+ * {@code compute} у {@link java.util.concurrent.ConcurrentSkipListMap} не блокирует ячейку и может вызвать
+ * функцию повторно, поэтому изменения идут под монитором множества, а опустевшее помечается удалённым:
+ * запись, заставшая такое, создаёт новое, и compute либо заменяет им старое, либо повторяется.
+ */
+final class IndexKeys<K> {
+    // Размер, после которого множество перестаёт копироваться
+    private static final int SMALL = 8;
+
+    private volatile Set<K> keys;
+    // Изменяемое множество за keys, когда ключей стало больше SMALL
+    private Set<K> shared;
+    private boolean removed;
+
+    private IndexKeys(K key) {
+        this.keys = Set.of(key);
+    }
+
+    static <K> IndexKeys<K> with(IndexKeys<K> keys, K key) {
+        return keys != null && keys.add(key) ? keys : new IndexKeys<>(key);
+    }
+
+    static <K> IndexKeys<K> without(IndexKeys<K> keys, K key) {
+        return keys.remove(key) ? null : keys;
+    }
+
+    /**
+     * @return ключи; множество не изменяется снаружи, но может меняться, пока его читают
+     */
+    Set<K> view() {
+        return keys;
+    }
+
+    /**
+     * @return {@code false}, если множество уже удалено из индекса и ключ не добавлен
+     */
+    private synchronized boolean add(K key) {
+        if (removed) {
+            return false;
+        }
+        Set<K> current = keys;
+        if (shared != null) {
+            shared.add(key);
+        } else if (!current.contains(key)) {
+            if (current.size() < SMALL) {
+                @SuppressWarnings("unchecked")
+                K[] copy = (K[]) current.toArray(new Object[current.size() + 1]);
+                copy[current.size()] = key;
+                keys = Set.of(copy);
+            } else {
+                shared = ConcurrentHashMap.newKeySet();
+                shared.addAll(current);
+                shared.add(key);
+                keys = Collections.unmodifiableSet(shared);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true}, если множество опустело и его нужно удалить из индекса
+     */
+    private synchronized boolean remove(K key) {
+        Set<K> current = keys;
+        if (!removed && current.contains(key)) {
+            if (current.size() == 1) {
+                removed = true;
+            } else if (shared != null) {
+                shared.remove(key);
+            } else {
+                keys = Set.copyOf(current.stream().filter(k -> !k.equals(key)).toList());
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,269 @@
+package ru.matthew.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Записи с ключом {@code int} в открытой адресации по массиву {@code int[]}: ключ хранится и сравнивается
+ * без упаковки в {@link Integer}. Ключи распределены по полосам со своей блокировкой; чтение сначала
+ * идёт без блокировки и повторяется под ней, только если полосу в это время меняли.
+ */
+public class IntKeyStoreBackend<T> implements StoreBackend<Integer, T> {
+    private static final int DEFAULT_STRIPE_BITS = 4;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final int stripeBits;
+    private final int stripeMask;
+    private final Stripe<T>[] stripes;
+
+    public IntKeyStoreBackend() {
+        this(DEFAULT_STRIPE_BITS);
+    }
+
+    /**
+     * @param stripeBits log2 числа полос, от 1 до 16
+     */
+    @SuppressWarnings("unchecked")
+    public IntKeyStoreBackend(int stripeBits) {
+        if (stripeBits < 1 || stripeBits > 16) {
+            throw new IllegalArgumentException("Число бит полосы должно быть от 1 до 16: " + stripeBits);
+        }
+        this.stripeBits = stripeBits;
+        this.stripeMask = (1 << stripeBits) - 1;
+        this.stripes = (Stripe<T>[]) new Stripe[1 << stripeBits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<>(stripeBits);
+        }
+    }
+
+    public Versioned<T> get(int key) {
+        int hash = hash(key);
+        return stripes[hash & stripeMask].get(key, hash >>> stripeBits);
+    }
+
+
+    @Override
+    public Versioned<T> get(Integer key) {
+        return get(key.intValue());
+    }
+
+    @Override
+    public Versioned<T> compute(Integer key, BiFunction<? super Integer, ? super Versioned<T>, ? extends Versioned<T>> remapping) {
+        // Ключ уже упакован вызывающим, он же уходит в функцию изменения
+        int hash = hash(key);
+        return stripes[hash & stripeMask].compute(key, hash >>> stripeBits, remapping);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe<T> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<Integer> keys() {
+        return iterate(Stripe::keys);
+    }
+
+    @Override
+    public Iterator<Versioned<T>> values() {
+        return iterate(Stripe::values);
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    private <R> Iterator<R> iterate(Function<Stripe<T>, List<R>> snapshot) {
+        return new Iterator<>() {
+            private int next;
+            private Iterator<R> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < stripes.length) {
+                    current = snapshot.apply(stripes[next++]).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Ключи и записи меняются вместе одной ссылкой, чтобы чтение без блокировки не увидело
+     * массивы разного размера во время роста таблицы.
+     */
+    private record Table<T>(int[] keys, Versioned<T>[] values) {
+
+        @SuppressWarnings("unchecked")
+        static <T> Table<T> withCapacity(int capacity) {
+            return new Table<>(new int[capacity], (Versioned<T>[]) new Versioned[capacity]);
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        /**
+         * @return номер ячейки ключа или {@code -(ячейка для вставки + 1)}; пустая ячейка - {@code values[i] == null}
+         */
+        int find(int key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            // Обход ограничен размером таблицы: без блокировки можно застать её посреди сдвига записей
+            for (int probes = 0; probes < keys.length; probes++, i = (i + 1) & mask) {
+                if (values[i] == null) {
+                    return -(i + 1);
+                }
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -(i + 1);
+        }
+    }
+
+    private static final class Stripe<T> {
+        private final StampedLock lock = new StampedLock();
+        // Младшие биты хеша уже выбрали полосу, ячейку выбирают следующие
+        private final int hashShift;
+        private Table<T> table = Table.withCapacity(INITIAL_CAPACITY);
+        private volatile int size;
+
+        Stripe(int hashShift) {
+            this.hashShift = hashShift;
+        }
+
+        Versioned<T> get(int key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Table<T> current = table;
+                int slot = current.find(key, hash);
+                Versioned<T> entry = slot >= 0 ? current.values[slot] : null;
+                if (lock.validate(stamp)) {
+                    return entry;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                int slot = table.find(key, hash);
+                return slot >= 0 ? table.values[slot] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Versioned<T> compute(Integer key, int hash, BiFunction<? super Integer, ? super Versioned<T>, ? extends Versioned<T>> remapping) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = table.find(key, hash);
+                Versioned<T> previous = slot >= 0 ? table.values[slot] : null;
+                Versioned<T> next = remapping.apply(key, previous);
+                if (next == previous) {
+                    return previous;
+                }
+                if (next == null) {
+                    remove(slot);
+                } else if (slot >= 0) {
+                    table.values[slot] = next;
+                } else {
+                    insert(key, hash, next, -slot - 1);
+                }
+                return next;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        List<Integer> keys() {
+            long stamp = lock.readLock();
+            try {
+                List<Integer> keys = new ArrayList<>(size);
+                for (int i = 0; i < table.capacity(); i++) {
+                    if (table.values[i] != null) {
+                        keys.add(table.keys[i]);
+                    }
+                }
+                return keys;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        List<Versioned<T>> values() {
+            long stamp = lock.readLock();
+            try {
+                List<Versioned<T>> values = new ArrayList<>(size);
+                for (Versioned<T> value : table.values) {
+                    if (value != null) {
+                        values.add(value);
+                    }
+                }
+                return values;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void insert(int key, int hash, Versioned<T> value, int slot) {
+            if (size + 1 > table.capacity() * LOAD_FACTOR) {
+                resize();
+                slot = -table.find(key, hash) - 1;
+            }
+            table.keys[slot] = key;
+            table.values[slot] = value;
+            size++;
+        }
+
+        private void resize() {
+            Table<T> old = table;
+            Table<T> resized = Table.withCapacity(old.capacity() * 2);
+            for (int i = 0; i < old.capacity(); i++) {
+                if (old.values[i] != null) {
+                    int slot = -resized.find(old.keys[i], hash(old.keys[i]) >>> hashShift) - 1;
+                    resized.keys[slot] = old.keys[i];
+                    resized.values[slot] = old.values[i];
+                }
+            }
+            table = resized;
+        }
+
+        // Удаление со сдвигом назад: следующие записи цепочки переезжают в освободившуюся ячейку, надгробий нет
+        private void remove(int slot) {
+            int[] keys = table.keys;
+            Versioned<T>[] values = table.values;
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+                int home = (hash(keys[i]) >>> hashShift) & mask;
+                boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+                if (!reachable) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.matthew.repository;
+
+import ru.matthew.model.Identifiable;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link InMemoryStore} с ключом {@code int} поверх {@link IntKeyStoreBackend} и {@link IntOrderedKeys}.
+ * Записи и упорядоченные ключи хранятся без упаковки, а перегрузки чтения с {@code int} ищут запись,
+ * не создавая {@link Integer}: вызов {@code store.get(id)} с примитивом выбирает их сам; постраничный
+ * обход тоже идёт по примитивам. Изменение упаковывает ключ один раз, в {@code getKey()} сущности:
+ * этот же {@link Integer} получают вторичные индексы, которые хранят ключи в обычных множествах,
+ * и журнал. Без индексов запись не создаёт объектов на ключ, кроме этой упаковки.
+ */
+public class IntKeyedStore<T extends Identifiable<Integer>> extends InMemoryStore<Integer, T> {
+    private final IntKeyStoreBackend<T> entries;
+    private final IntOrderedKeys keys;
+
+    public IntKeyedStore() {
+        this(true);
+    }
+
+    /**
+     * @param ordered поддерживать ли упорядоченный обход
+     */
+    public IntKeyedStore(boolean ordered) {
+        this(new IntKeyStoreBackend<>(), ordered ? new IntOrderedKeys() : null);
+    }
+
+    private IntKeyedStore(IntKeyStoreBackend<T> entries, IntOrderedKeys keys) {
+        super(entries, keys);
+        this.entries = entries;
+        this.keys = keys;
+    }
+
+    public Optional<T> get(int key) {
+        Versioned<T> entry = entries.get(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.value());
+    }
+
+    public Optional<Versioned<T>> getVersioned(int key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    @Override
+    public Stream<T> stream(Integer after) {
+        if (keys == null) {
+            return super.stream(after);
+        }
+        return keys.keysAfter(after)
+                .mapToObj(key -> entries.get((int) key))
+                .filter(Objects::nonNull)
+                .map(Versioned::value);
+    }
+
+    public boolean hasAfter(int key) {
+        if (keys == null) {
+            return super.hasAfter(key);
+        }
+        return keys.higher(key) != IntOrderedKeys.NONE;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.matthew.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Упорядоченные ключи {@code int} в отсортированном массиве: ни узлов списка, ни упаковки на ключ.
+ * Вставка и удаление сдвигают хвост массива, поэтому подходят для справочников до сотен тысяч ключей,
+ * а не для потока записей в миллионы. Обход идёт от ключа к следующему большему ключу, как по списку
+ * с пропусками: каждый шаг - двоичный поиск по текущему массиву, снимок целиком не делается.
+ */
+public class IntOrderedKeys implements OrderedKeys<Integer> {
+    // Ключей после искомого нет; вне диапазона int, поэтому не совпадает ни с одним ключом
+    public static final long NONE = Long.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int size;
+
+    @Override
+    public void add(Integer key) {
+        add(key.intValue());
+    }
+
+    @Override
+    public void remove(Integer key) {
+        remove(key.intValue());
+    }
+
+    @Override
+    public Stream<Integer> after(Integer after) {
+        return keysAfter(after).mapToObj(key -> (int) key);
+    }
+
+    @Override
+    public boolean hasAfter(Integer key) {
+        return higher(key) != NONE;
+    }
+
+    public void add(int key) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = Arrays.binarySearch(keys, 0, size, key);
+            if (slot >= 0) {
+                return;
+            }
+            slot = -slot - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+            keys[slot] = key;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = Arrays.binarySearch(keys, 0, size, key);
+            if (slot >= 0) {
+                System.arraycopy(keys, slot + 1, keys, slot, size - slot - 1);
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param after ключ, после которого начинать, или {@code null}, чтобы начать с наименьшего
+     * @return ключи по возрастанию, каждый в {@code long}, чтобы не упаковывать их по пути
+     */
+    public LongStream keysAfter(Integer after) {
+        long first = after == null ? first() : higher(after);
+        return LongStream.iterate(first, key -> key != NONE, key -> higher((int) key));
+    }
+
+    /**
+     * @return наименьший ключ больше {@code key} или {@link #NONE}
+     */
+    public long higher(int key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long higher = higher(keys, size, key);
+            if (lock.validate(stamp)) {
+                return higher;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return higher(keys, size, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long first() {
+        long stamp = lock.readLock();
+        try {
+            return size == 0 ? NONE : keys[0];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Без блокировки размер может обогнать массив посреди роста: поиск ограничен длиной, результат проверит validate
+    private static long higher(int[] keys, int size, int key) {
+        int length = Math.min(size, keys.length);
+        int slot = Arrays.binarySearch(keys, 0, length, key);
+        slot = slot >= 0 ? slot + 1 : -slot - 1;
+        return slot < length ? keys[slot] : NONE;
+    }
+}
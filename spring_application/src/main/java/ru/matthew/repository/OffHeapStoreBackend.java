@@ -0,0 +1,406 @@
+package ru.matthew.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Записи в прямых буферах вне кучи, закодированные {@link EntityCodec}: в куче остаются только массивы
+ * открытой адресации (адрес записи и хеш ключа), которые GC не обходит. Сущность декодируется при каждом чтении.
+ * <p>
+ * Ключи распределены по полосам со своей блокировкой, таблицей и областью буферов. Запись добавляется
+ * в конец области, прежняя версия становится мусором; когда мусора в полосе больше, чем живых данных,
+ * живые записи переписываются в новые буферы, а старые освобождаются вместе с объектами буферов.
+ */
+public class OffHeapStoreBackend<K, T> implements StoreBackend<K, T> {
+    private static final int DEFAULT_STRIPE_BITS = 6;
+    private static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+    // Буферы полосы растут вдвое от этого размера до chunkSize, чтобы маленькие хранилища не занимали лишнего
+    private static final int INITIAL_CHUNK_SIZE = 4 << 10;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+    // Заголовок записи: длина тела (ключ и значение) и версия
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final EntityCodec<K, T> codec;
+    private final int chunkSize;
+    private final int stripeShift;
+    private final List<Stripe> stripes;
+
+    public OffHeapStoreBackend(EntityCodec<K, T> codec) {
+        this(codec, DEFAULT_STRIPE_BITS, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param stripeBits log2 числа полос, от 1 до 16
+     * @param chunkSize  наибольший размер одного прямого буфера; запись крупнее получает буфер своего размера
+     */
+    public OffHeapStoreBackend(EntityCodec<K, T> codec, int stripeBits, int chunkSize) {
+        if (stripeBits < 1 || stripeBits > 16) {
+            throw new IllegalArgumentException("Число бит полосы должно быть от 1 до 16: " + stripeBits);
+        }
+        if (chunkSize < HEADER_SIZE) {
+            throw new IllegalArgumentException("Слишком маленький размер буфера: " + chunkSize);
+        }
+        this.codec = codec;
+        this.chunkSize = chunkSize;
+        this.stripeShift = Integer.SIZE - stripeBits;
+        this.stripes = new ArrayList<>(1 << stripeBits);
+        for (int i = 0; i < 1 << stripeBits; i++) {
+            stripes.add(new Stripe());
+        }
+    }
+
+    @Override
+    public Versioned<T> get(K key) {
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        stripe.lock.readLock().lock();
+        try {
+            int slot = stripe.find(key, hash);
+            return slot >= 0 ? stripe.readEntry(stripe.addresses[slot] - 1) : null;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Versioned<T> compute(K key, BiFunction<? super K, ? super Versioned<T>, ? extends Versioned<T>> remapping) {
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        stripe.lock.writeLock().lock();
+        try {
+            return stripe.compute(key, hash, remapping);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<K> keys() {
+        return iterate(stripe -> stripe.snapshot(stripe::readKey));
+    }
+
+    @Override
+    public Iterator<Versioned<T>> values() {
+        return iterate(stripe -> stripe.snapshot(stripe::readEntry));
+    }
+
+    /**
+     * @return байт вне кучи, занятых буферами, включая ещё не собранный мусор
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                for (ByteBuffer chunk : stripe.chunks) {
+                    bytes += chunk.capacity();
+                }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return bytes;
+    }
+
+    // Полоса выбирается по старшим битам, ячейка таблицы - по младшим
+    private Stripe stripeFor(int hash) {
+        return stripes.get(hash >>> stripeShift);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Обход по полосам: каждая копируется под своей блокировкой, когда до неё дошла очередь
+    private <R> Iterator<R> iterate(Function<Stripe, List<R>> snapshot) {
+        return new Iterator<>() {
+            private int next;
+            private Iterator<R> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && next < stripes.size()) {
+                    current = snapshot.apply(stripes.get(next++)).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private final class Stripe {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final EncodeBuffer encoded = new EncodeBuffer();
+        private final DataOutputStream encodedOut = new DataOutputStream(encoded);
+        private List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer tail;
+        private int tailPosition;
+        // Адрес записи + 1 (0 - пустая ячейка): номер буфера в старших 32 битах, смещение в младших
+        private long[] addresses = new long[INITIAL_CAPACITY];
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private volatile int size;
+        private long usedBytes;
+        private long liveBytes;
+
+        /**
+         * @return номер ячейки ключа или {@code -(ячейка для вставки + 1)}
+         */
+        int find(K key, int hash) {
+            int mask = addresses.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long address = addresses[i];
+                if (address == 0) {
+                    return -(i + 1);
+                }
+                if (hashes[i] == hash && key.equals(readKey(address - 1))) {
+                    return i;
+                }
+            }
+        }
+
+        Versioned<T> compute(K key, int hash, BiFunction<? super K, ? super Versioned<T>, ? extends Versioned<T>> remapping) {
+            int slot = find(key, hash);
+            Versioned<T> previous = slot >= 0 ? readEntry(addresses[slot] - 1) : null;
+            Versioned<T> next = remapping.apply(key, previous);
+            if (next == previous) {
+                return previous;
+            }
+            if (slot >= 0) {
+                liveBytes -= recordSize(addresses[slot] - 1);
+            }
+            if (next == null) {
+                remove(slot);
+            } else if (slot >= 0) {
+                addresses[slot] = write(key, next) + 1;
+            } else {
+                insert(hash, write(key, next) + 1, -slot - 1);
+            }
+            if (usedBytes > INITIAL_CHUNK_SIZE && usedBytes - liveBytes > liveBytes) {
+                compact();
+            }
+            return next;
+        }
+
+        <R> List<R> snapshot(LongFunction<R> reader) {
+            lock.readLock().lock();
+            try {
+                List<R> result = new ArrayList<>(size);
+                for (long address : addresses) {
+                    if (address != 0) {
+                        result.add(reader.apply(address - 1));
+                    }
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        K readKey(long address) {
+            try {
+                return codec.readKey(new DataInputStream(body(address)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось декодировать ключ записи", e);
+            }
+        }
+
+        Versioned<T> readEntry(long address) {
+            ByteBuffer chunk = chunks.get((int) (address >>> 32));
+            long version = chunk.getLong((int) address + Integer.BYTES);
+            try {
+                DataInputStream in = new DataInputStream(body(address));
+                codec.readKey(in);
+                return new Versioned<>(codec.readValue(in), version);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось декодировать запись", e);
+            }
+        }
+
+        private BufferInput body(long address) {
+            ByteBuffer chunk = chunks.get((int) (address >>> 32));
+            int offset = (int) address;
+            return new BufferInput(chunk, offset + HEADER_SIZE, chunk.getInt(offset));
+        }
+
+        private int recordSize(long address) {
+            return HEADER_SIZE + chunks.get((int) (address >>> 32)).getInt((int) address);
+        }
+
+        private long write(K key, Versioned<T> entry) {
+            encoded.reset();
+            try {
+                codec.writeKey(encodedOut, key);
+                codec.writeValue(encodedOut, entry.value());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось закодировать запись", e);
+            }
+            int length = encoded.size();
+            long address = allocate(HEADER_SIZE + length);
+            int offset = (int) address;
+            tail.putInt(offset, length);
+            tail.putLong(offset + Integer.BYTES, entry.version());
+            tail.put(offset + HEADER_SIZE, encoded.array(), 0, length);
+            return address;
+        }
+
+        private long allocate(int recordSize) {
+            if (tail == null || tail.capacity() - tailPosition < recordSize) {
+                int nextSize = tail == null ? INITIAL_CHUNK_SIZE : tail.capacity() * 2;
+                tail = ByteBuffer.allocateDirect(Math.max(Math.min(nextSize, chunkSize), recordSize));
+                chunks.add(tail);
+                tailPosition = 0;
+            }
+            long address = ((long) (chunks.size() - 1) << 32) | tailPosition;
+            tailPosition += recordSize;
+            usedBytes += recordSize;
+            liveBytes += recordSize;
+            return address;
+        }
+
+        private void insert(int hash, long address, int slot) {
+            if (size + 1 > addresses.length * LOAD_FACTOR) {
+                resize();
+                slot = freeSlot(hash);
+            }
+            addresses[slot] = address;
+            hashes[slot] = hash;
+            size++;
+        }
+
+        private int freeSlot(int hash) {
+            int mask = addresses.length - 1;
+            int i = hash & mask;
+            while (addresses[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void resize() {
+            long[] oldAddresses = addresses;
+            int[] oldHashes = hashes;
+            addresses = new long[oldAddresses.length * 2];
+            hashes = new int[oldHashes.length * 2];
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != 0) {
+                    int slot = freeSlot(oldHashes[i]);
+                    addresses[slot] = oldAddresses[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        // Удаление со сдвигом назад: следующие записи цепочки переезжают в освободившуюся ячейку, надгробий нет
+        private void remove(int slot) {
+            int mask = addresses.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; addresses[i] != 0; i = (i + 1) & mask) {
+                int home = hashes[i] & mask;
+                boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+                if (!reachable) {
+                    addresses[hole] = addresses[i];
+                    hashes[hole] = hashes[i];
+                    hole = i;
+                }
+            }
+            addresses[hole] = 0;
+            hashes[hole] = 0;
+            size--;
+        }
+
+        private void compact() {
+            List<ByteBuffer> oldChunks = chunks;
+            chunks = new ArrayList<>();
+            tail = null;
+            usedBytes = 0;
+            liveBytes = 0;
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i] != 0) {
+                    long address = addresses[i] - 1;
+                    ByteBuffer chunk = oldChunks.get((int) (address >>> 32));
+                    int offset = (int) address;
+                    int recordSize = HEADER_SIZE + chunk.getInt(offset);
+                    long moved = allocate(recordSize);
+                    tail.put((int) moved, chunk, offset, recordSize);
+                    addresses[i] = moved + 1;
+                }
+            }
+        }
+    }
+
+    private static final class EncodeBuffer extends ByteArrayOutputStream {
+
+        EncodeBuffer() {
+            super(128);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Чтение тела записи по абсолютным смещениям: позиция общего буфера не меняется,
+     * поэтому читатели одной полосы не мешают друг другу.
+     */
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+        private final int end;
+        private int position;
+
+        BufferInput(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? buffer.get(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (position >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - position);
+            buffer.get(position, target, offset, count);
+            position += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.matthew.repository;
+
+import java.util.stream.Stream;
+
+/**
+ * Упорядоченное множество ключей {@link InMemoryStore} для постраничного обхода. Хранилище изменяет его
+ * внутри {@code compute} по ключу, а читает без блокировки: обход слабо согласован, но не отдаёт ключ
+ * дважды и не сбивается от вставок и удалений.
+ */
+public interface OrderedKeys<K> {
+
+    void add(K key);
+
+    void remove(K key);
+
+    /**
+     * @return ключи по возрастанию строго после {@code after} или все, если {@code null}
+     */
+    Stream<K> after(K after);
+
+    boolean hasAfter(K key);
+}
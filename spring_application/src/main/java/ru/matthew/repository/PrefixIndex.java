@@ -0,0 +1,64 @@
+package ru.matthew.repository;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Упорядоченный индекс строкового поля для поиска по префиксу без учёта регистра.
+ * Совпадения по префиксу образуют непрерывный диапазон ключей {@link ConcurrentSkipListMap},
+ * поэтому поиск стоит {@code O(log n + m)} вместо полного обхода хранилища.
+ */
+public class PrefixIndex<K, T> implements StoreIndex<K, T, String> {
+    private final ConcurrentSkipListMap<String, IndexKeys<K>> index = new ConcurrentSkipListMap<>();
+    private final Function<? super T, String> extractor;
+
+    public PrefixIndex(Function<? super T, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public void add(K key, T value) {
+        String indexed = normalize(extractor.apply(value));
+        if (indexed != null) {
+            index.compute(indexed, (v, keys) -> IndexKeys.with(keys, key));
+        }
+    }
+
+    @Override
+    public void remove(K key, T value) {
+        String indexed = normalize(extractor.apply(value));
+        if (indexed != null) {
+            index.computeIfPresent(indexed, (v, keys) -> IndexKeys.without(keys, key));
+        }
+    }
+
+    /**
+     * @return ключи в порядке индексируемых значений
+     */
+    @Override
+    public Set<K> lookup(String prefix) {
+        String from = normalize(prefix);
+        if (from == null) {
+            return Set.of();
+        }
+        ConcurrentNavigableMap<String, IndexKeys<K>> range = index.subMap(from, true, from + Character.MAX_VALUE, true);
+        Set<K> keys = new LinkedHashSet<>();
+        range.values().forEach(bucket -> keys.addAll(bucket.view()));
+        return keys;
+    }
+
+    @Override
+    public boolean matches(T value, String prefix) {
+        String indexed = normalize(extractor.apply(value));
+        String from = normalize(prefix);
+        return indexed != null && from != null && indexed.startsWith(from);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
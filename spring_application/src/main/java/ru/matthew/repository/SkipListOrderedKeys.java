@@ -0,0 +1,31 @@
+package ru.matthew.repository;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Упорядоченные ключи в {@link ConcurrentSkipListSet}; ключи должны быть {@link Comparable}.
+ */
+public class SkipListOrderedKeys<K> implements OrderedKeys<K> {
+    private final ConcurrentSkipListSet<K> keys = new ConcurrentSkipListSet<>();
+
+    @Override
+    public void add(K key) {
+        keys.add(key);
+    }
+
+    @Override
+    public void remove(K key) {
+        keys.remove(key);
+    }
+
+    @Override
+    public Stream<K> after(K after) {
+        return (after == null ? keys : keys.tailSet(after, false)).stream();
+    }
+
+    @Override
+    public boolean hasAfter(K key) {
+        return keys.higher(key) != null;
+    }
+}
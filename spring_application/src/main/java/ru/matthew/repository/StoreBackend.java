@@ -0,0 +1,33 @@
+package ru.matthew.repository;
+
+import java.util.Iterator;
+import java.util.function.BiFunction;
+
+/**
+ * Хранение записей {@link InMemoryStore}. Все изменения идут через {@link #compute}, поэтому реализация
+ * отвечает за его атомарность по ключу: на нём держатся условные операции и согласованность индексов.
+ */
+public interface StoreBackend<K, T> {
+
+    Versioned<T> get(K key);
+
+    /**
+     * Атомарно заменяет запись ключа результатом функции; {@code null} удаляет ключ, а возврат
+     * переданной записи (того же экземпляра) оставляет всё как есть.
+     *
+     * @return запись после изменения
+     */
+    Versioned<T> compute(K key, BiFunction<? super K, ? super Versioned<T>, ? extends Versioned<T>> remapping);
+
+    int size();
+
+    /**
+     * Слабо согласованный обход ключей: изменения во время обхода могут как попасть в него, так и нет.
+     */
+    Iterator<K> keys();
+
+    /**
+     * Слабо согласованный обход записей.
+     */
+    Iterator<Versioned<T>> values();
+}
@@ -0,0 +1,16 @@
+package ru.matthew.repository;
+
+/**
+ * Где {@link InMemoryStore} держит записи.
+ */
+public enum StoreBackendType {
+    /**
+     * Объекты в куче ({@link HeapStoreBackend}): быстрее чтение, но каждая запись - несколько объектов для GC.
+     */
+    HEAP,
+    /**
+     * Закодированные записи вне кучи ({@link OffHeapStoreBackend}): в куче остаются только массивы индекса,
+     * сущность декодируется при каждом чтении.
+     */
+    OFF_HEAP
+}
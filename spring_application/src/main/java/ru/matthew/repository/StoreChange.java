@@ -0,0 +1,12 @@
+package ru.matthew.repository;
+
+/**
+ * Изменение хранилища в ленте {@link ChangeFeed}. Для удаления {@code value} - {@code null},
+ * а {@code version} - версия удалённой записи.
+ */
+public record StoreChange<K, T>(long sequence, Type type, K key, T value, long version) {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+}
@@ -0,0 +1,25 @@
+package ru.matthew.repository;
+
+import java.util.Set;
+
+/**
+ * Вторичный индекс {@link InMemoryStore}: отображает производное значение сущности на множество её ключей.
+ * Хранилище обновляет индексы внутри {@code compute} по ключу, поэтому записи одного ключа
+ * изменяют индекс строго по очереди.
+ */
+public interface StoreIndex<K, T, Q> {
+
+    void add(K key, T value);
+
+    void remove(K key, T value);
+
+    /**
+     * @return ключи-кандидаты; при конкурентной записи значение по ключу могло уже измениться
+     */
+    Set<K> lookup(Q query);
+
+    /**
+     * Перепроверка кандидата по актуальному значению из хранилища.
+     */
+    boolean matches(T value, Q query);
+}
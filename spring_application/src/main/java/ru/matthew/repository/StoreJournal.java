@@ -0,0 +1,525 @@
+package ru.matthew.repository;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи (WAL) и компактирующие снимки для {@link InMemoryStore}.
+ * <p>
+ * Журнал разбит на сегменты {@code wal-N.log}; запись — {@code int} длина, {@code int} CRC32 и тело:
+ * операция ({@code PUT} с итоговым значением или {@code DELETE}), ключ и сущность в формате {@link EntityCodec}.
+ * Записи содержат итоговое состояние ключа, поэтому повторное применение идемпотентно.
+ * Снимок {@code snapshot-N.bin} — заголовок и те же записи {@code PUT}; он покрывает все сегменты до N включительно.
+ * Восстановление: последний снимок и затем сегменты после него; оборванный хвост последнего сегмента обрезается.
+ * <p>
+ * Компактирование не трогает хранилище: новый снимок собирается из прежнего снимка и закрытых сегментов,
+ * поэтому не требует блокировок на пути записи.
+ * <p>
+ * Если запись пачки или fsync не удались, сегмент обрезается до конца последней целой пачки, а журнал
+ * переходит в состояние сбоя: новые записи и ожидание сохранности отклоняются до перезапуска,
+ * чтобы за оборванной пачкой в журнале ничего не оказалось.
+ */
+@Slf4j
+public class StoreJournal<K, T> implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int SNAPSHOT_MAGIC = 0x534E4150; // "SNAP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final Path dir;
+    private final EntityCodec<K, T> codec;
+    @Getter
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+    private ScheduledExecutorService scheduler;
+
+    // Писатели дописывают в память под appendLock, на диск буфер уходит под flushLock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final RecordEncoder encoder = new RecordEncoder();
+    private RecordBuffer pending = new RecordBuffer(1 << 16);
+    private RecordBuffer flushing = new RecordBuffer(1 << 16);
+    private long appendedSeq;
+    private volatile long writtenSeq;
+    private volatile long durableSeq;
+    // Первая ошибка записи на диск; после неё журнал только закрывается
+    private volatile IOException failure;
+
+    private FileChannel segment;
+    private long segmentId;
+    // Последняя запись, попавшая в уже закрытые сегменты на момент прошлого компактирования
+    private long compactedSeq;
+    @Getter
+    private long recoveredRecords;
+
+    public StoreJournal(Path dir, EntityCodec<K, T> codec, FsyncPolicy fsyncPolicy,
+                        Duration flushInterval, Duration snapshotInterval) {
+        this.dir = dir;
+        this.codec = codec;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Восстанавливает состояние и открывает новый сегмент для записи.
+     *
+     * @param restore получает итоговое значение ключа либо {@code null} для удалённого ключа
+     */
+    public void open(BiConsumer<K, T> restore) {
+        try {
+            Files.createDirectories(dir);
+            deleteTempFiles();
+            List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            long covered = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+            if (covered > 0) {
+                recoveredRecords += readSnapshot(covered, restore);
+            }
+            List<Long> tail = segments.stream().filter(id -> id > covered).toList();
+            for (int i = 0; i < tail.size(); i++) {
+                recoveredRecords += replaySegment(tail.get(i), restore, i == tail.size() - 1);
+            }
+            segmentId = Math.max(covered, segments.isEmpty() ? 0 : segments.get(segments.size() - 1)) + 1;
+            segment = openSegment(segmentId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилище из " + dir, e);
+        }
+        log.info("Журнал {} открыт: восстановлено записей {}, сегмент {}", dir, recoveredRecords, segmentId);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-journal-" + dir.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy != FsyncPolicy.GROUP) {
+            long period = flushInterval.toNanos();
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.NANOSECONDS);
+        }
+        long snapshotPeriod = snapshotInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, snapshotPeriod, snapshotPeriod, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Дописывает итоговое состояние ключа в буфер журнала. Вызывается под блокировкой ключа в хранилище,
+     * поэтому порядок записей одного ключа совпадает с порядком изменений.
+     *
+     * @param value новое значение или {@code null} при удалении
+     * @return номер записи для {@link #commit(long)}
+     */
+    public long append(K key, T value) {
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Журнал " + dir + " недоступен после ошибки записи", failure);
+            }
+            encoder.encode(key, value, pending);
+            return ++appendedSeq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закодировать запись журнала", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * При {@link FsyncPolicy#GROUP} ждёт fsync записи {@code seq}. Один fsync покрывает все записи,
+     * накопленные к его началу: пока лидер ждёт диск, следующие писатели собираются в новую пачку.
+     */
+    public void commit(long seq) {
+        if (fsyncPolicy == FsyncPolicy.GROUP && seq > durableSeq) {
+            flush(seq, true);
+        }
+    }
+
+    /**
+     * @return номер последней записи, подтверждённой fsync
+     */
+    public long durableSeq() {
+        return durableSeq;
+    }
+
+    /**
+     * Закрывает текущий сегмент и собирает из прежнего снимка и закрытых сегментов новый снимок.
+     */
+    public void compact() {
+        compactionLock.lock();
+        try {
+            long covered;
+            flushLock.lock();
+            try {
+                long appended = appendedSeq();
+                if (appended == compactedSeq) {
+                    return;
+                }
+                flushPending(true);
+                segment.close();
+                covered = segmentId;
+                segment = openSegment(++segmentId);
+                compactedSeq = appended;
+            } finally {
+                flushLock.unlock();
+            }
+            writeCompactedSnapshot(covered);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать снимок хранилища в " + dir, e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flushLock.lock();
+        try {
+            if (segment != null && segment.isOpen()) {
+                try {
+                    flushPending(true);
+                } finally {
+                    segment.close();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Не удалось закрыть журнал {}", dir, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flush(long target, boolean force) {
+        flushLock.lock();
+        try {
+            if ((force ? durableSeq : writtenSeq) >= target) {
+                return;
+            }
+            // Без этой проверки следующая пустая пачка подтвердила бы записи, потерянные при сбое
+            if (failure != null) {
+                throw new UncheckedIOException("Журнал " + dir + " недоступен после ошибки записи", failure);
+            }
+            flushPending(force);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать журнал " + dir, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Вызывается под flushLock
+    private void flushPending(boolean force) throws IOException {
+        if (failure != null) {
+            throw new IOException("Журнал " + dir + " недоступен после ошибки записи", failure);
+        }
+        long upTo;
+        appendLock.lock();
+        try {
+            RecordBuffer batch = pending;
+            pending = flushing;
+            flushing = batch;
+            upTo = appendedSeq;
+        } finally {
+            appendLock.unlock();
+        }
+        long goodPosition = segment.position();
+        try {
+            flushing.writeTo(segment);
+            writtenSeq = upTo;
+            if (force) {
+                segment.force(false);
+                durableSeq = upTo;
+            }
+        } catch (IOException e) {
+            fail(e, goodPosition);
+            throw e;
+        } finally {
+            flushing.reset();
+        }
+    }
+
+    /**
+     * Убирает из сегмента часть пачки, которая могла попасть на диск, и отклоняет дальнейшие записи.
+     * Если обрезать не удалось, оборванную запись отбросит восстановление: после неё ничего не пишется.
+     */
+    private void fail(IOException cause, long goodPosition) {
+        appendLock.lock();
+        try {
+            failure = cause;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            segment.truncate(goodPosition);
+            segment.force(false);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        log.error("Ошибка записи журнала {}, сегмент {} обрезан до {} байт, запись остановлена",
+                dir, segmentId, goodPosition, cause);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush(appendedSeq(), fsyncPolicy == FsyncPolicy.INTERVAL);
+        } catch (RuntimeException e) {
+            log.error("Ошибка фоновой записи журнала {}", dir, e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Ошибка компактирования журнала {}", dir, e);
+        }
+    }
+
+    private long appendedSeq() {
+        appendLock.lock();
+        try {
+            return appendedSeq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void writeCompactedSnapshot(long covered) throws IOException {
+        List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long previous = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        Map<K, T> state = new HashMap<>();
+        BiConsumer<K, T> apply = (key, value) -> {
+            if (value != null) {
+                state.put(key, value);
+            } else {
+                state.remove(key);
+            }
+        };
+        if (previous > 0) {
+            readSnapshot(previous, apply);
+        }
+        for (long id : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (id > previous && id <= covered) {
+                replaySegment(id, apply, false);
+            }
+        }
+
+        Path target = dir.resolve(SNAPSHOT_PREFIX + covered + SNAPSHOT_SUFFIX);
+        Path temp = dir.resolve(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE)
+                    .putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(covered).putInt(state.size()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            // Поток не закрывается отдельно: он закрыл бы канал до force
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            RecordEncoder snapshotEncoder = new RecordEncoder();
+            for (Map.Entry<K, T> entry : state.entrySet()) {
+                snapshotEncoder.encode(entry.getKey(), entry.getValue(), out);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long id : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (id <= covered) {
+                Files.deleteIfExists(dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+            }
+        }
+        for (long id : snapshots) {
+            Files.deleteIfExists(dir.resolve(SNAPSHOT_PREFIX + id + SNAPSHOT_SUFFIX));
+        }
+        log.info("Снимок {} записан: сущностей {}, покрыты сегменты до {}", dir, state.size(), covered);
+    }
+
+    private long readSnapshot(long id, BiConsumer<K, T> restore) throws IOException {
+        Path path = dir.resolve(SNAPSHOT_PREFIX + id + SNAPSHOT_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < SNAPSHOT_HEADER_SIZE || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt() != SNAPSHOT_VERSION || buffer.getLong() != id) {
+            throw new IllegalStateException("Повреждён заголовок снимка " + path);
+        }
+        int count = buffer.getInt();
+        long records = replay(buffer, restore);
+        if (records != count || buffer.hasRemaining()) {
+            throw new IllegalStateException("Снимок " + path + " неполный: " + records + " из " + count);
+        }
+        return records;
+    }
+
+    private long replaySegment(long id, BiConsumer<K, T> restore, boolean last) throws IOException {
+        Path path = dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        long records = replay(buffer, restore);
+        if (buffer.hasRemaining()) {
+            if (!last) {
+                throw new IllegalStateException("Повреждён сегмент журнала " + path + " на позиции " + buffer.position());
+            }
+            // Запись оборвалась при сбое: её писатель не получил подтверждения, хвост отбрасывается
+            log.warn("Сегмент {} обрезан до {} байт, отброшено {} байт оборванной записи",
+                    path, buffer.position(), buffer.remaining());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Применяет записи до конца буфера или до первой неполной либо повреждённой; позиция остаётся на ней.
+     */
+    private long replay(ByteBuffer buffer, BiConsumer<K, T> restore) throws IOException {
+        byte[] bytes = buffer.array();
+        CRC32 checksum = new CRC32();
+        long records = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            checksum.reset();
+            checksum.update(bytes, buffer.position(), length);
+            if ((int) checksum.getValue() != expectedCrc) {
+                buffer.position(start);
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, buffer.position(), length));
+            byte operation = in.readByte();
+            K key = codec.readKey(in);
+            restore.accept(key, operation == PUT ? codec.readValue(in) : null);
+            buffer.position(buffer.position() + length);
+            records++;
+        }
+        return records;
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return openChannel(dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Открывает новый сегмент; переопределяется в тестах сбоев диска.
+     */
+    protected FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Пропущен посторонний файл {}", file);
+                }
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private void deleteTempFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + TEMP_SUFFIX)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Кодирует запись с длиной и CRC32; не потокобезопасен, у каждого пишущего свой экземпляр.
+     */
+    private final class RecordEncoder {
+        private final RecordBuffer body = new RecordBuffer(256);
+        private final DataOutputStream bodyOut = new DataOutputStream(body);
+        private final CRC32 crc = new CRC32();
+
+        void encode(K key, T value, OutputStream target) throws IOException {
+            body.reset();
+            bodyOut.writeByte(value == null ? DELETE : PUT);
+            codec.writeKey(bodyOut, key);
+            if (value != null) {
+                codec.writeValue(bodyOut, value);
+            }
+            crc.reset();
+            crc.update(body.array(), 0, body.size());
+            writeInt(target, body.size());
+            writeInt(target, (int) crc.getValue());
+            body.writeTo(target);
+        }
+
+        private static void writeInt(OutputStream target, int value) throws IOException {
+            target.write(value >>> 24);
+            target.write(value >>> 16);
+            target.write(value >>> 8);
+            target.write(value);
+        }
+    }
+
+    /**
+     * Буфер записей, отдающий содержимое в канал без копирования.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void writeTo(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
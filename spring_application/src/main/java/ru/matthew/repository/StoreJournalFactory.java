@@ -0,0 +1,34 @@
+package ru.matthew.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Создаёт журналы хранилищ, если включено сохранение на диск ({@code store.persistence.enabled}).
+ */
+@Component
+@ConditionalOnProperty(name = "store.persistence.enabled", havingValue = "true")
+public class StoreJournalFactory {
+    private final Path dir;
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+
+    public StoreJournalFactory(@Value("${store.persistence.dir:data/store}") String dir,
+                               @Value("${store.persistence.fsync:GROUP}") FsyncPolicy fsyncPolicy,
+                               @Value("${store.persistence.fsync-interval:PT0.1S}") Duration flushInterval,
+                               @Value("${store.persistence.snapshot-interval:PT5M}") Duration snapshotInterval) {
+        this.dir = Path.of(dir);
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public <K, T> StoreJournal<K, T> create(String name, EntityCodec<K, T> codec) {
+        return new StoreJournal<>(dir.resolve(name), codec, fsyncPolicy, flushInterval, snapshotInterval);
+    }
+}
@@ -0,0 +1,9 @@
+package ru.matthew.repository;
+
+/**
+ * Значение из {@link InMemoryStore} с версией последнего изменения.
+ * Версии берутся из общего для хранилища счётчика, поэтому ключ, удалённый и созданный заново,
+ * не получает прежнюю версию и устаревший {@code compareAndSet} не пройдёт (нет ABA).
+ */
+public record Versioned<T>(T value, long version) {
+}
@@ -0,0 +1,277 @@
+package ru.matthew.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.matthew.repository.ChangeBatch;
+import ru.matthew.repository.ChangeFeed;
+import ru.matthew.repository.StoreChange;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Отдача ленты изменений хранилища подписчикам как Server-Sent Events. Общий поток только читает ленту
+ * с курсора каждого подписчика в его ограниченную очередь и никогда не пишет в соединение; отправкой
+ * очереди занимается отдельная задача подписчика. Зависший клиент держит только свою задачу отправки,
+ * не задерживая ни запись в хранилище, ни других подписчиков.
+ * <p>
+ * Идентификатор события - {@code <эпоха>-<номер>}; браузер сам передаёт последний из них в {@code Last-Event-ID}
+ * при переподключении. Если продолжить с него нельзя (изменения вытеснены из ленты или приложение перезапущено)
+ * или очередь подписчика переполнилась, подписчик получает событие {@code resync} с текущим идентификатором
+ * и поток закрывается: клиент заново загружает данные целиком и подписывается с этого идентификатора.
+ * <p>
+ * Отправка, не завершившаяся за {@code send-timeout}, означает, что клиент не читает: его очередь сбрасывается,
+ * и соединение закрывается с ошибкой, ничего больше не отправляя. Закрыть {@link SseEmitter} можно только
+ * между отправками, поэтому поток отправки освобождается, когда зависшую запись оборвёт таймаут записи
+ * контейнера ({@code server.tomcat.connection-timeout}). Потоков отправки не больше {@code sender-threads}:
+ * столько клиентов могут висеть одновременно, не задерживая остальных.
+ */
+@Service
+@Slf4j
+public class ChangeStreamService implements AutoCloseable {
+    public static final String RESYNC_EVENT = "resync";
+
+    private static final int BATCH_SIZE = 256;
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    // Отправка не идёт; System.nanoTime() не возвращает это значение на практике
+    private static final long NOT_SENDING = Long.MIN_VALUE;
+
+    private final Duration pollInterval;
+    private final Duration emitterTimeout;
+    private final Duration sendTimeout;
+    private final int queueCapacity;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor senders;
+
+    public ChangeStreamService(@Value("${store.change-feed.poll-interval:PT0.1S}") Duration pollInterval,
+                               @Value("${store.change-feed.emitter-timeout:PT30M}") Duration emitterTimeout,
+                               @Value("${store.change-feed.send-timeout:PT5S}") Duration sendTimeout,
+                               @Value("${store.change-feed.subscriber-queue:1024}") int queueCapacity,
+                               @Value("${store.change-feed.sender-threads:64}") int senderThreads) {
+        this.pollInterval = pollInterval;
+        this.emitterTimeout = emitterTimeout;
+        this.sendTimeout = sendTimeout;
+        this.queueCapacity = queueCapacity;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("change-stream-poll-"));
+        // У подписчика не больше одной задачи отправки, поэтому очередь задач не длиннее списка подписчиков;
+        // простаивающие потоки не держатся
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("change-stream-send-"));
+        this.senders.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param lastEventId идентификатор последнего полученного события; без него отдаются только новые изменения
+     */
+    public <K, T> SseEmitter subscribe(ChangeFeed<K, T> feed, String lastEventId) {
+        return subscribe(feed, lastEventId, new SseEmitter(emitterTimeout.toMillis()));
+    }
+
+    /**
+     * @param emitter поток событий, в который отправлять изменения
+     */
+    public <K, T> SseEmitter subscribe(ChangeFeed<K, T> feed, String lastEventId, SseEmitter emitter) {
+        Subscription<K, T> subscription = new Subscription<>(feed, emitter, cursor(feed, lastEventId));
+        subscription.task = scheduler.scheduleWithFixedDelay(
+                subscription::poll, 0, pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    static String eventId(ChangeFeed<?, ?> feed, long sequence) {
+        return feed.epoch() + "-" + sequence;
+    }
+
+    /**
+     * @return номер, после которого продолжить, или {@code -1}, если продолжить нельзя
+     */
+    private static long cursor(ChangeFeed<?, ?> feed, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return feed.lastSequence();
+        }
+        String prefix = feed.epoch() + "-";
+        if (!lastEventId.startsWith(prefix)) {
+            log.debug("Идентификатор {} из другой эпохи ленты, нужна пересинхронизация", lastEventId);
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Subscription<K, T> {
+        private final ChangeFeed<K, T> feed;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // Причина, по которой поток нужно закрыть с ошибкой, не отправляя ничего больше
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Курсор и время последней постановки в очередь меняет только poll
+        private long cursor;
+        private long lastQueuedNanos = System.nanoTime();
+        private volatile long sendStartedNanos = NOT_SENDING;
+        // После закрытия очередь больше не пополняется; последним в ней может стоять resync
+        private volatile boolean closed;
+        private volatile ScheduledFuture<?> task;
+
+        Subscription(ChangeFeed<K, T> feed, SseEmitter emitter, long cursor) {
+            this.feed = feed;
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        // Задачи одного подписчика с фиксированной задержкой не пересекаются
+        void poll() {
+            try {
+                if (closed) {
+                    return;
+                }
+                long started = sendStartedNanos;
+                if (started != NOT_SENDING && System.nanoTime() - started > sendTimeout.toNanos()) {
+                    log.info("Отправка подписчику ленты изменений не завершилась за {}, соединение закрывается",
+                            sendTimeout);
+                    abort(new TimeoutException("Отправка не завершилась за " + sendTimeout));
+                    return;
+                }
+                ChangeBatch<K, T> batch;
+                do {
+                    batch = feed.readAfter(cursor, BATCH_SIZE);
+                    if (batch.resyncRequired()) {
+                        log.info("Подписчик ленты изменений отстал (курсор {}, последний номер {}), требуется пересинхронизация",
+                                cursor, batch.lastSequence());
+                        resync(batch.lastSequence());
+                        return;
+                    }
+                    for (StoreChange<K, T> change : batch.changes()) {
+                        if (!queue.offer(SseEmitter.event()
+                                .id(eventId(feed, change.sequence()))
+                                .name(change.type().name().toLowerCase(Locale.ROOT))
+                                .data(change, MediaType.APPLICATION_JSON))) {
+                            log.info("Очередь подписчика ленты изменений переполнена ({} событий), требуется пересинхронизация",
+                                    queueCapacity);
+                            resync(feed.lastSequence());
+                            return;
+                        }
+                        cursor = change.sequence();
+                        lastQueuedNanos = System.nanoTime();
+                    }
+                } while (batch.changes().size() == BATCH_SIZE);
+                if (System.nanoTime() - lastQueuedNanos > HEARTBEAT_INTERVAL.toNanos()) {
+                    // Комментарий не виден клиенту, но обрывает подписку, если соединение уже закрыто
+                    queue.offer(SseEmitter.event().comment("heartbeat"));
+                    lastQueuedNanos = System.nanoTime();
+                }
+                dispatch();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при чтении ленты изменений", e);
+                abort(e);
+            }
+        }
+
+        void cancel() {
+            closed = true;
+            ScheduledFuture<?> current = task;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        /**
+         * Заменяет неотправленные события одним resync и перестаёт читать ленту; поток закроет задача отправки.
+         */
+        private void resync(long lastSequence) {
+            queue.clear();
+            String id = eventId(feed, lastSequence);
+            queue.offer(SseEmitter.event().id(id).name(RESYNC_EVENT).data(id));
+            cancel();
+            dispatch();
+        }
+
+        /**
+         * Сбрасывает очередь и перестаёт читать ленту; задача отправки закроет поток с ошибкой,
+         * как только текущая отправка, если она есть, вернёт управление.
+         */
+        private void abort(Throwable cause) {
+            failure.set(cause);
+            cancel();
+            queue.clear();
+            dispatch();
+        }
+
+        private void dispatch() {
+            if ((!queue.isEmpty() || failure.get() != null) && sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                while (true) {
+                    Throwable cause = failure.getAndSet(null);
+                    if (cause != null) {
+                        emitter.completeWithError(cause);
+                        break;
+                    }
+                    // Закрытие читается до очереди: resync ставится в неё раньше, чем подписка закрывается
+                    boolean last = closed;
+                    SseEmitter.SseEventBuilder event = queue.poll();
+                    if (event == null) {
+                        if (last) {
+                            emitter.complete();
+                        }
+                        break;
+                    }
+                    sendStartedNanos = System.nanoTime();
+                    emitter.send(event);
+                    sendStartedNanos = NOT_SENDING;
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Подписчик ленты изменений отключился: {}", e.getMessage());
+                cancel();
+                queue.clear();
+                emitter.completeWithError(e);
+            } finally {
+                sendStartedNanos = NOT_SENDING;
+                sending.set(false);
+            }
+            // Событие могло встать в очередь между последним poll и снятием флага
+            dispatch();
+        }
+    }
+}
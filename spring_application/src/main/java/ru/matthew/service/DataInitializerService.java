@@ -2,14 +2,20 @@ package ru.matthew.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import ru.matthew.aop.Timed;
 import ru.matthew.model.Location;
 import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.InMemoryStore;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
@@ -18,40 +24,75 @@ public class DataInitializerService {
     private final ExternalDataLoaderService externalDataLoaderService;
     private final LocationService locationService;
     private final PlaceCategoryService placeCategoryService;
+    private final InMemoryStore<String, Location> locationStore;
+    private final InMemoryStore<Integer, PlaceCategory> placeCategoryStore;
+    private final Executor executor;
 
     @Autowired
     public DataInitializerService(ExternalDataLoaderService externalDataLoaderService,
                                   LocationService locationService,
-                                  PlaceCategoryService placeCategoryService) {
+                                  PlaceCategoryService placeCategoryService,
+                                  InMemoryStore<String, Location> locationStore,
+                                  InMemoryStore<Integer, PlaceCategory> placeCategoryStore,
+                                  @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                                  Executor executor) {
         this.externalDataLoaderService = externalDataLoaderService;
         this.locationService = locationService;
         this.placeCategoryService = placeCategoryService;
+        this.locationStore = locationStore;
+        this.placeCategoryStore = placeCategoryStore;
+        this.executor = executor;
     }
 
+    /**
+     * Загрузка выполняется до {@code ApplicationReadyEvent}, поэтому состояние готовности
+     * ({@code /actuator/health/readiness}) становится ACCEPTING_TRAFFIC только после её завершения.
+     * Запросы к KudaGo идут одновременно, ошибка одного не отменяет другой.
+     */
     @Timed
-    @EventListener(ContextRefreshedEvent.class)
+    @EventListener(ApplicationStartedEvent.class)
     public void init() {
         log.info("Начало инициализации данных");
+        long start = System.nanoTime();
 
-        try {
-            initCategories();
-            initLocations();
-        } catch (Exception e) {
-            log.error("Ошибка при инициализации данных", e);
-        }
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(this::initCategories, executor)
+                        .exceptionally(e -> logFailure("категорий", e)),
+                CompletableFuture.runAsync(this::initLocations, executor)
+                        .exceptionally(e -> logFailure("городов", e))
+        ).join();
 
-        log.info("Инициализация данных завершена");
+        log.info("Инициализация данных завершена за {} мс", Duration.ofNanos(System.nanoTime() - start).toMillis());
     }
 
+    // Восстановленные из журнала данные уже содержат и загрузку KudaGo, и изменения пользователей.
+    // Ресурсы потока замеряются здесь, а не в init: загрузка идёт в потоках executor (только timed.mode=agent)
+    @Timed(allocations = true, cpu = true)
     private void initCategories() {
-        List<PlaceCategory> placeCategories = externalDataLoaderService.fetchCategoriesFromApi();
-        placeCategories.forEach(placeCategoryService::createPlaceCategory);
-        log.info("Загружено категорий: {}", placeCategories.size());
+        if (placeCategoryStore.isRecovered()) {
+            log.info("Категории восстановлены с диска, загрузка из API пропущена");
+            return;
+        }
+        AtomicInteger created = new AtomicInteger();
+        int parsed = externalDataLoaderService.loadCategories(
+                batch -> created.addAndGet(placeCategoryService.createPlaceCategories(batch)));
+        log.info("Загружено категорий: {} из {}", created.get(), parsed);
     }
 
+    @Timed(allocations = true, cpu = true)
     private void initLocations() {
-        List<Location> locations = externalDataLoaderService.fetchLocationsFromApi();
-        locations.forEach(locationService::createLocation);
-        log.info("Загружено городов: {}", locations.size());
+        if (locationStore.isRecovered()) {
+            log.info("Города восстановлены с диска, загрузка из API пропущена");
+            return;
+        }
+        AtomicInteger created = new AtomicInteger();
+        int parsed = externalDataLoaderService.loadLocations(
+                batch -> created.addAndGet(locationService.createLocations(batch)));
+        log.info("Загружено городов: {} из {}", created.get(), parsed);
+    }
+
+    private Void logFailure(String what, Throwable e) {
+        log.error("Ошибка при загрузке {}", what, e);
+        return null;
     }
 }
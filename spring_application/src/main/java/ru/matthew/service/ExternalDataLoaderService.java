@@ -1,42 +1,171 @@
 package ru.matthew.service;
 
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 import ru.matthew.model.Location;
 import ru.matthew.model.PlaceCategory;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
+/**
+ * Потоковая загрузка справочников KudaGo: ответ разбирается по токенам, и сущности передаются
+ * в приёмник пачками по мере разбора, без сборки всего ответа в памяти. Поддерживаются и простой массив,
+ * и постраничный ответ {@code {"next": ..., "results": [...]}}: следующая страница запрашивается,
+ * как только разобрана ссылка на неё, и скачивается, пока обрабатывается текущая.
+ */
 @Service
 @Slf4j
-@NoArgsConstructor
 public class ExternalDataLoaderService {
+    static final int BATCH_SIZE = 512;
 
-    public List<Location> fetchLocationsFromApi() {
-        String url = "https://kudago.com/public-api/v1.4/locations/";
-        return fetchFromApi(url, Location[].class);
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+    private final String locationsUrl;
+    private final String categoriesUrl;
+
+    public ExternalDataLoaderService(HttpClient kudaGoHttpClient,
+                                     ObjectMapper objectMapper,
+                                     @Value("${kudago.read-timeout:PT30S}") Duration readTimeout,
+                                     @Value("${locations-url}") String locationsUrl,
+                                     @Value("${categories-url}") String categoriesUrl) {
+        this.httpClient = kudaGoHttpClient;
+        this.objectMapper = objectMapper;
+        this.readTimeout = readTimeout;
+        this.locationsUrl = locationsUrl;
+        this.categoriesUrl = categoriesUrl;
+    }
+
+    /**
+     * @return число разобранных локаций
+     */
+    public int loadLocations(Consumer<List<Location>> sink) {
+        return load(locationsUrl, Location.class, sink);
     }
 
-    public List<PlaceCategory> fetchCategoriesFromApi() {
-        String url = "https://kudago.com/public-api/v1.4/place-categories/";
-        return fetchFromApi(url, PlaceCategory[].class);
+    /**
+     * @return число разобранных категорий
+     */
+    public int loadCategories(Consumer<List<PlaceCategory>> sink) {
+        return load(categoriesUrl, PlaceCategory.class, sink);
+    }
+
+    private <T> int load(String url, Class<T> type, Consumer<List<T>> sink) {
+        ObjectReader reader = objectMapper.readerFor(type);
+        int total = 0;
+        CompletableFuture<HttpResponse<InputStream>> page = request(url);
+        while (page != null) {
+            HttpResponse<InputStream> response = await(page);
+            PageResult result = readPage(response, reader, sink);
+            total += result.entities();
+            page = result.next();
+        }
+        return total;
     }
 
-    private <T> List<T> fetchFromApi(String urlString, Class<T[]> clazz) {
-        RestTemplate restTemplate = new RestTemplate();
+    private <T> PageResult readPage(HttpResponse<InputStream> response, ObjectReader reader, Consumer<List<T>> sink) {
+        CompletableFuture<HttpResponse<InputStream>> next = null;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                log.error("Ошибка при запросе к API: {}. {}", response.statusCode(), response.uri());
+                return new PageResult(0, null);
+            }
+            int entities = 0;
+            try (JsonParser parser = objectMapper.createParser(body)) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    entities = readArray(parser, reader, sink);
+                } else if (token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if ("next".equals(field) && value == JsonToken.VALUE_STRING) {
+                            next = request(parser.getText());
+                        } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                            entities = readArray(parser, reader, sink);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    throw new IOException("Неожиданный ответ " + response.uri() + ": " + token);
+                }
+            }
+            return new PageResult(entities, next);
+        } catch (IOException | RuntimeException e) {
+            if (next != null) {
+                // Уже запрошенная следующая страница не нужна: закрываем её тело, чтобы освободить соединение
+                next.thenAccept(ExternalDataLoaderService::discard);
+            }
+            if (e instanceof IOException ioException) {
+                throw new UncheckedIOException("Ошибка чтения ответа " + response.uri(), ioException);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private <T> int readArray(JsonParser parser, ObjectReader reader, Consumer<List<T>> sink) throws IOException {
+        int entities = 0;
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            batch.add(reader.readValue(parser));
+            entities++;
+            if (batch.size() == BATCH_SIZE) {
+                sink.accept(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+        return entities;
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> request(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException("Ошибка при запросе к API", cause);
+            }
+            throw e;
+        }
+    }
+
+    private static void discard(HttpResponse<InputStream> response) {
         try {
-            ResponseEntity<T[]> response = restTemplate.getForEntity(urlString, clazz);
-            T[] resultArray = response.getBody();
-            return resultArray != null ? Arrays.asList(resultArray) : Collections.emptyList();
-        } catch (HttpClientErrorException e) {
-            log.error("Ошибка при запросе к API: {}. {}", e.getStatusCode(), e.getMessage());
-            return Collections.emptyList();
+            response.body().close();
+        } catch (IOException e) {
+            log.debug("Не удалось закрыть ответ {}", response.uri(), e);
         }
     }
+
+    private record PageResult(int entities, CompletableFuture<HttpResponse<InputStream>> next) {
+    }
 }
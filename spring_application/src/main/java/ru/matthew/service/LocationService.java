@@ -2,18 +2,29 @@ package ru.matthew.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import ru.matthew.configuration.DataSourceConfig;
+import ru.matthew.dto.CursorPageDTO;
 import ru.matthew.exception.ElementAlreadyExistsException;
 import ru.matthew.exception.ElementWasNotFoundException;
+import ru.matthew.exception.FeatureDisabledException;
+import ru.matthew.exception.VersionConflictException;
 import ru.matthew.model.Location;
+import ru.matthew.repository.ChangeFeed;
 import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.Versioned;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LocationService {
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final InMemoryStore<String, Location> locationStore;
 
     public Collection<Location> getAllLocations() {
@@ -25,8 +36,82 @@ public class LocationService {
         return locationStore.getAll();
     }
 
+    /**
+     * Версия содержимого хранилища локаций, меняется при любом изменении.
+     */
+    public long getLocationsVersion() {
+        return locationStore.modificationVersion();
+    }
+
+    /**
+     * Лента изменений локаций для подписки на создание, замену и удаление.
+     */
+    public ChangeFeed<String, Location> getLocationChanges() {
+        return locationStore.changeFeed();
+    }
+
+    /**
+     * Страница по возрастанию ключа после курсора {@code after}.
+     */
+    public CursorPageDTO<String, Location> getLocationsPage(String after, int limit) {
+        validateLimit(limit);
+
+        List<Location> items = locationStore.page(after, limit);
+        String nextCursor = null;
+        if (items.size() == limit) {
+            String lastKey = items.get(items.size() - 1).getKey();
+            nextCursor = locationStore.hasAfter(lastKey) ? lastKey : null;
+        }
+        return new CursorPageDTO<>(items, nextCursor);
+    }
+
+    /**
+     * Ленивый обход по возрастанию ключа для потоковой отдачи без сборки всей коллекции в памяти.
+     */
+    public Stream<Location> streamLocations(String after, Integer limit) {
+        if (limit == null) {
+            return locationStore.stream(after);
+        }
+        validateLimit(limit);
+        return locationStore.stream(after).limit(limit);
+    }
+
+    private static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            log.warn("Ошибка постраничного обхода локаций: недопустимый limit {}", limit);
+            throw new IllegalArgumentException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Поиск по вторичным индексам: {@code q} - точное название без учёта регистра,
+     * {@code prefix} - начало названия. Если заданы оба параметра, должны выполняться оба условия.
+     */
+    public List<Location> searchLocations(String q, String prefix) {
+        if ((q != null && StringUtils.isBlank(q)) || (prefix != null && prefix.isEmpty())) {
+            log.warn("Ошибка поиска локаций: пустой параметр поиска (q: {}, prefix: {})", q, prefix);
+            throw new IllegalArgumentException("Параметры поиска не могут быть пустыми");
+        }
+        if (!locationStore.hasIndex(DataSourceConfig.NAME_INDEX)) {
+            throw new FeatureDisabledException("Поиск локаций выключен: хранилище без вторичных индексов");
+        }
+
+        List<Location> locations = q != null
+                ? locationStore.findBy(DataSourceConfig.NAME_INDEX, DataSourceConfig.normalizeName(q))
+                : locationStore.findBy(DataSourceConfig.LOCATION_NAME_PREFIX_INDEX, prefix);
+        if (q != null && prefix != null) {
+            locations.removeIf(location -> !StringUtils.startsWithIgnoreCase(location.getName(), prefix));
+        }
+        log.debug("Поиск локаций (q: {}, prefix: {}): найдено {}", q, prefix, locations.size());
+        return locations;
+    }
+
     public Location getLocationBySlug(String slug) {
-        return locationStore.get(slug)
+        return getVersionedLocationBySlug(slug).value();
+    }
+
+    public Versioned<Location> getVersionedLocationBySlug(String slug) {
+        return locationStore.getVersioned(slug)
                 .orElseThrow(() -> {
                     log.warn("Ошибка поиска локации: локация с slug {} не найдена", slug);
                     return new ElementWasNotFoundException("Локация с таким slug не найдена");
@@ -34,42 +119,71 @@ public class LocationService {
     }
 
     public void createLocation(Location location) {
-        if (location.getName() == null ||
-                location.getName().isEmpty() ||
-                location.getSlug() == null ||
-                location.getSlug().isEmpty()) {
+        if (!hasRequiredFields(location)) {
             log.error("Ошибка создания локации: обязательные поля отсутствуют (Name: {}, Slug: {})",
                     location.getName(), location.getSlug());
             throw new IllegalArgumentException("Название и slug обязательны");
         }
-        if (locationStore.get(location.getSlug()).isPresent()) {
+        if (!locationStore.putIfAbsent(location)) {
             log.warn("Ошибка создания локации: локация с slug {} уже существует", location.getSlug());
             throw new ElementAlreadyExistsException("Локация с таким slug уже существует");
         }
+    }
 
-        locationStore.save(location);
+    /**
+     * Массовое создание при загрузке: некорректные и уже существующие локации пропускаются с предупреждением.
+     *
+     * @return число созданных локаций
+     */
+    public int createLocations(Collection<Location> locations) {
+        List<Location> valid = locations.stream().filter(LocationService::hasRequiredFields).toList();
+        if (valid.size() < locations.size()) {
+            log.warn("Пропущено локаций без названия или slug: {}", locations.size() - valid.size());
+        }
+        List<Location> rejected = locationStore.saveAll(valid);
+        if (!rejected.isEmpty()) {
+            log.warn("Пропущено локаций с уже существующим slug: {}", rejected.size());
+        }
+        return valid.size() - rejected.size();
     }
 
     public void updateLocation(String slug, Location location) {
+        updateLocation(slug, location, null);
+    }
+
+    /**
+     * @param expectedVersion версия, которую видел клиент; {@code null} - заменить любую текущую
+     */
+    public void updateLocation(String slug, Location location, Long expectedVersion) {
         if (location.getName() == null) {
             log.error("Ошибка обновления локации: имя отсутствует");
             throw new IllegalArgumentException("Название обязательно");
         }
-        if (locationStore.get(slug).isEmpty()) {
-            log.warn("Ошибка обновления локации: локации с slug {} не существует", slug);
-            throw new ElementWasNotFoundException("Локация с таким slug не найдена");
-        }
 
         location.setSlug(slug);
-        locationStore.update(location);
+        boolean updated = expectedVersion == null
+                ? locationStore.replaceIfPresent(location)
+                : locationStore.compareAndSet(location, expectedVersion);
+        if (updated) {
+            return;
+        }
+        // Причину отказа уточняем отдельным чтением: на результат записи оно уже не влияет
+        if (expectedVersion != null && locationStore.get(slug).isPresent()) {
+            log.warn("Ошибка обновления локации: версия {} локации с slug {} устарела", expectedVersion, slug);
+            throw new VersionConflictException("Локация была изменена другим запросом");
+        }
+        log.warn("Ошибка обновления локации: локации с slug {} не существует", slug);
+        throw new ElementWasNotFoundException("Локация с таким slug не найдена");
     }
 
     public void deleteLocation(String slug) {
-        if (locationStore.get(slug).isEmpty()) {
+        if (!locationStore.delete(slug)) {
             log.warn("Ошибка удаления локации: локация с slug {} не найдена", slug);
             throw new ElementWasNotFoundException("Локация с таким slug не найдена");
         }
+    }
 
-        locationStore.delete(slug);
+    private static boolean hasRequiredFields(Location location) {
+        return StringUtils.isNotEmpty(location.getName()) && StringUtils.isNotEmpty(location.getSlug());
     }
 }
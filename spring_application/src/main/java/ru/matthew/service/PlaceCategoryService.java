@@ -4,17 +4,29 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import ru.matthew.configuration.DataSourceConfig;
+import ru.matthew.dto.CursorPageDTO;
 import ru.matthew.exception.ElementAlreadyExistsException;
 import ru.matthew.exception.ElementWasNotFoundException;
+import ru.matthew.exception.FeatureDisabledException;
+import ru.matthew.exception.VersionConflictException;
 import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.ChangeFeed;
 import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.IntKeyedStore;
+import ru.matthew.repository.Versioned;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class PlaceCategoryService {
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final InMemoryStore<Integer, PlaceCategory> placeCategoryStore;
 
     public Collection<PlaceCategory> getAllPlaceCategories() {
@@ -26,8 +38,86 @@ public class PlaceCategoryService {
         return placeCategoryStore.getAll();
     }
 
+    /**
+     * Версия содержимого хранилища категорий мест, меняется при любом изменении.
+     */
+    public long getPlaceCategoriesVersion() {
+        return placeCategoryStore.modificationVersion();
+    }
+
+    /**
+     * Лента изменений категорий мест для подписки на создание, замену и удаление.
+     */
+    public ChangeFeed<Integer, PlaceCategory> getPlaceCategoryChanges() {
+        return placeCategoryStore.changeFeed();
+    }
+
+    /**
+     * Страница по возрастанию ключа после курсора {@code after}.
+     */
+    public CursorPageDTO<Integer, PlaceCategory> getPlaceCategoriesPage(Integer after, int limit) {
+        validateLimit(limit);
+
+        List<PlaceCategory> items = placeCategoryStore.page(after, limit);
+        Integer nextCursor = null;
+        if (items.size() == limit) {
+            Integer lastKey = items.get(items.size() - 1).getKey();
+            nextCursor = placeCategoryStore.hasAfter(lastKey) ? lastKey : null;
+        }
+        return new CursorPageDTO<>(items, nextCursor);
+    }
+
+    /**
+     * Ленивый обход по возрастанию ключа для потоковой отдачи без сборки всей коллекции в памяти.
+     */
+    public Stream<PlaceCategory> streamPlaceCategories(Integer after, Integer limit) {
+        if (limit == null) {
+            return placeCategoryStore.stream(after);
+        }
+        validateLimit(limit);
+        return placeCategoryStore.stream(after).limit(limit);
+    }
+
+    private static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            log.warn("Ошибка постраничного обхода категорий мест: недопустимый limit {}", limit);
+            throw new IllegalArgumentException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Поиск по вторичным индексам: {@code q} - точное название без учёта регистра,
+     * {@code prefix} - начало slug. Если заданы оба параметра, должны выполняться оба условия.
+     */
+    public List<PlaceCategory> searchPlaceCategories(String q, String prefix) {
+        if ((q != null && StringUtils.isBlank(q)) || (prefix != null && prefix.isEmpty())) {
+            log.warn("Ошибка поиска категорий мест: пустой параметр поиска (q: {}, prefix: {})", q, prefix);
+            throw new IllegalArgumentException("Параметры поиска не могут быть пустыми");
+        }
+        if (!placeCategoryStore.hasIndex(DataSourceConfig.NAME_INDEX)) {
+            throw new FeatureDisabledException("Поиск категорий мест выключен: хранилище без вторичных индексов");
+        }
+
+        List<PlaceCategory> categories = q != null
+                ? placeCategoryStore.findBy(DataSourceConfig.NAME_INDEX, DataSourceConfig.normalizeName(q))
+                : placeCategoryStore.findBy(DataSourceConfig.PLACE_CATEGORY_SLUG_PREFIX_INDEX, prefix);
+        if (q != null && prefix != null) {
+            categories.removeIf(category -> !StringUtils.startsWithIgnoreCase(category.getSlug(), prefix));
+        }
+        log.debug("Поиск категорий мест (q: {}, prefix: {}): найдено {}", q, prefix, categories.size());
+        return categories;
+    }
+
     public PlaceCategory getPlaceCategoryById(int id) {
-        return placeCategoryStore.get(id)
+        return getVersionedPlaceCategoryById(id).value();
+    }
+
+    public Versioned<PlaceCategory> getVersionedPlaceCategoryById(int id) {
+        // Хранилище с int-ключом ищет по примитиву, без упаковки id
+        Optional<Versioned<PlaceCategory>> category = placeCategoryStore instanceof IntKeyedStore<PlaceCategory> intKeyed
+                ? intKeyed.getVersioned(id)
+                : placeCategoryStore.getVersioned(id);
+        return category
                 .orElseThrow(() -> {
                     log.warn("Ошибка поиска категории локаций: категория с id {} не найдена", id);
                     return new ElementWasNotFoundException("Категория с таким id не найдена");
@@ -35,39 +125,79 @@ public class PlaceCategoryService {
     }
 
     public void createPlaceCategory(PlaceCategory placeCategory) {
-        if (StringUtils.isBlank(placeCategory.getName()) || StringUtils.isBlank(placeCategory.getSlug()) ||
-                placeCategory.getId() == 0) {
+        if (!hasRequiredFields(placeCategory)) {
             log.error("Ошибка создания категории места: обязательные поля отсутствуют (id, name или slug)");
             throw new IllegalArgumentException("Поля id, name и slug обязательны");
         }
-        if (placeCategoryStore.get(placeCategory.getId()).isPresent()) {
+        if (!placeCategoryStore.putIfAbsent(placeCategory)) {
             log.warn("Ошибка создания категории места: категория с id {} уже существует", placeCategory.getId());
             throw new ElementAlreadyExistsException("Категория с таким id уже существует");
         }
+    }
 
-        placeCategoryStore.save(placeCategory);
+    /**
+     * Массовое создание при загрузке: некорректные и уже существующие категории пропускаются с предупреждением.
+     *
+     * @return число созданных категорий
+     */
+    public int createPlaceCategories(Collection<PlaceCategory> placeCategories) {
+        List<PlaceCategory> valid = placeCategories.stream().filter(PlaceCategoryService::hasRequiredFields).toList();
+        if (valid.size() < placeCategories.size()) {
+            log.warn("Пропущено категорий мест без id, name или slug: {}", placeCategories.size() - valid.size());
+        }
+        List<PlaceCategory> rejected = placeCategoryStore.saveAll(valid);
+        if (!rejected.isEmpty()) {
+            log.warn("Пропущено категорий мест с уже существующим id: {}", rejected.size());
+        }
+        return valid.size() - rejected.size();
     }
 
     public void updatePlaceCategory(int id, PlaceCategory placeCategory) {
-        if (placeCategoryStore.get(id).isEmpty()) {
-            log.warn("Ошибка обновления категории места: категория с id {} не найдена", id);
-            throw new ElementWasNotFoundException("Категория с таким id не найдена");
-        }
+        updatePlaceCategory(id, placeCategory, null);
+    }
+
+    /**
+     * @param expectedVersion версия, которую видел клиент; {@code null} - заменить любую текущую
+     */
+    public void updatePlaceCategory(int id, PlaceCategory placeCategory, Long expectedVersion) {
         if (placeCategory.getName() == null || placeCategory.getSlug() == null) {
+            // Для несуществующей категории сообщаем об отсутствии, а не об ошибке в теле запроса
+            if (placeCategoryStore.get(id).isEmpty()) {
+                throw notFoundOnUpdate(id);
+            }
             log.error("Ошибка обновления категории места: name или slug отсутствуют");
             throw new IllegalArgumentException("Поле name или slug обязательно");
         }
 
         placeCategory.setId(id);
-        placeCategoryStore.update(placeCategory);
+        boolean updated = expectedVersion == null
+                ? placeCategoryStore.replaceIfPresent(placeCategory)
+                : placeCategoryStore.compareAndSet(placeCategory, expectedVersion);
+        if (updated) {
+            return;
+        }
+        // Причину отказа уточняем отдельным чтением: на результат записи оно уже не влияет
+        if (expectedVersion != null && placeCategoryStore.get(id).isPresent()) {
+            log.warn("Ошибка обновления категории места: версия {} категории с id {} устарела", expectedVersion, id);
+            throw new VersionConflictException("Категория была изменена другим запросом");
+        }
+        throw notFoundOnUpdate(id);
     }
 
     public void deletePlaceCategory(int id) {
-        if (placeCategoryStore.get(id).isEmpty()) {
+        if (!placeCategoryStore.delete(id)) {
             log.warn("Ошибка удаления категории места: категория с id {} не найдена", id);
             throw new ElementWasNotFoundException("Локация с таким slug не найдена.");
         }
+    }
+
+    private static ElementWasNotFoundException notFoundOnUpdate(int id) {
+        log.warn("Ошибка обновления категории места: категория с id {} не найдена", id);
+        return new ElementWasNotFoundException("Категория с таким id не найдена");
+    }
 
-        placeCategoryStore.delete(id);
+    private static boolean hasRequiredFields(PlaceCategory placeCategory) {
+        return StringUtils.isNotBlank(placeCategory.getName()) && StringUtils.isNotBlank(placeCategory.getSlug())
+                && placeCategory.getId() != 0;
     }
 }
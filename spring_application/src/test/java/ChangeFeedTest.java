@@ -0,0 +1,287 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.controller.LocationsController;
+import ru.matthew.model.Location;
+import ru.matthew.repository.ChangeBatch;
+import ru.matthew.repository.ChangeFeed;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.StoreChange;
+import ru.matthew.service.ChangeStreamService;
+import ru.matthew.service.LocationService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class ChangeFeedTest {
+    private InMemoryStore<String, Location> store;
+    private ChangeStreamService changeStreamService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        store = TestStores.indexedLocationStore().enableChangeFeed(8);
+        changeStreamService = new ChangeStreamService(Duration.ofMillis(10), Duration.ofMinutes(1), Duration.ofMillis(500), 1024, 4);
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                        new LocationsController(new LocationService(store), changeStreamService, new ObjectMapper()))
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        changeStreamService.close();
+    }
+
+    @Test
+    public void changeFeed_AfterWrites_ListsChangesInOrder() {
+        // Arrange
+        store.save(new Location("msk", "Москва"));
+        store.save(new Location("msk", "Москва-сити"));
+        store.putIfAbsent(new Location("msk", "Не попадёт в ленту"));
+        store.delete("msk");
+
+        // Act
+        ChangeBatch<String, Location> batch = store.changeFeed().readAfter(0, 10);
+
+        // Assert
+        assertFalse(batch.resyncRequired());
+        List<StoreChange<String, Location>> changes = batch.changes();
+        assertEquals(List.of(StoreChange.Type.CREATE, StoreChange.Type.UPDATE, StoreChange.Type.DELETE),
+                changes.stream().map(StoreChange::type).toList());
+        assertEquals(List.of(1L, 2L, 3L), changes.stream().map(StoreChange::sequence).toList());
+        assertEquals("Москва-сити", changes.get(1).value().getName());
+        assertNull(changes.get(2).value());
+        assertEquals(changes.get(1).version(), changes.get(2).version());
+    }
+
+    @Test
+    public void readAfter_WhenReaderFellBehindRing_RequiresResync() {
+        // Arrange
+        for (int i = 0; i < 20; i++) {
+            store.save(new Location("slug-" + i, "Город " + i));
+        }
+        ChangeFeed<String, Location> feed = store.changeFeed();
+
+        // Act
+        ChangeBatch<String, Location> stale = feed.readAfter(5, 100);
+        ChangeBatch<String, Location> recent = feed.readAfter(12, 100);
+
+        // Assert
+        assertTrue(stale.resyncRequired());
+        assertEquals(20, stale.lastSequence());
+        assertFalse(recent.resyncRequired());
+        assertEquals(8, recent.changes().size());
+        assertEquals(13, recent.changes().get(0).sequence());
+    }
+
+    @Test
+    public void changeFeed_WhenThreadsWriteConcurrently_NumbersChangesWithoutGaps() throws Exception {
+        // Arrange
+        InMemoryStore<String, Location> large = TestStores.indexedLocationStore().enableChangeFeed(1 << 16);
+        int threads = 4;
+        int writes = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < writes; i++) {
+                    large.save(new Location("slug-" + (i % 100), "thread-" + thread));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        ChangeBatch<String, Location> batch = large.changeFeed().readAfter(0, threads * writes);
+
+        // Assert
+        assertFalse(batch.resyncRequired());
+        assertEquals(threads * writes, batch.changes().size());
+        for (int i = 0; i < batch.changes().size(); i++) {
+            assertEquals(i + 1, batch.changes().get(i).sequence());
+        }
+        // Последнее изменение каждого ключа в ленте совпадает с его итоговым значением
+        for (int key = 0; key < 100; key++) {
+            String slug = "slug-" + key;
+            StoreChange<String, Location> last = batch.changes().stream()
+                    .filter(change -> change.key().equals(slug))
+                    .reduce((first, second) -> second)
+                    .orElseThrow();
+            assertEquals(large.getVersioned(slug).orElseThrow().version(), last.version());
+        }
+    }
+
+    @Test
+    public void streamLocationChanges_AfterWrites_SendsEventsAndResumesFromLastEventId() throws Exception {
+        // Arrange
+        MockHttpServletResponse live = subscribe(null);
+
+        // Act
+        store.save(new Location("msk", "Москва"));
+        store.delete("msk");
+        String events = awaitContent(live, content -> content.contains("event:delete"));
+        String firstId = "id:" + store.changeFeed().epoch() + "-1";
+        String resumed = awaitContent(subscribe(store.changeFeed().epoch() + "-1"),
+                content -> content.contains("event:delete"));
+
+        // Assert
+        assertTrue(events.contains(firstId));
+        assertTrue(events.indexOf("event:create") < events.indexOf("event:delete"));
+        assertFalse(resumed.contains("event:create"));
+    }
+
+    @Test
+    public void streamLocationChanges_WhenLastEventIdIsStale_SendsResync() throws Exception {
+        // Arrange
+        for (int i = 0; i < 20; i++) {
+            store.save(new Location("slug-" + i, "Город " + i));
+        }
+
+        // Act
+        String staleEpoch = awaitContent(subscribe("0-1"), content -> content.contains("event:resync"));
+        String overrun = awaitContent(subscribe(store.changeFeed().epoch() + "-2"),
+                content -> content.contains("event:resync"));
+
+        // Assert
+        assertTrue(staleEpoch.contains("data:" + store.changeFeed().epoch() + "-20"));
+        assertFalse(overrun.contains("event:create"));
+    }
+
+    @Test
+    public void streamLocationChanges_WhenSubscribersStall_ClosesThemAndKeepsOthersFlowing() throws Exception {
+        // Arrange: у каждого зависшего подписчика свой поток отправки, живому остаются другие
+        MockHttpServletResponse live = subscribe(null);
+        store.save(new Location("kzn", "Казань"));
+        awaitContent(live, content -> content.contains("kzn"));
+        StalledEmitter first = new StalledEmitter();
+        StalledEmitter second = new StalledEmitter();
+        changeStreamService.subscribe(store.changeFeed(), null, first);
+        changeStreamService.subscribe(store.changeFeed(), null, second);
+
+        // Act
+        store.save(new Location("msk", "Москва"));
+        awaitContent(live, content -> content.contains("msk"));
+        Thread.sleep(1_000);
+        store.save(new Location("spb", "Санкт-Петербург"));
+        String events = awaitContent(live, content -> content.contains("spb"));
+        first.release.countDown();
+        second.release.countDown();
+
+        // Assert
+        assertTrue(events.contains("msk"));
+        assertFalse(events.contains("event:" + ChangeStreamService.RESYNC_EVENT));
+        for (StalledEmitter stalled : List.of(first, second)) {
+            assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, stalled.error);
+            assertTrue(stalled.sent().contains("msk"), stalled.sent());
+            assertFalse(stalled.sent().contains("spb"));
+            assertFalse(stalled.sent().contains("event:" + ChangeStreamService.RESYNC_EVENT));
+        }
+    }
+
+    @Test
+    public void streamLocationChanges_WhenSubscriberQueueOverflows_SendsResync() throws Exception {
+        // Arrange
+        ChangeStreamService smallQueue = new ChangeStreamService(Duration.ofMillis(10), Duration.ofMinutes(1),
+                Duration.ofMinutes(1), 2, 4);
+        StalledEmitter slow = new StalledEmitter();
+        try {
+            smallQueue.subscribe(store.changeFeed(), null, slow);
+
+            // Act
+            for (int i = 0; i < 5; i++) {
+                store.save(new Location("slug-" + i, "Город " + i));
+            }
+            Thread.sleep(200);
+            slow.release.countDown();
+
+            // Assert
+            assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+            assertTrue(slow.sent().contains("event:" + ChangeStreamService.RESYNC_EVENT), slow.sent());
+            assertFalse(slow.sent().contains("slug-4"));
+        } finally {
+            smallQueue.close();
+        }
+    }
+
+    private MockHttpServletResponse subscribe(String lastEventId) throws Exception {
+        var builder = get("/api/v1/locations/changes").accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, Predicate<String> condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String content = response.getContentAsString();
+        while (!condition.test(content) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            content = response.getContentAsString();
+        }
+        assertTrue(condition.test(content), content);
+        return content;
+    }
+
+    /**
+     * Клиент, у которого отправка висит, пока тест её не отпустит.
+     */
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final StringBuffer sent = new StringBuffer();
+        private volatile Throwable error;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            builder.build().forEach(data -> sent.append(data.getData()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            error = ex;
+            completed.countDown();
+        }
+
+        String sent() {
+            return sent.toString();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.controller.LocationsController;
+import ru.matthew.exception.GlobalExceptionHandler;
+import ru.matthew.model.Location;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.service.ChangeStreamService;
+import ru.matthew.service.LocationService;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ConditionalGetTest {
+    private InMemoryStore<String, Location> store;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        store = TestStores.indexedLocationStore();
+        store.save(new Location("msk", "Москва"));
+        mockMvc = MockMvcBuilders.standaloneSetup(new LocationsController(new LocationService(store),
+                        new ChangeStreamService(Duration.ofMillis(100), Duration.ofMinutes(1), Duration.ofSeconds(5), 1024, 4), new ObjectMapper()))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    public void getAllLocations_WhenETagMatches_ReturnsNotModified() throws Exception {
+        // Arrange
+        String etag = fetchAll().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/locations").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void getAllLocations_AfterStoreChanges_ReturnsNewBodyAndETag() throws Exception {
+        // Arrange
+        MvcResult first = fetchAll();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        store.save(new Location("spb", "Санкт-Петербург"));
+
+        // Act
+        MvcResult second = mockMvc.perform(get("/api/v1/locations").accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Assert
+        assertNotEquals(etag, second.getResponse().getHeader(HttpHeaders.ETAG));
+        assertTrue(second.getResponse().getContentAsString().contains("spb"));
+        assertFalse(first.getResponse().getContentAsString().contains("spb"));
+    }
+
+    @Test
+    public void getAllLocations_WhenVersionUnchanged_ReturnsSameBytes() throws Exception {
+        // Act
+        MvcResult first = fetchAll();
+        MvcResult second = fetchAll();
+
+        // Assert
+        assertEquals(first.getResponse().getHeader(HttpHeaders.ETAG), second.getResponse().getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), second.getResponse().getContentAsByteArray());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, second.getResponse().getContentType());
+    }
+
+    @Test
+    public void updateLocation_WhenIfMatchIsWeak_ReturnsPreconditionFailed() throws Exception {
+        // Arrange
+        long version = store.getVersioned("msk").orElseThrow().version();
+
+        // Act & Assert: If-Match сравнивает только сильные метки, даже если версия совпадает
+        mockMvc.perform(put("/api/v1/locations/msk").contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "W/\"" + version + "\"")
+                        .content("{\"slug\":\"msk\",\"name\":\"Moscow\"}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("Москва", store.get("msk").orElseThrow().getName());
+    }
+
+    private MvcResult fetchAll() throws Exception {
+        return mockMvc.perform(get("/api/v1/locations").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn();
+    }
+}
@@ -0,0 +1,104 @@
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.matthew.model.Location;
+import ru.matthew.model.PlaceCategory;
+import ru.matthew.service.ExternalDataLoaderService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalDataLoaderServiceTest {
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void respond(String path, int status, String body) {
+        server.createContext(path, exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private ExternalDataLoaderService createService(String locationsPath, String categoriesPath) {
+        ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return new ExternalDataLoaderService(HttpClient.newHttpClient(), objectMapper, Duration.ofSeconds(5),
+                baseUrl + locationsPath, baseUrl + categoriesPath);
+    }
+
+    @Test
+    public void loadLocations_WhenResponseIsArray_StreamsEntitiesInBatches() {
+        // Arrange
+        String body = IntStream.range(0, 1200)
+                .mapToObj(i -> "{\"slug\":\"s" + i + "\",\"name\":\"N" + i + "\",\"coords\":{\"lat\":1.0}}")
+                .collect(Collectors.joining(",", "[", "]"));
+        respond("/locations", 200, body);
+        List<List<Location>> batches = new ArrayList<>();
+
+        // Act
+        int parsed = createService("/locations", "/categories").loadLocations(batches::add);
+
+        // Assert
+        assertEquals(1200, parsed);
+        assertEquals(List.of(512, 512, 176), batches.stream().map(List::size).toList());
+        assertEquals(new Location("s1199", "N1199"), batches.get(2).get(175));
+    }
+
+    @Test
+    public void loadCategories_WhenResponseIsPaginated_FollowsNextLinks() {
+        // Arrange
+        respond("/categories", 200, "{\"count\":3,\"next\":\"" + baseUrl + "/categories-2\",\"previous\":null,"
+                + "\"results\":[{\"id\":1,\"slug\":\"bar\",\"name\":\"Бары\"},{\"id\":2,\"slug\":\"park\",\"name\":\"Парки\"}]}");
+        respond("/categories-2", 200, "{\"count\":3,\"next\":null,\"results\":[{\"id\":3,\"slug\":\"museums\",\"name\":\"Музеи\"}]}");
+        List<PlaceCategory> categories = new ArrayList<>();
+
+        // Act
+        int parsed = createService("/locations", "/categories").loadCategories(categories::addAll);
+
+        // Assert
+        assertEquals(3, parsed);
+        assertEquals(List.of(1, 2, 3), categories.stream().map(PlaceCategory::getId).toList());
+    }
+
+    @Test
+    public void loadLocations_WhenApiRespondsWithError_LoadsNothing() {
+        // Arrange
+        respond("/locations", 404, "{\"detail\":\"Not found\"}");
+        List<Location> locations = new ArrayList<>();
+
+        // Act
+        int parsed = createService("/locations", "/categories").loadLocations(locations::addAll);
+
+        // Assert
+        assertEquals(0, parsed);
+        assertTrue(locations.isEmpty());
+    }
+}
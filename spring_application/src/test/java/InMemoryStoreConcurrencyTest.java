@@ -0,0 +1,195 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.matthew.exception.ElementAlreadyExistsException;
+import ru.matthew.model.Location;
+import ru.matthew.repository.HashIndex;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.Versioned;
+import ru.matthew.service.LocationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочные проверки атомарности: потоки стартуют одновременно и соревнуются за одни и те же ключи,
+ * после чего итог сверяется с единственно допустимым при линеаризуемых операциях.
+ */
+public class InMemoryStoreConcurrencyTest {
+    private static final int THREADS = 4;
+    private static final int KEYS = 5_000;
+
+    private InMemoryStore<String, Location> store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new InMemoryStore<String, Location>()
+                .addIndex("name", new HashIndex<>(Location::getName));
+    }
+
+    @Test
+    public void putIfAbsent_WhenThreadsRaceForSameKeys_ExactlyOneWinsEachKey() throws Exception {
+        // Arrange
+        AtomicIntegerArray winners = new AtomicIntegerArray(KEYS);
+        String[] winnerNames = new String[KEYS];
+
+        // Act
+        runConcurrently(thread -> {
+            for (int i = 0; i < KEYS; i++) {
+                String name = "thread-" + thread;
+                if (store.putIfAbsent(new Location("slug-" + i, name))) {
+                    winners.incrementAndGet(i);
+                    winnerNames[i] = name;
+                }
+            }
+        });
+
+        // Assert
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(1, winners.get(i), "slug-" + i);
+            assertEquals(winnerNames[i], store.get("slug-" + i).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    public void compareAndSet_WhenThreadsIncrementSameKey_LosesNoUpdates() throws Exception {
+        // Arrange
+        int increments = 10_000;
+        store.save(new Location("counter", "0"));
+
+        // Act
+        runConcurrently(thread -> {
+            for (int i = 0; i < increments; i++) {
+                boolean updated;
+                do {
+                    Versioned<Location> current = store.getVersioned("counter").orElseThrow();
+                    int next = Integer.parseInt(current.value().getName()) + 1;
+                    updated = store.compareAndSet(new Location("counter", String.valueOf(next)), current.version());
+                } while (!updated);
+            }
+        });
+
+        // Assert
+        assertEquals(String.valueOf(THREADS * increments), store.get("counter").orElseThrow().getName());
+        assertEquals(1, store.findBy("name", String.valueOf(THREADS * increments)).size());
+    }
+
+    @Test
+    public void compute_WhenThreadsIncrementSameKey_LosesNoUpdates() throws Exception {
+        // Arrange
+        int increments = 10_000;
+
+        // Act
+        runConcurrently(thread -> {
+            for (int i = 0; i < increments; i++) {
+                store.compute("counter", (slug, current) -> new Location(slug,
+                        String.valueOf(current == null ? 1 : Integer.parseInt(current.getName()) + 1)));
+            }
+        });
+
+        // Assert
+        assertEquals(String.valueOf(THREADS * increments), store.get("counter").orElseThrow().getName());
+    }
+
+    @Test
+    public void replaceIfPresent_WhenRacingWithDelete_NeverResurrectsKey() throws Exception {
+        // Arrange
+        for (int i = 0; i < KEYS; i++) {
+            store.save(new Location("slug-" + i, "Исходная"));
+        }
+        AtomicInteger deleted = new AtomicInteger();
+
+        // Act
+        runConcurrently(thread -> {
+            for (int i = 0; i < KEYS; i++) {
+                if (thread % 2 == 0) {
+                    if (store.delete("slug-" + i)) {
+                        deleted.incrementAndGet();
+                    }
+                } else {
+                    store.replaceIfPresent(new Location("slug-" + i, "Обновлённая"));
+                }
+            }
+        });
+
+        // Assert
+        assertEquals(KEYS, deleted.get());
+        assertTrue(store.getAll().isEmpty());
+        assertTrue(store.findBy("name", "Обновлённая").isEmpty());
+        assertTrue(store.findBy("name", "Исходная").isEmpty());
+    }
+
+    @Test
+    public void compareAndSet_WhenVersionIsStale_RejectsUpdate() {
+        // Arrange
+        store.save(new Location("msk", "Москва"));
+        long seen = store.getVersioned("msk").orElseThrow().version();
+        store.delete("msk");
+        store.save(new Location("msk", "Москва"));
+
+        // Act
+        boolean updated = store.compareAndSet(new Location("msk", "Моск"), seen);
+
+        // Assert
+        assertFalse(updated);
+        assertEquals("Москва", store.get("msk").orElseThrow().getName());
+    }
+
+    @Test
+    public void createLocation_WhenRequestsRaceForSameSlug_CreatesOnce() throws Exception {
+        // Arrange
+        LocationService service = new LocationService(store);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        // Act
+        runConcurrently(thread -> {
+            for (int i = 0; i < KEYS; i++) {
+                try {
+                    service.createLocation(new Location("slug-" + i, "thread-" + thread));
+                    created.incrementAndGet();
+                } catch (ElementAlreadyExistsException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        // Assert
+        assertEquals(KEYS, created.get());
+        assertEquals(KEYS * (THREADS - 1), rejected.get());
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.matthew.exception.FeatureDisabledException;
+import ru.matthew.model.Location;
+import ru.matthew.repository.HashIndex;
+import ru.matthew.repository.HeapStoreBackend;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.PrefixIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStoreTest {
+    private InMemoryStore<String, Location> store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new InMemoryStore<String, Location>()
+                .addIndex("name", new HashIndex<>(Location::getName))
+                .addIndex("prefix", new PrefixIndex<>(Location::getName));
+    }
+
+    @Test
+    public void findBy_AfterSaveUpdateAndDelete_ReflectsCurrentValues() {
+        // Arrange
+        store.save(new Location("msk", "Москва"));
+        store.save(new Location("mur", "Мурманск"));
+
+        // Act
+        store.update(new Location("mur", "Омск"));
+        store.delete("msk");
+        store.update(new Location("absent", "Москва"));
+
+        // Assert
+        assertTrue(store.findBy("name", "Москва").isEmpty());
+        assertTrue(store.findBy("prefix", "м").isEmpty());
+        assertEquals(List.of(new Location("mur", "Омск")), store.findBy("name", "Омск"));
+        assertEquals(List.of(new Location("mur", "Омск")), store.findBy("prefix", "ОМ"));
+    }
+
+    @Test
+    public void addIndex_WhenStoreIsNotEmpty_IndexesExistingValues() {
+        // Arrange
+        store.save(new Location("spb", "Санкт-Петербург"));
+
+        // Act
+        store.addIndex("slug", new HashIndex<>(Location::getSlug));
+
+        // Assert
+        assertEquals(1, store.findBy("slug", "spb").size());
+        assertThrows(IllegalArgumentException.class, () -> store.addIndex("slug", new HashIndex<>(Location::getSlug)));
+        assertThrows(IllegalArgumentException.class, () -> store.findBy("unknown", "spb"));
+    }
+
+    @Test
+    public void saveAll_WhenKeysRepeat_RejectsDuplicatesAndKeepsExisting() {
+        // Arrange
+        store.save(new Location("msk", "Москва"));
+        List<Location> batch = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            batch.add(new Location("slug-" + i, "Город " + i));
+        }
+        batch.add(new Location("slug-1", "Повтор"));
+        batch.add(new Location("msk", "Moscow"));
+
+        // Act
+        List<Location> rejected = store.saveAll(batch);
+
+        // Assert
+        assertEquals(List.of("Повтор", "Moscow"), rejected.stream().map(Location::getName).sorted(Comparator.reverseOrder()).toList());
+        assertEquals(10_001, store.getAll().size());
+        assertEquals("Москва", store.get("msk").orElseThrow().getName());
+        assertEquals(1, store.findBy("name", "Город 9999").size());
+    }
+
+    @Test
+    public void findBy_WhenManyKeysShareValue_TracksAddsAndDeletes() {
+        // Arrange
+        for (int i = 0; i < 20_000; i++) {
+            store.save(new Location("slug-" + i, "Город"));
+        }
+
+        // Act
+        for (int i = 0; i < 20_000; i += 2) {
+            store.delete("slug-" + i);
+        }
+        int afterHalf = store.findBy("name", "Город").size();
+        for (int i = 1; i < 20_000; i += 2) {
+            store.delete("slug-" + i);
+        }
+
+        // Assert
+        assertEquals(10_000, afterHalf);
+        assertTrue(store.findBy("name", "Город").isEmpty());
+        assertTrue(store.findBy("prefix", "гор").isEmpty());
+        store.save(new Location("msk", "Город"));
+        assertEquals(List.of(new Location("msk", "Город")), store.findBy("prefix", "гор"));
+    }
+
+    @Test
+    public void page_WhenOrderedKeysDisabled_RejectsButKeepsLookups() {
+        // Arrange
+        InMemoryStore<String, Location> unordered = new InMemoryStore<>(new HeapStoreBackend<>(), false);
+        unordered.save(new Location("spb", "Санкт-Петербург"));
+
+        // Act & Assert
+        assertThrows(FeatureDisabledException.class, () -> unordered.page(null, 10));
+        assertThrows(FeatureDisabledException.class, () -> unordered.hasAfter("spb"));
+        assertEquals("Санкт-Петербург", unordered.get("spb").orElseThrow().getName());
+        assertEquals(1, unordered.getAll().size());
+        assertFalse(unordered.hasIndex("name"));
+    }
+
+    @Test
+    public void findBy_AfterConcurrentWriters_MatchesStoreContents() throws Exception {
+        // Arrange
+        String[] names = {"Москва", "Мурманск", "Омск", "Тверь"};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        String slug = "slug-" + random.nextInt(16);
+                        switch (random.nextInt(3)) {
+                            case 0 -> store.save(new Location(slug, names[random.nextInt(names.length)]));
+                            case 1 -> store.update(new Location(slug, names[random.nextInt(names.length)]));
+                            default -> store.delete(slug);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        for (String name : names) {
+            List<Location> expected = store.getAll().stream().filter(location -> location.getName().equals(name)).toList();
+            assertEquals(expected.size(), store.findBy("name", name).size());
+            assertEquals(expected.size(), store.findBy("prefix", name).size());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.configuration.DataSourceConfig;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.IntKeyStoreBackend;
+import ru.matthew.repository.IntKeyedStore;
+import ru.matthew.repository.IntOrderedKeys;
+import ru.matthew.repository.Versioned;
+import ru.matthew.service.PlaceCategoryService;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntKeyedStoreTest {
+
+    @Test
+    public void compute_AfterRandomWrites_MatchesHashMap() {
+        // Arrange: отрицательные ключи и ноль тоже допустимы, пустую ячейку отличает только null в значениях
+        IntKeyStoreBackend<PlaceCategory> backend = new IntKeyStoreBackend<>(1);
+        Map<Integer, PlaceCategory> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(4_000) - 2_000;
+            if (random.nextInt(4) == 0) {
+                backend.compute(id, (key, previous) -> null);
+                expected.remove(id);
+            } else {
+                PlaceCategory category = new PlaceCategory(id, "slug-" + i, "Категория " + i);
+                backend.compute(id, (key, previous) -> new Versioned<>(category, 1));
+                expected.put(id, category);
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), backend.size());
+        for (int id = -2_000; id < 2_000; id++) {
+            Versioned<PlaceCategory> entry = backend.get(id);
+            assertEquals(expected.get(id), entry == null ? null : entry.value());
+        }
+        Set<Integer> keys = new HashSet<>();
+        backend.keys().forEachRemaining(keys::add);
+        assertEquals(expected.keySet(), keys);
+    }
+
+    @Test
+    public void intOrderedKeys_AfterRandomWrites_MatchesTreeSet() {
+        // Arrange
+        IntOrderedKeys keys = new IntOrderedKeys();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(11);
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                keys.remove(key);
+                expected.remove(key);
+            } else {
+                keys.add(key);
+                expected.add(key);
+            }
+        }
+
+        // Assert
+        assertEquals(List.copyOf(expected), keys.after(null).toList());
+        for (int key = -1_001; key <= 1_000; key++) {
+            assertEquals(List.copyOf(expected.tailSet(key, false)), keys.after(key).toList());
+            assertEquals(expected.higher(key) != null, keys.hasAfter(key));
+        }
+    }
+
+    @Test
+    public void intKeyedStore_WithIndexes_BehavesAsGenericStore() {
+        // Arrange
+        IntKeyedStore<PlaceCategory> store = TestStores.indexedIntKeyedPlaceCategoryStore();
+        store.save(new PlaceCategory(1, "bar", "Бары"));
+        store.save(new PlaceCategory(2, "bar-grill", "Гриль-бары"));
+        store.save(new PlaceCategory(3, "museums", "Музеи"));
+
+        // Act
+        long version = store.getVersioned(2).orElseThrow().version();
+        boolean updated = store.compareAndSet(new PlaceCategory(2, "grill", "Гриль"), version);
+        store.delete(3);
+
+        // Assert
+        assertTrue(updated);
+        assertEquals(new PlaceCategory(1, "bar", "Бары"), store.get(1).orElseThrow());
+        assertEquals(store.get(Integer.valueOf(2)), store.get(2));
+        assertTrue(store.get(3).isEmpty());
+        assertEquals(List.of(new PlaceCategory(2, "grill", "Гриль")), store.page(1, 10));
+        assertEquals(1, store.findBy(DataSourceConfig.PLACE_CATEGORY_SLUG_PREFIX_INDEX, "bar").size());
+    }
+
+    @Test
+    public void getPlaceCategoryById_WithIntKeyedStore_ReturnsCategory() {
+        // Arrange
+        IntKeyedStore<PlaceCategory> store = TestStores.indexedIntKeyedPlaceCategoryStore();
+        store.save(new PlaceCategory(1_000, "bar", "Бары"));
+        PlaceCategoryService service = new PlaceCategoryService(store);
+
+        // Act
+        PlaceCategory category = service.getPlaceCategoryById(1_000);
+
+        // Assert
+        assertEquals("bar", category.getSlug());
+    }
+}
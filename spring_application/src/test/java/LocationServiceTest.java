@@ -3,13 +3,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.ArgumentCaptor;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.dto.CursorPageDTO;
 import ru.matthew.exception.ElementAlreadyExistsException;
 import ru.matthew.exception.ElementWasNotFoundException;
+import ru.matthew.exception.VersionConflictException;
 import ru.matthew.model.Location;
 import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.Versioned;
 import ru.matthew.service.LocationService;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -48,7 +53,7 @@ public class LocationServiceTest {
     public void getLocationBySlug_WhenLocationExists_ReturnsLocation() {
         // Arrange
         Location location = new Location("test-slug", "Test Location");
-        when(locationStore.get("test-slug")).thenReturn(Optional.of(location));
+        when(locationStore.getVersioned("test-slug")).thenReturn(Optional.of(new Versioned<>(location, 1)));
 
         // Act
         Location result = locationService.getLocationBySlug("test-slug");
@@ -62,14 +67,14 @@ public class LocationServiceTest {
     public void createLocation_WhenLocationDoesNotExist_CreatesLocation() {
         // Arrange
         Location location = new Location("test-slug", "Test Location");
-        when(locationStore.get(location.getSlug())).thenReturn(Optional.empty());
+        when(locationStore.putIfAbsent(location)).thenReturn(true);
 
         // Act
         locationService.createLocation(location);
 
         // Assert
         ArgumentCaptor<Location> captor = forClass(Location.class);
-        verify(locationStore).save(captor.capture());
+        verify(locationStore).putIfAbsent(captor.capture());
         assertEquals(location, captor.getValue());
     }
 
@@ -77,22 +82,35 @@ public class LocationServiceTest {
     public void updateLocation_WhenLocationExists_UpdatesLocation() {
         // Arrange
         Location location = new Location("test-slug", "Updated Location");
-        when(locationStore.get("test-slug")).thenReturn(Optional.of(location));
+        when(locationStore.replaceIfPresent(location)).thenReturn(true);
 
         // Act
         locationService.updateLocation("test-slug", location);
 
         // Assert
         ArgumentCaptor<Location> captor = forClass(Location.class);
-        verify(locationStore).update(captor.capture());
+        verify(locationStore).replaceIfPresent(captor.capture());
         assertEquals(location, captor.getValue());
     }
 
     @Test
-    public void deleteLocation_WhenLocationExists_DeletesLocation() {
+    public void updateLocation_WhenVersionMatches_UpdatesLocation() {
         // Arrange
         Location location = new Location("test-slug", "Updated Location");
-        when(locationStore.get("test-slug")).thenReturn(Optional.of(location));
+        when(locationStore.compareAndSet(location, 7)).thenReturn(true);
+
+        // Act
+        locationService.updateLocation("test-slug", location, 7L);
+
+        // Assert
+        verify(locationStore).compareAndSet(location, 7);
+        verify(locationStore, never()).replaceIfPresent(any());
+    }
+
+    @Test
+    public void deleteLocation_WhenLocationExists_DeletesLocation() {
+        // Arrange
+        when(locationStore.delete("test-slug")).thenReturn(true);
 
         // Act
         locationService.deleteLocation("test-slug");
@@ -101,8 +119,81 @@ public class LocationServiceTest {
         verify(locationStore).delete("test-slug");
     }
 
+    @Test
+    public void searchLocations_WhenIndexedLocationsMatch_ReturnsMatches() {
+        // Arrange
+        InMemoryStore<String, Location> store = TestStores.indexedLocationStore();
+        store.save(new Location("msk", "Москва"));
+        store.save(new Location("mur", "Мурманск"));
+        store.save(new Location("spb", "Санкт-Петербург"));
+        LocationService service = new LocationService(store);
+
+        // Act & Assert
+        assertEquals(List.of("msk", "mur"), service.searchLocations(null, "м").stream().map(Location::getSlug).toList());
+        assertEquals(List.of("msk"), service.searchLocations("москва", null).stream().map(Location::getSlug).toList());
+        assertTrue(service.searchLocations("Москва", "Мур").isEmpty());
+    }
+
+    @Test
+    public void getLocationsPage_WhenFollowingCursor_ReturnsEachLocationOnce() {
+        // Arrange
+        InMemoryStore<String, Location> store = TestStores.indexedLocationStore();
+        for (String slug : List.of("ekb", "kzn", "msk", "nsk", "spb")) {
+            store.save(new Location(slug, slug.toUpperCase()));
+        }
+        LocationService service = new LocationService(store);
+
+        // Act
+        CursorPageDTO<String, Location> first = service.getLocationsPage(null, 2);
+        store.delete("kzn");
+        store.save(new Location("abakan", "ABAKAN"));
+        CursorPageDTO<String, Location> second = service.getLocationsPage(first.getNextCursor(), 2);
+        CursorPageDTO<String, Location> last = service.getLocationsPage(second.getNextCursor(), 2);
+
+        // Assert
+        assertEquals(List.of("ekb", "kzn"), first.getItems().stream().map(Location::getSlug).toList());
+        assertEquals(List.of("msk", "nsk"), second.getItems().stream().map(Location::getSlug).toList());
+        assertEquals(List.of("spb"), last.getItems().stream().map(Location::getSlug).toList());
+        assertNull(last.getNextCursor());
+        assertEquals(List.of("nsk", "spb"), service.streamLocations("msk", null).map(Location::getSlug).toList());
+    }
+
+    @Test
+    public void createLocations_WhenSomeAreInvalidOrDuplicate_CreatesRest() {
+        // Arrange
+        Location valid = new Location("msk", "Москва");
+        Location duplicate = new Location("spb", "Санкт-Петербург");
+        when(locationStore.saveAll(List.of(valid, duplicate))).thenReturn(List.of(duplicate));
+
+        // Act
+        int created = locationService.createLocations(List.of(valid, new Location("", "Без slug"), duplicate));
+
+        // Assert
+        assertEquals(1, created);
+        verify(locationStore).saveAll(List.of(valid, duplicate));
+    }
+
     // Negative tests
 
+    @ParameterizedTest
+    @MethodSource("provideInvalidLimits")
+    public void getLocationsPage_WhenLimitIsOutOfRange_ThrowsException(int limit) {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> locationService.getLocationsPage(null, limit));
+        assertThrows(IllegalArgumentException.class, () -> locationService.streamLocations(null, limit));
+    }
+
+    private static Stream<Integer> provideInvalidLimits() {
+        return Stream.of(0, -1, LocationService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void searchLocations_WhenQueryIsBlank_ThrowsException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> locationService.searchLocations(" ", null));
+        assertThrows(IllegalArgumentException.class, () -> locationService.searchLocations(null, ""));
+    }
+
     @Test
     public void getAllLocations_WhenNoLocationsExist_ThrowsException() {
         // Arrange
@@ -115,7 +206,7 @@ public class LocationServiceTest {
     @Test
     public void getLocationBySlug_WhenLocationDoesNotExist_ThrowsException() {
         // Arrange
-        when(locationStore.get("non-existing-slug")).thenReturn(Optional.empty());
+        when(locationStore.getVersioned("non-existing-slug")).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ElementWasNotFoundException.class, () -> locationService.getLocationBySlug("non-existing-slug"));
@@ -125,7 +216,7 @@ public class LocationServiceTest {
     public void createLocation_WhenLocationAlreadyExists_ThrowsException() {
         // Arrange
         Location location = new Location("test-slug", "Test Location");
-        when(locationStore.get(location.getSlug())).thenReturn(Optional.of(location));
+        when(locationStore.putIfAbsent(location)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ElementAlreadyExistsException.class, () -> locationService.createLocation(location));
@@ -153,12 +244,23 @@ public class LocationServiceTest {
     @MethodSource("provideInvalidUpdateLocations")
     public void updateLocation_WhenInvalidLocation_ThrowsException(Location location) {
         // Arrange
-        when(locationStore.get(location.getSlug())).thenReturn(Optional.empty());
+        when(locationStore.replaceIfPresent(location)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ElementWasNotFoundException.class, () -> locationService.updateLocation(location.getSlug(), location));
     }
 
+    @Test
+    public void updateLocation_WhenVersionIsStale_ThrowsException() {
+        // Arrange
+        Location location = new Location("test-slug", "Updated Location");
+        when(locationStore.compareAndSet(location, 7)).thenReturn(false);
+        when(locationStore.get("test-slug")).thenReturn(Optional.of(location));
+
+        // Act & Assert
+        assertThrows(VersionConflictException.class, () -> locationService.updateLocation("test-slug", location, 7L));
+    }
+
     private static Stream<Location> provideInvalidUpdateLocations() {
         return Stream.of(
                 new Location(null, "valid-slug"),
@@ -170,7 +272,7 @@ public class LocationServiceTest {
     @Test
     public void deleteLocation_WhenLocationDoesNotExist_ThrowsException() {
         // Arrange
-        when(locationStore.get("non-existing-slug")).thenReturn(Optional.empty());
+        when(locationStore.delete("non-existing-slug")).thenReturn(false);
 
         // Act & Assert
         assertThrows(ElementWasNotFoundException.class, () -> locationService.deleteLocation("non-existing-slug"));
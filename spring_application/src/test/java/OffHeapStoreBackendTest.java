@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+import ru.matthew.configuration.DataSourceConfig;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.model.Location;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.OffHeapStoreBackend;
+import ru.matthew.repository.Versioned;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapStoreBackendTest {
+
+    @Test
+    public void compute_AfterRandomWrites_MatchesHashMap() {
+        // Arrange: маленькие буферы и две полосы, чтобы чаще срабатывали рост таблицы и уплотнение
+        OffHeapStoreBackend<String, Location> backend = new OffHeapStoreBackend<>(EntityCodecs.LOCATION, 1, 256);
+        Map<String, Location> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            // "Aa" и "BB" с одинаковым hashCode проверяют цепочки коллизий
+            String slug = random.nextInt(10) == 0 ? (random.nextBoolean() ? "Aa" : "BB") : "slug-" + random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                backend.compute(slug, (key, previous) -> null);
+                expected.remove(slug);
+            } else {
+                Location location = new Location(slug, "Город " + i);
+                backend.compute(slug, (key, previous) -> new Versioned<>(location, 1));
+                expected.put(slug, location);
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), backend.size());
+        for (Map.Entry<String, Location> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), backend.get(entry.getKey()).value());
+        }
+        assertNull(backend.get("absent"));
+        Set<String> keys = new HashSet<>();
+        backend.keys().forEachRemaining(keys::add);
+        assertEquals(expected.keySet(), keys);
+        // Без уплотнения 50 000 записей заняли бы около 2.5 МБ; с ним мусор не превышает объём живых записей (до 64 байт)
+        assertTrue(backend.offHeapBytes() < 3L * expected.size() * 64);
+    }
+
+    @Test
+    public void compute_WhenRemappingReturnsPrevious_KeepsEntry() {
+        // Arrange
+        OffHeapStoreBackend<String, Location> backend = new OffHeapStoreBackend<>(EntityCodecs.LOCATION);
+        backend.compute("msk", (key, previous) -> new Versioned<>(new Location("msk", "Москва"), 7));
+
+        // Act
+        Versioned<Location> result = backend.compute("msk", (key, previous) -> previous);
+        Versioned<Location> absent = backend.compute("spb", (key, previous) -> previous);
+
+        // Assert
+        assertEquals(new Versioned<>(new Location("msk", "Москва"), 7), result);
+        assertNull(absent);
+        assertEquals(1, backend.size());
+    }
+
+    @Test
+    public void inMemoryStore_WithOffHeapBackend_KeepsIndexesAndVersions() {
+        // Arrange
+        InMemoryStore<String, Location> store = TestStores.indexedLocationStore(
+                new OffHeapStoreBackend<>(EntityCodecs.LOCATION));
+        store.save(new Location("msk", "Москва"));
+        store.save(new Location("mur", "Мурманск"));
+        store.save(new Location("omsk", "Омск"));
+
+        // Act
+        long version = store.getVersioned("mur").orElseThrow().version();
+        boolean updated = store.compareAndSet(new Location("mur", "Мурманск-на-Мурмане"), version);
+        boolean stale = store.compareAndSet(new Location("mur", "Мурманск"), version);
+        store.delete("omsk");
+
+        // Assert
+        assertTrue(updated);
+        assertFalse(stale);
+        assertEquals(2, store.getAll().size());
+        assertEquals(List.of(new Location("mur", "Мурманск-на-Мурмане")), store.page("msk", 10));
+        assertEquals(2, store.findBy(DataSourceConfig.LOCATION_NAME_PREFIX_INDEX, "м").size());
+        assertTrue(store.findBy(DataSourceConfig.NAME_INDEX, "омск").isEmpty());
+    }
+}
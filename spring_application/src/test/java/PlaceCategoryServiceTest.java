@@ -3,13 +3,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.ArgumentCaptor;
+import ru.matthew.configuration.TestStores;
 import ru.matthew.exception.ElementAlreadyExistsException;
 import ru.matthew.exception.ElementWasNotFoundException;
+import ru.matthew.exception.VersionConflictException;
 import ru.matthew.model.PlaceCategory;
 import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.Versioned;
 import ru.matthew.service.PlaceCategoryService;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -48,7 +52,7 @@ public class PlaceCategoryServiceTest {
     public void getPlaceCategoryById_WhenCategoryExists_ReturnsCategory() {
         // Arrange
         PlaceCategory category = new PlaceCategory(1, "Test Category", "test-slug");
-        when(placeCategoryStore.get(1)).thenReturn(Optional.of(category));
+        when(placeCategoryStore.getVersioned(1)).thenReturn(Optional.of(new Versioned<>(category, 1)));
 
         // Act
         PlaceCategory result = placeCategoryService.getPlaceCategoryById(1);
@@ -62,14 +66,14 @@ public class PlaceCategoryServiceTest {
     public void createPlaceCategory_WhenCategoryDoesNotExist_CreatesCategory() {
         // Arrange
         PlaceCategory category = new PlaceCategory(1, "Test Category", "test-slug");
-        when(placeCategoryStore.get(category.getId())).thenReturn(Optional.empty());
+        when(placeCategoryStore.putIfAbsent(category)).thenReturn(true);
 
         // Act
         placeCategoryService.createPlaceCategory(category);
 
         // Assert
         ArgumentCaptor<PlaceCategory> captor = forClass(PlaceCategory.class);
-        verify(placeCategoryStore).save(captor.capture());
+        verify(placeCategoryStore).putIfAbsent(captor.capture());
         assertEquals(category, captor.getValue());
     }
 
@@ -77,21 +81,35 @@ public class PlaceCategoryServiceTest {
     public void updatePlaceCategory_WhenCategoryExists_UpdatesCategory() {
         // Arrange
         PlaceCategory category = new PlaceCategory(1, "Updated Category", "updated-slug");
-        when(placeCategoryStore.get(1)).thenReturn(Optional.of(category));
+        when(placeCategoryStore.replaceIfPresent(category)).thenReturn(true);
 
         // Act
         placeCategoryService.updatePlaceCategory(1, category);
 
         // Assert
         ArgumentCaptor<PlaceCategory> captor = forClass(PlaceCategory.class);
-        verify(placeCategoryStore).update(captor.capture());
+        verify(placeCategoryStore).replaceIfPresent(captor.capture());
         assertEquals(category, captor.getValue());
     }
 
+    @Test
+    public void updatePlaceCategory_WhenVersionMatches_UpdatesCategory() {
+        // Arrange
+        PlaceCategory category = new PlaceCategory(1, "Updated Category", "updated-slug");
+        when(placeCategoryStore.compareAndSet(category, 3)).thenReturn(true);
+
+        // Act
+        placeCategoryService.updatePlaceCategory(1, category, 3L);
+
+        // Assert
+        verify(placeCategoryStore).compareAndSet(category, 3);
+        verify(placeCategoryStore, never()).replaceIfPresent(any());
+    }
+
     @Test
     public void deletePlaceCategory_WhenCategoryExists_DeletesCategory() {
         // Arrange
-        when(placeCategoryStore.get(1)).thenReturn(Optional.of(new PlaceCategory(1, "Test Category", "test-slug")));
+        when(placeCategoryStore.delete(1)).thenReturn(true);
 
         // Act
         placeCategoryService.deletePlaceCategory(1);
@@ -100,6 +118,54 @@ public class PlaceCategoryServiceTest {
         verify(placeCategoryStore).delete(1);
     }
 
+    @Test
+    public void searchPlaceCategories_WhenIndexedCategoriesMatch_ReturnsMatches() {
+        // Arrange
+        InMemoryStore<Integer, PlaceCategory> store = TestStores.indexedPlaceCategoryStore();
+        store.save(new PlaceCategory(1, "bar", "Бары"));
+        store.save(new PlaceCategory(2, "bar-grill", "Гриль-бары"));
+        store.save(new PlaceCategory(3, "museums", "Музеи"));
+        PlaceCategoryService service = new PlaceCategoryService(store);
+
+        // Act & Assert
+        assertEquals(List.of(1, 2), service.searchPlaceCategories(null, "BAR").stream().map(PlaceCategory::getId).toList());
+        assertEquals(List.of(3), service.searchPlaceCategories("музеи", null).stream().map(PlaceCategory::getId).toList());
+    }
+
+    @Test
+    public void getPlaceCategoriesPage_WhenLastPageIsFull_ReturnsNoCursor() {
+        // Arrange
+        InMemoryStore<Integer, PlaceCategory> store = TestStores.indexedPlaceCategoryStore();
+        for (int id : List.of(30, 10, 20)) {
+            store.save(new PlaceCategory(id, "slug-" + id, "Категория " + id));
+        }
+        PlaceCategoryService service = new PlaceCategoryService(store);
+
+        // Act
+        var first = service.getPlaceCategoriesPage(null, 2);
+        var last = service.getPlaceCategoriesPage(first.getNextCursor(), 1);
+
+        // Assert
+        assertEquals(List.of(10, 20), first.getItems().stream().map(PlaceCategory::getId).toList());
+        assertEquals(20, first.getNextCursor());
+        assertEquals(List.of(30), last.getItems().stream().map(PlaceCategory::getId).toList());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    public void createPlaceCategories_WhenSomeAreInvalid_SavesOnlyValid() {
+        // Arrange
+        PlaceCategory valid = new PlaceCategory(1, "bar", "Бары");
+        when(placeCategoryStore.saveAll(List.of(valid))).thenReturn(List.of());
+
+        // Act
+        int created = placeCategoryService.createPlaceCategories(List.of(valid, new PlaceCategory(0, "no-id", "Без id")));
+
+        // Assert
+        assertEquals(1, created);
+        verify(placeCategoryStore).saveAll(List.of(valid));
+    }
+
     // Negative tests
 
     @Test
@@ -114,7 +180,7 @@ public class PlaceCategoryServiceTest {
     @Test
     public void getPlaceCategoryById_WhenCategoryDoesNotExist_ThrowsException() {
         // Arrange
-        when(placeCategoryStore.get(99)).thenReturn(Optional.empty());
+        when(placeCategoryStore.getVersioned(99)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ElementWasNotFoundException.class, () -> placeCategoryService.getPlaceCategoryById(99));
@@ -124,7 +190,7 @@ public class PlaceCategoryServiceTest {
     public void createPlaceCategory_WhenCategoryAlreadyExists_ThrowsException() {
         // Arrange
         PlaceCategory category = new PlaceCategory(1, "Test Category", "test-slug");
-        when(placeCategoryStore.get(category.getId())).thenReturn(Optional.of(category));
+        when(placeCategoryStore.putIfAbsent(category)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ElementAlreadyExistsException.class, () -> placeCategoryService.createPlaceCategory(category));
@@ -167,10 +233,21 @@ public class PlaceCategoryServiceTest {
         );
     }
 
+    @Test
+    public void updatePlaceCategory_WhenVersionIsStale_ThrowsException() {
+        // Arrange
+        PlaceCategory category = new PlaceCategory(1, "Updated Category", "updated-slug");
+        when(placeCategoryStore.compareAndSet(category, 3)).thenReturn(false);
+        when(placeCategoryStore.get(1)).thenReturn(Optional.of(category));
+
+        // Act & Assert
+        assertThrows(VersionConflictException.class, () -> placeCategoryService.updatePlaceCategory(1, category, 3L));
+    }
+
     @Test
     public void deletePlaceCategory_WhenCategoryDoesNotExist_ThrowsException() {
         // Arrange
-        when(placeCategoryStore.get(42)).thenReturn(Optional.empty());
+        when(placeCategoryStore.delete(42)).thenReturn(false);
 
         // Act & Assert
         assertThrows(ElementWasNotFoundException.class, () -> placeCategoryService.deletePlaceCategory(42));
@@ -0,0 +1,269 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.matthew.configuration.DataSourceConfig;
+import ru.matthew.configuration.TestStores;
+import ru.matthew.model.Location;
+import ru.matthew.repository.EntityCodecs;
+import ru.matthew.repository.FsyncPolicy;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.StoreJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoreJournalTest {
+    @TempDir
+    private Path dir;
+
+    private InMemoryStore<String, Location> openStore(FsyncPolicy policy) {
+        return TestStores.indexedLocationStore()
+                .attachJournal(new StoreJournal<>(dir, EntityCodecs.LOCATION, policy, Duration.ofMillis(10), Duration.ofHours(1)));
+    }
+
+    @Test
+    public void attachJournal_AfterRestart_ReplaysSaveUpdateAndDelete() {
+        // Arrange
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            assertFalse(store.isRecovered());
+            store.save(new Location("msk", "Москва"));
+            store.save(new Location("spb", "Санкт-Петербург"));
+            store.save(new Location("nsk", "Новосибирск"));
+            store.update(new Location("msk", "Moscow"));
+            store.delete("spb");
+        }
+
+        // Act
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            // Assert
+            assertTrue(store.isRecovered());
+            assertEquals(2, store.getAll().size());
+            assertEquals(Optional.of(new Location("msk", "Moscow")), store.get("msk"));
+            assertTrue(store.get("spb").isEmpty());
+            assertEquals(List.of(new Location("nsk", "Новосибирск")), store.findBy(DataSourceConfig.NAME_INDEX, "новосибирск"));
+        }
+    }
+
+    @Test
+    public void compact_WhenWalHasRecords_ReplacesSegmentsWithSnapshot() throws IOException {
+        // Arrange
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.NONE)) {
+            store.save(new Location("msk", "Москва"));
+            store.save(new Location("spb", "Санкт-Петербург"));
+        }
+        StoreJournal<String, Location> journal =
+                new StoreJournal<>(dir, EntityCodecs.LOCATION, FsyncPolicy.GROUP, Duration.ofMillis(10), Duration.ofHours(1));
+
+        // Act
+        try (InMemoryStore<String, Location> store = TestStores.indexedLocationStore().attachJournal(journal)) {
+            store.delete("msk");
+            journal.compact();
+            store.save(new Location("ekb", "Екатеринбург"));
+        }
+
+        // Assert
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("snapshot-")).count());
+        }
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            assertEquals(List.of("ekb", "spb"), store.stream(null).map(Location::getSlug).toList());
+        }
+    }
+
+    @Test
+    public void attachJournal_WhenLastRecordIsTorn_TruncatesTail() throws IOException {
+        // Arrange
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            store.save(new Location("msk", "Москва"));
+        }
+        Path segment = dir.resolve("wal-1.log");
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Act
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            // Assert
+            assertEquals(Optional.of(new Location("msk", "Москва")), store.get("msk"));
+            assertEquals(validSize, Files.size(segment));
+        }
+    }
+
+    @Test
+    public void commit_WhenWriteFailsMidBatch_TruncatesSegmentAndRejectsLaterWrites() throws IOException {
+        // Arrange
+        FailingJournal journal = new FailingJournal(dir);
+        Path segment = dir.resolve("wal-1.log");
+        long validSize;
+        try (InMemoryStore<String, Location> store = TestStores.indexedLocationStore().attachJournal(journal)) {
+            store.save(new Location("msk", "Москва"));
+            validSize = Files.size(segment);
+            journal.channel.failNextWrite = true;
+
+            // Act: запись пачки обрывается на середине, следующее сохранение не должно лечь за ней
+            assertThrows(UncheckedIOException.class, () -> store.save(new Location("spb", "Санкт-Петербург")));
+            assertThrows(UncheckedIOException.class, () -> store.save(new Location("ekb", "Екатеринбург")));
+
+            // Assert
+            assertEquals(validSize, Files.size(segment));
+            assertTrue(store.get("ekb").isEmpty());
+        }
+        try (InMemoryStore<String, Location> store = openStore(FsyncPolicy.GROUP)) {
+            assertEquals(List.of("msk"), store.stream(null).map(Location::getSlug).toList());
+        }
+    }
+
+    @Test
+    public void commit_WhenFsyncFails_RollsBackWriteAndPublishesNothing() {
+        // Arrange
+        FailingJournal journal = new FailingJournal(dir);
+        try (InMemoryStore<String, Location> store = TestStores.indexedLocationStore()
+                .attachJournal(journal).enableChangeFeed(16)) {
+            store.save(new Location("msk", "Москва"));
+            journal.channel.failNextWrite = true;
+
+            // Act: ни новая запись, ни изменение существующей не должны пережить отказ журнала
+            assertThrows(UncheckedIOException.class, () -> store.save(new Location("spb", "Санкт-Петербург")));
+            assertThrows(UncheckedIOException.class, () -> store.update(new Location("msk", "Moscow")));
+
+            // Assert
+            assertTrue(store.get("spb").isEmpty());
+            assertTrue(store.findBy(DataSourceConfig.NAME_INDEX, "санкт-петербург").isEmpty());
+            assertEquals("Москва", store.get("msk").orElseThrow().getName());
+            assertEquals(1, store.findBy(DataSourceConfig.NAME_INDEX, "москва").size());
+            assertEquals(1, store.changeFeed().lastSequence());
+        }
+    }
+
+    private static final class FailingJournal extends StoreJournal<String, Location> {
+        private FailingChannel channel;
+
+        FailingJournal(Path dir) {
+            super(dir, EntityCodecs.LOCATION, FsyncPolicy.GROUP, Duration.ofMillis(10), Duration.ofHours(1));
+        }
+
+        @Override
+        protected FileChannel openChannel(Path path) throws IOException {
+            channel = new FailingChannel(super.openChannel(path));
+            return channel;
+        }
+    }
+
+    /**
+     * Канал, который по флагу записывает половину буфера и падает, как при переполнении диска.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private volatile boolean failNextWrite;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                ByteBuffer half = src.slice(src.position(), src.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.matthew.configuration;
+
+import ru.matthew.model.Location;
+import ru.matthew.model.PlaceCategory;
+import ru.matthew.repository.HeapStoreBackend;
+import ru.matthew.repository.InMemoryStore;
+import ru.matthew.repository.IntKeyedStore;
+import ru.matthew.repository.StoreBackend;
+
+/**
+ * Хранилища для тестов, собранные так же, как бины {@link DataSourceConfig}, со всеми индексами.
+ */
+public final class TestStores {
+
+    private TestStores() {
+    }
+
+    public static InMemoryStore<String, Location> indexedLocationStore() {
+        return indexedLocationStore(new HeapStoreBackend<>());
+    }
+
+    public static InMemoryStore<String, Location> indexedLocationStore(StoreBackend<String, Location> backend) {
+        return DataSourceConfig.newLocationStore(backend, true, true);
+    }
+
+    public static InMemoryStore<Integer, PlaceCategory> indexedPlaceCategoryStore() {
+        return DataSourceConfig.newPlaceCategoryStore(new InMemoryStore<>(new HeapStoreBackend<>()), true);
+    }
+
+    public static IntKeyedStore<PlaceCategory> indexedIntKeyedPlaceCategoryStore() {
+        return DataSourceConfig.newPlaceCategoryStore(new IntKeyedStore<>(), true);
+    }
+}